@@ -0,0 +1,166 @@
+package com.omwan.latestadditions.benchmark;
+
+import com.omwan.latestadditions.component.SpotifyApiComponent;
+import com.omwan.latestadditions.dto.SpotifyCredentials;
+import com.wrapper.spotify.SpotifyApi;
+import com.wrapper.spotify.model_objects.miscellaneous.PlaylistTracksInformation;
+import com.wrapper.spotify.model_objects.specification.Paging;
+import com.wrapper.spotify.model_objects.specification.Playlist;
+import com.wrapper.spotify.model_objects.specification.PlaylistSimplified;
+import com.wrapper.spotify.model_objects.specification.PlaylistTrack;
+import com.wrapper.spotify.requests.data.AbstractDataRequest;
+import com.wrapper.spotify.requests.data.playlists.CreatePlaylistRequest;
+import com.wrapper.spotify.requests.data.playlists.GetListOfCurrentUsersPlaylistsRequest;
+import com.wrapper.spotify.requests.data.playlists.GetPlaylistRequest;
+import com.wrapper.spotify.requests.data.playlists.GetPlaylistsTracksRequest;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URLEncodedUtils;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory stand-in for the Spotify API component, serving synthetic playlists
+ * without any network calls. Requests to write to a playlist succeed without
+ * doing anything.
+ */
+public class FakeSpotifyApiComponent extends SpotifyApiComponent {
+
+    private final Map<String, PlaylistTrack[]> playlists;
+    private final SpotifyApi spotifyApi;
+
+    /**
+     * Create a fake serving the given playlists.
+     *
+     * @param playlists mapping of playlist IDs to their tracks, in playlist order
+     */
+    public FakeSpotifyApiComponent(Map<String, PlaylistTrack[]> playlists) {
+        this.playlists = playlists;
+        this.spotifyApi = new SpotifyApi.Builder()
+                .setAccessToken("access token")
+                .build();
+    }
+
+    @Override
+    public SpotifyApi getApi(SpotifyCredentials credentials) {
+        return spotifyApi;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T executeRequest(AbstractDataRequest requestBuilder, String errorMessage) {
+        URI uri = requestBuilder.getUri();
+        if (requestBuilder instanceof GetPlaylistsTracksRequest) {
+            return (T) getTracks(getPlaylistId(uri, 2), getParameters(uri));
+        } else if (requestBuilder instanceof GetPlaylistRequest) {
+            return (T) getPlaylist(getPlaylistId(uri, 1));
+        } else if (requestBuilder instanceof GetListOfCurrentUsersPlaylistsRequest) {
+            return (T) getUserPlaylists(getParameters(uri));
+        } else if (requestBuilder instanceof CreatePlaylistRequest) {
+            return (T) new Playlist.Builder()
+                    .setId("latest")
+                    .build();
+        }
+        return null;
+    }
+
+    @Override
+    public <T> T executeSharedRequest(AbstractDataRequest requestBuilder, String errorMessage) {
+        return executeRequest(requestBuilder, errorMessage);
+    }
+
+    /**
+     * Build a page of a playlist's tracks.
+     *
+     * @param playlistId ID of playlist
+     * @param parameters query parameters of request
+     * @return paging object containing tracks
+     */
+    private Paging<PlaylistTrack> getTracks(String playlistId, Map<String, String> parameters) {
+        PlaylistTrack[] tracks = playlists.get(playlistId);
+        int offset = Math.min(Integer.parseInt(parameters.getOrDefault("offset", "0")), tracks.length);
+        int limit = Integer.parseInt(parameters.getOrDefault("limit", "100"));
+        return new Paging.Builder<PlaylistTrack>()
+                .setItems(Arrays.copyOfRange(tracks, offset, Math.min(offset + limit, tracks.length)))
+                .setOffset(offset)
+                .setLimit(limit)
+                .setTotal(tracks.length)
+                .build();
+    }
+
+    /**
+     * Build the snapshot ID and track total of a playlist.
+     *
+     * @param playlistId ID of playlist
+     * @return playlist
+     */
+    private Playlist getPlaylist(String playlistId) {
+        return new Playlist.Builder()
+                .setId(playlistId)
+                .setSnapshotId(playlistId + "-snapshot")
+                .setTracks(new Paging.Builder<PlaylistTrack>()
+                        .setTotal(playlists.get(playlistId).length)
+                        .build())
+                .build();
+    }
+
+    /**
+     * Build a page of the user's playlists.
+     *
+     * @param parameters query parameters of request
+     * @return paging object containing playlists
+     */
+    private Paging<PlaylistSimplified> getUserPlaylists(Map<String, String> parameters) {
+        List<String> playlistIds = Arrays.asList(playlists.keySet().toArray(new String[0]));
+        int offset = Math.min(Integer.parseInt(parameters.getOrDefault("offset", "0")), playlistIds.size());
+        int limit = Integer.parseInt(parameters.getOrDefault("limit", "20"));
+        int end = Math.min(offset + limit, playlistIds.size());
+
+        PlaylistSimplified[] items = playlistIds.subList(offset, end).stream()
+                .map(playlistId -> new PlaylistSimplified.Builder()
+                        .setId(playlistId)
+                        .setSnapshotId(playlistId + "-snapshot")
+                        .setTracks(new PlaylistTracksInformation.Builder()
+                                .setTotal(playlists.get(playlistId).length)
+                                .build())
+                        .build())
+                .toArray(PlaylistSimplified[]::new);
+        return new Paging.Builder<PlaylistSimplified>()
+                .setItems(items)
+                .setOffset(offset)
+                .setLimit(limit)
+                .setTotal(playlistIds.size())
+                .setNext(end < playlistIds.size() ? "next" : null)
+                .build();
+    }
+
+    /**
+     * Get the playlist ID from the path of a request URI.
+     *
+     * @param uri             request URI
+     * @param segmentsFromEnd position of the playlist ID counted from the end of the path
+     * @return playlist ID
+     */
+    private static String getPlaylistId(URI uri, int segmentsFromEnd) {
+        String[] segments = uri.getPath().split("/");
+        return segments[segments.length - segmentsFromEnd];
+    }
+
+    /**
+     * Get the query parameters of a request URI.
+     *
+     * @param uri request URI
+     * @return mapping of parameter names to values
+     */
+    private static Map<String, String> getParameters(URI uri) {
+        Map<String, String> parameters = new HashMap<>();
+        for (NameValuePair pair : URLEncodedUtils.parse(uri, StandardCharsets.UTF_8)) {
+            parameters.put(pair.getName(), pair.getValue());
+        }
+        return parameters;
+    }
+}
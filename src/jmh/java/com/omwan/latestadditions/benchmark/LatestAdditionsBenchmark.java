@@ -0,0 +1,146 @@
+package com.omwan.latestadditions.benchmark;
+
+import com.omwan.latestadditions.component.PlaylistWriterComponent;
+import com.omwan.latestadditions.component.SpotifyCredentialsComponent;
+import com.omwan.latestadditions.component.TrackTailCacheComponent;
+import com.omwan.latestadditions.component.UserPlaylistComponent;
+import com.omwan.latestadditions.dto.BuildPlaylistRequest;
+import com.omwan.latestadditions.dto.LatestPlaylistResponse;
+import com.omwan.latestadditions.dto.SpotifyCredentials;
+import com.omwan.latestadditions.service.SpotifyPlaylistServiceImpl;
+import com.wrapper.spotify.model_objects.specification.PlaylistTrack;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of building a latest additions playlist from synthetic source
+ * playlists, covering retrieval of the most recent tracks and the merge of
+ * those tracks into one playlist. Spotify is replaced by an in-memory fake, so
+ * the results measure only the work done by the application.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class LatestAdditionsBenchmark {
+
+    private static final int FETCH_PARALLELISM = 4;
+    private static final long FETCH_TIMEOUT_MS = 10000;
+
+    @Param({"1", "10", "50"})
+    private int playlistCount;
+
+    @Param({"1000"})
+    private int playlistSize;
+
+    @Param({"25", "200"})
+    private int numTracks;
+
+    @Param({"0.0", "0.2"})
+    private double localRatio;
+
+    @Param({"0.0", "0.3"})
+    private double duplicateRatio;
+
+    private ExecutorService playlistFetchExecutor;
+    private SpotifyPlaylistServiceImpl spotifyPlaylistService;
+    private BuildPlaylistRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Map<String, PlaylistTrack[]> playlists = new SyntheticPlaylists(42, localRatio, duplicateRatio,
+                numTracks).generate(playlistCount, playlistSize);
+        FakeSpotifyApiComponent spotifyApiComponent = new FakeSpotifyApiComponent(playlists);
+        FixedCredentialsComponent spotifyCredentialsComponent = new FixedCredentialsComponent();
+        ReflectionTestUtils.setField(spotifyCredentialsComponent, "spotifyApiComponent", spotifyApiComponent);
+
+        TrackTailCacheComponent trackTailCacheComponent = new TrackTailCacheComponent();
+        ReflectionTestUtils.setField(trackTailCacheComponent, "spotifyApiComponent", spotifyApiComponent);
+
+        PlaylistWriterComponent playlistWriterComponent = new PlaylistWriterComponent();
+        ReflectionTestUtils.setField(playlistWriterComponent, "spotifyApiComponent", spotifyApiComponent);
+
+        playlistFetchExecutor = Executors.newFixedThreadPool(FETCH_PARALLELISM);
+        spotifyPlaylistService = new SpotifyPlaylistServiceImpl();
+        ReflectionTestUtils.setField(spotifyPlaylistService, "spotifyApiComponent", spotifyApiComponent);
+        ReflectionTestUtils.setField(spotifyPlaylistService, "spotifyCredentialsComponent",
+                spotifyCredentialsComponent);
+        ReflectionTestUtils.setField(spotifyPlaylistService, "userPlaylistComponent", new NoOpUserPlaylistComponent());
+        ReflectionTestUtils.setField(spotifyPlaylistService, "playlistWriterComponent", playlistWriterComponent);
+        ReflectionTestUtils.setField(spotifyPlaylistService, "trackTailCacheComponent", trackTailCacheComponent);
+        ReflectionTestUtils.setField(spotifyPlaylistService, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(spotifyPlaylistService, "playlistFetchExecutor", playlistFetchExecutor);
+        ReflectionTestUtils.setField(spotifyPlaylistService, "fetchTimeoutMs", FETCH_TIMEOUT_MS);
+
+        Map<String, Integer> playlistIds = new HashMap<>();
+        playlists.keySet().forEach(playlistId -> playlistIds.put(playlistId, null));
+        request = new BuildPlaylistRequest();
+        request.setPlaylistIds(playlistIds);
+        request.setPlaylistName("Latest Additions");
+        request.setNumTracks(numTracks);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        playlistFetchExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public LatestPlaylistResponse buildLatestAdditionsPlaylist() {
+        return spotifyPlaylistService.buildLatestAdditionsPlaylist(request);
+    }
+
+    /**
+     * User playlist component that does not save anything, so that builds do
+     * not touch the database.
+     */
+    private static class NoOpUserPlaylistComponent extends UserPlaylistComponent {
+
+        @Override
+        public void saveUserPlaylist(String userId, String playlistId) {
+        }
+
+        @Override
+        public void recordPlaylistBuild(String userId, String playlistId, BuildPlaylistRequest buildSpec,
+                                        Map<String, String> sourceSnapshots) {
+        }
+    }
+
+    /**
+     * Credentials component for a fixed user, so that builds do not need a
+     * browser request.
+     */
+    private static class FixedCredentialsComponent extends SpotifyCredentialsComponent {
+
+        @Override
+        public SpotifyCredentials getCredentials() {
+            return new SpotifyCredentials("access token", "refresh token", null);
+        }
+
+        @Override
+        public String getCurrentUserId() {
+            return "benchmark";
+        }
+    }
+}
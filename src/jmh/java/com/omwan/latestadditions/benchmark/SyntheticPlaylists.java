@@ -0,0 +1,95 @@
+package com.omwan.latestadditions.benchmark;
+
+import com.wrapper.spotify.model_objects.specification.ArtistSimplified;
+import com.wrapper.spotify.model_objects.specification.ExternalId;
+import com.wrapper.spotify.model_objects.specification.PlaylistTrack;
+import com.wrapper.spotify.model_objects.specification.Track;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generator of synthetic source playlists for benchmarks. Tracks within a
+ * playlist are added in increasing date order, with the dates of different
+ * playlists interleaved so that the merge has to switch between them.
+ */
+public class SyntheticPlaylists {
+
+    private static final long START_MS = 1500000000000L;
+    private static final long ADDED_INTERVAL_MS = 60000L;
+
+    private final Random random;
+    private final double localRatio;
+    private final double duplicateRatio;
+    private final int sharedPoolSize;
+
+    /**
+     * Create a generator.
+     *
+     * @param seed           seed for random number generator, so runs are repeatable
+     * @param localRatio     ratio of tracks that are local files
+     * @param duplicateRatio ratio of tracks that are taken from a pool of tracks
+     *                       shared by all playlists
+     * @param sharedPoolSize number of tracks in the shared pool
+     */
+    public SyntheticPlaylists(long seed, double localRatio, double duplicateRatio, int sharedPoolSize) {
+        this.random = new Random(seed);
+        this.localRatio = localRatio;
+        this.duplicateRatio = duplicateRatio;
+        this.sharedPoolSize = Math.max(sharedPoolSize, 1);
+    }
+
+    /**
+     * Generate the given number of playlists with the given number of tracks each.
+     *
+     * @param playlistCount number of playlists to generate
+     * @param playlistSize  number of tracks in each playlist
+     * @return mapping of playlist IDs to their tracks, in playlist order
+     */
+    public Map<String, PlaylistTrack[]> generate(int playlistCount, int playlistSize) {
+        Map<String, PlaylistTrack[]> playlists = new LinkedHashMap<>();
+        for (int p = 0; p < playlistCount; p++) {
+            String playlistId = "playlist" + p;
+            PlaylistTrack[] tracks = new PlaylistTrack[playlistSize];
+            for (int i = 0; i < playlistSize; i++) {
+                long addedAt = START_MS + i * ADDED_INTERVAL_MS + random.nextInt((int) ADDED_INTERVAL_MS);
+                tracks[i] = generateTrack(playlistId, i, addedAt);
+            }
+            playlists.put(playlistId, tracks);
+        }
+        return playlists;
+    }
+
+    /**
+     * Generate a single playlist track.
+     *
+     * @param playlistId ID of playlist the track belongs to
+     * @param position   position of the track in its playlist
+     * @param addedAt    time in milliseconds the track was added
+     * @return playlist track
+     */
+    private PlaylistTrack generateTrack(String playlistId, int position, long addedAt) {
+        boolean isLocal = random.nextDouble() < localRatio;
+        String key = random.nextDouble() < duplicateRatio
+                ? "shared" + random.nextInt(sharedPoolSize)
+                : playlistId + "-" + position;
+
+        return new PlaylistTrack.Builder()
+                .setTrack(new Track.Builder()
+                        .setUri("spotify:track:" + key)
+                        .setName("Song " + key + " - Remastered")
+                        .setArtists(new ArtistSimplified.Builder()
+                                .setName("Artist " + key.hashCode() % 100)
+                                .build())
+                        .setExternalIds(new ExternalId.Builder()
+                                .setExternalIds(Collections.singletonMap("isrc", "US" + key))
+                                .build())
+                        .build())
+                .setAddedAt(new Date(addedAt))
+                .setIsLocal(isLocal)
+                .build();
+    }
+}
@@ -0,0 +1,62 @@
+package com.omwan.latestadditions.benchmark;
+
+import com.omwan.latestadditions.dto.DedupPolicy;
+import com.omwan.latestadditions.merge.TrackDedupIndex;
+import com.wrapper.spotify.model_objects.specification.PlaylistTrack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of recording synthetic tracks in the dedup index under each dedup
+ * policy, isolated from the rest of the merge.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TrackDedupIndexBenchmark {
+
+    @Param({"URI", "ISRC", "TITLE"})
+    private DedupPolicy dedupPolicy;
+
+    @Param({"200", "1000"})
+    private int numTracks;
+
+    @Param({"0.0", "0.3"})
+    private double duplicateRatio;
+
+    private PlaylistTrack[] tracks;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        tracks = new SyntheticPlaylists(42, 0, duplicateRatio, numTracks)
+                .generate(1, numTracks)
+                .get("playlist0");
+    }
+
+    @Benchmark
+    public int addTracks() {
+        TrackDedupIndex dedupIndex = new TrackDedupIndex(dedupPolicy, numTracks);
+        int added = 0;
+        for (PlaylistTrack track : tracks) {
+            if (dedupIndex.add(track)) {
+                added++;
+            }
+        }
+        return added;
+    }
+}
@@ -0,0 +1,186 @@
+package com.omwan.latestadditions.cache;
+
+import com.omwan.latestadditions.dto.CacheStats;
+import com.wrapper.spotify.model_objects.specification.Playlist;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded in-process cache of playlist details, evicting the least recently
+ * used entry once full. Each entry records the snapshot ID the details were
+ * retrieved at and when they were last known to be current, so that expired
+ * entries can be revalidated against the playlist's snapshot ID rather than
+ * retrieved again in full.
+ */
+public class PlaylistMetadataCache {
+
+    /**
+     * Cache key: the same playlist may be cached once per user and field set.
+     */
+    public static final class Key {
+
+        private final String userId;
+        private final String playlistId;
+        private final String fields;
+
+        public Key(String userId, String playlistId, String fields) {
+            this.userId = userId;
+            this.playlistId = playlistId;
+            this.fields = fields;
+        }
+
+        public String getPlaylistId() {
+            return playlistId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return Objects.equals(userId, key.userId)
+                    && Objects.equals(playlistId, key.playlistId)
+                    && Objects.equals(fields, key.fields);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, playlistId, fields);
+        }
+    }
+
+    /**
+     * Cached playlist details.
+     */
+    public static final class Entry {
+
+        private final Playlist playlist;
+        private final String snapshotId;
+        private volatile long validatedAt;
+
+        public Entry(Playlist playlist, String snapshotId, long validatedAt) {
+            this.playlist = playlist;
+            this.snapshotId = snapshotId;
+            this.validatedAt = validatedAt;
+        }
+
+        public Playlist getPlaylist() {
+            return playlist;
+        }
+
+        public String getSnapshotId() {
+            return snapshotId;
+        }
+
+        public long getValidatedAt() {
+            return validatedAt;
+        }
+
+        /**
+         * Record that the cached details were found to be current.
+         *
+         * @param validatedAt time of validation, in epoch millis
+         */
+        public void revalidate(long validatedAt) {
+            this.validatedAt = validatedAt;
+        }
+    }
+
+    private final int maxSize;
+    private final long ttlMs;
+    private final Map<Key, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Create a cache holding at most the given number of entries.
+     *
+     * @param maxSize maximum number of entries
+     * @param ttlMs   time an entry is served without revalidation
+     */
+    public PlaylistMetadataCache(int maxSize, long ttlMs) {
+        this.maxSize = maxSize;
+        this.ttlMs = ttlMs;
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > PlaylistMetadataCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get the entry for a key, whether or not it has expired.
+     *
+     * @param key key to look up
+     * @return entry, or null if there is none
+     */
+    public synchronized Entry get(Key key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Add or replace the entry for a key.
+     *
+     * @param key   key to store under
+     * @param entry entry to store
+     */
+    public synchronized void put(Key key, Entry entry) {
+        entries.put(key, entry);
+    }
+
+    /**
+     * Remove every entry for a playlist.
+     *
+     * @param playlistId ID of playlist to remove
+     */
+    public synchronized void invalidate(String playlistId) {
+        entries.keySet().removeIf(key -> Objects.equals(key.getPlaylistId(), playlistId));
+    }
+
+    /**
+     * Check if an entry can be served without revalidation.
+     *
+     * @param entry entry to check
+     * @param now   current time, in epoch millis
+     * @return whether or not the entry is fresh
+     */
+    public boolean isFresh(Entry entry, long now) {
+        return now - entry.getValidatedAt() < ttlMs;
+    }
+
+    public void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    public void recordRevalidation() {
+        revalidations.incrementAndGet();
+    }
+
+    public void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    /**
+     * Get a snapshot of the cache counters.
+     *
+     * @return cache statistics
+     */
+    public synchronized CacheStats getStats() {
+        return new CacheStats(entries.size(), hits.get(), revalidations.get(), misses.get(), evictions.get());
+    }
+}
@@ -0,0 +1,103 @@
+package com.omwan.latestadditions.component;
+
+import com.omwan.latestadditions.dto.BuildJob;
+import com.omwan.latestadditions.dto.BuildProgress;
+import com.omwan.latestadditions.dto.LatestPlaylistResponse;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * Component to run playlist builds in the background and track their progress.
+ * Builds run on a bounded pool; finished jobs are kept for the retention
+ * period so that their results can be polled.
+ */
+@Component
+public class BuildJobComponent {
+    private static final Logger s_Logger = LogManager.getLogger();
+
+    @Autowired
+    private ExecutorService playlistBuildExecutor;
+
+    @Value("${spotify.build.job.retention.ms}")
+    private long jobRetentionMs;
+
+    private final ConcurrentMap<String, BuildJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * Queue a build for the given user. The build must not depend on the
+     * current HTTP request, since it runs after the request has completed.
+     *
+     * @param userId user ID of the user the build is for
+     * @param build  build to run, reporting to the given progress
+     * @return queued job
+     */
+    public BuildJob submit(String userId, Function<BuildProgress, LatestPlaylistResponse> build) {
+        evictFinishedJobs();
+
+        BuildJob job = new BuildJob(UUID.randomUUID().toString(), userId);
+        jobs.put(job.getId(), job);
+        try {
+            playlistBuildExecutor.submit(() -> run(job, build));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw new RuntimeException("Too many playlist builds in progress, try again later", e);
+        }
+        return job;
+    }
+
+    /**
+     * Retrieve a job belonging to the given user.
+     *
+     * @param userId user ID of the user the job is for
+     * @param jobId  ID of job to retrieve
+     * @return job
+     */
+    public BuildJob getJob(String userId, String jobId) {
+        BuildJob job = jobs.get(jobId);
+        if (job == null || !job.getUserId().equals(userId)) {
+            throw new RuntimeException("Build job " + jobId + " does not exist");
+        }
+        return job;
+    }
+
+    /**
+     * Run a build and record its outcome on the job. The job is failed even if
+     * the build throws an error rather than an exception, so that clients polling
+     * it always see it finish.
+     *
+     * @param job   job to run
+     * @param build build to run
+     */
+    private void run(BuildJob job, Function<BuildProgress, LatestPlaylistResponse> build) {
+        job.start();
+        try {
+            job.succeed(build.apply(job.getProgress()));
+        } catch (RuntimeException e) {
+            s_Logger.error("Playlist build " + job.getId() + " failed", e);
+            job.fail(e.getMessage());
+        } finally {
+            if (!job.isFinished()) {
+                s_Logger.error("Playlist build {} did not complete", job.getId());
+                job.fail("Playlist build did not complete");
+            }
+        }
+    }
+
+    /**
+     * Remove jobs that finished longer ago than the retention period.
+     */
+    private void evictFinishedJobs() {
+        long cutoff = System.currentTimeMillis() - jobRetentionMs;
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt() < cutoff);
+    }
+}
@@ -0,0 +1,86 @@
+package com.omwan.latestadditions.component;
+
+import com.omwan.latestadditions.cache.PlaylistMetadataCache;
+import com.omwan.latestadditions.dto.CacheStats;
+import com.wrapper.spotify.SpotifyApi;
+import com.wrapper.spotify.model_objects.specification.Playlist;
+import com.wrapper.spotify.requests.data.AbstractDataRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+
+/**
+ * Component to retrieve playlist details through the playlist metadata cache.
+ * Expired entries are revalidated by retrieving only the playlist's snapshot ID,
+ * and retrieved again in full only if the playlist has changed.
+ */
+@Component
+public class PlaylistMetadataComponent {
+
+    @Autowired
+    private SpotifyApiComponent spotifyApiComponent;
+
+    @Autowired
+    private PlaylistMetadataCache playlistMetadataCache;
+
+    /**
+     * Get the given fields of a playlist, from the cache if they are current.
+     *
+     * @param spotifyApi spotify API instance with tokens set
+     * @param userId     user ID of current user
+     * @param playlistId ID of playlist to retrieve
+     * @param fields     comma-separated fields to retrieve
+     * @return playlist details
+     */
+    public Playlist getPlaylist(SpotifyApi spotifyApi, String userId, String playlistId, String fields) {
+        PlaylistMetadataCache.Key key = new PlaylistMetadataCache.Key(userId, playlistId, fields);
+        PlaylistMetadataCache.Entry entry = playlistMetadataCache.get(key);
+        long now = System.currentTimeMillis();
+
+        if (entry != null && playlistMetadataCache.isFresh(entry, now)) {
+            playlistMetadataCache.recordHit();
+            return entry.getPlaylist();
+        }
+
+        if (entry != null && entry.getSnapshotId() != null) {
+            Playlist snapshot = fetchPlaylist(spotifyApi, userId, playlistId, "snapshot_id");
+            if (Objects.equals(entry.getSnapshotId(), snapshot.getSnapshotId())) {
+                entry.revalidate(now);
+                playlistMetadataCache.recordRevalidation();
+                return entry.getPlaylist();
+            }
+        }
+
+        playlistMetadataCache.recordMiss();
+        Playlist playlist = fetchPlaylist(spotifyApi, userId, playlistId, fields + ",snapshot_id");
+        playlistMetadataCache.put(key, new PlaylistMetadataCache.Entry(playlist, playlist.getSnapshotId(), now));
+        return playlist;
+    }
+
+    /**
+     * Remove any cached details for a playlist.
+     *
+     * @param playlistId ID of playlist to remove
+     */
+    public void invalidate(String playlistId) {
+        playlistMetadataCache.invalidate(playlistId);
+    }
+
+    /**
+     * Get hit and miss counts for the playlist metadata cache.
+     *
+     * @return cache statistics
+     */
+    public CacheStats getStats() {
+        return playlistMetadataCache.getStats();
+    }
+
+    private Playlist fetchPlaylist(SpotifyApi spotifyApi, String userId, String playlistId, String fields) {
+        AbstractDataRequest playlistRequest = spotifyApi.getPlaylist(userId, playlistId)
+                .fields(fields)
+                .build();
+        String errorMessage = "Unable to retrieve playlist details for playlist " + playlistId;
+        return spotifyApiComponent.executeRequest(playlistRequest, errorMessage);
+    }
+}
@@ -0,0 +1,269 @@
+package com.omwan.latestadditions.component;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.omwan.latestadditions.merge.PlaylistDiff;
+import com.wrapper.spotify.SpotifyApi;
+import com.wrapper.spotify.model_objects.special.SnapshotResult;
+import com.wrapper.spotify.model_objects.specification.Paging;
+import com.wrapper.spotify.model_objects.specification.PlaylistTrack;
+import com.wrapper.spotify.requests.data.AbstractDataRequest;
+import com.wrapper.spotify.requests.data.playlists.AddTracksToPlaylistRequest;
+import com.wrapper.spotify.requests.data.playlists.RemoveTracksFromPlaylistRequest;
+import com.wrapper.spotify.requests.data.playlists.ReorderPlaylistsTracksRequest;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Component to write tracks to a playlist, either in full or incrementally, in
+ * batches that respect the Spotify API's limit on the number of tracks per request.
+ */
+@Component
+public class PlaylistWriterComponent {
+    private static final Logger s_Logger = LogManager.getLogger();
+
+    static final int MAX_TRACKS_PER_REQUEST = 100;
+
+    @Autowired
+    private SpotifyApiComponent spotifyApiComponent;
+
+    @Value("${spotify.write.incremental.max.moves}")
+    private int maxIncrementalMoves;
+
+    /**
+     * Replace the tracks of a playlist with the given tracks. The first batch
+     * replaces the playlist's contents, and the rest are appended in order.
+     *
+     * @param spotifyApi spotify API instance with tokens set
+     * @param userId     ID of playlist owner
+     * @param playlistId ID of playlist to write to
+     * @param trackUris  URIs of tracks to write
+     */
+    public void replaceTracks(SpotifyApi spotifyApi, String userId, String playlistId, String[] trackUris) {
+        List<String[]> batches = partition(trackUris);
+        List<AbstractDataRequest> requests = new ArrayList<>();
+        requests.add(spotifyApi.replacePlaylistsTracks(userId, playlistId,
+                batches.isEmpty() ? new String[0] : batches.get(0))
+                .build());
+        for (int i = 1; i < batches.size(); i++) {
+            requests.add(spotifyApi.addTracksToPlaylist(userId, playlistId, batches.get(i))
+                    .build());
+        }
+        executeBatches(requests, "Unable to replace tracks for playlist " + playlistId);
+    }
+
+    /**
+     * Append the given tracks to the end of a playlist, in order.
+     *
+     * @param spotifyApi spotify API instance with tokens set
+     * @param userId     ID of playlist owner
+     * @param playlistId ID of playlist to write to
+     * @param trackUris  URIs of tracks to write
+     */
+    public void addTracks(SpotifyApi spotifyApi, String userId, String playlistId, String[] trackUris) {
+        List<AbstractDataRequest> requests = new ArrayList<>();
+        for (String[] batch : partition(trackUris)) {
+            requests.add(spotifyApi.addTracksToPlaylist(userId, playlistId, batch)
+                    .build());
+        }
+        executeBatches(requests, "Unable to add tracks to playlist " + playlistId);
+    }
+
+    /**
+     * Update the tracks of a playlist to the given tracks, applying only the
+     * removals, moves, and insertions needed to get there from the playlist's
+     * current contents. If the current contents cannot be read, include tracks
+     * without a URI that cannot be removed individually, would need more moves
+     * than allowed, or an incremental update fails partway, all of the playlist's
+     * tracks are replaced instead.
+     *
+     * @param spotifyApi spotify API instance with tokens set
+     * @param userId     ID of playlist owner
+     * @param playlistId ID of playlist to write to
+     * @param trackUris  URIs of tracks to write
+     */
+    public void updateTracks(SpotifyApi spotifyApi, String userId, String playlistId, String[] trackUris) {
+        PlaylistDiff diff;
+        try {
+            diff = PlaylistDiff.compute(getTrackUris(spotifyApi, userId, playlistId), Arrays.asList(trackUris));
+        } catch (RuntimeException e) {
+            s_Logger.warn("Unable to read tracks for playlist " + playlistId + ", replacing all tracks", e);
+            replaceTracks(spotifyApi, userId, playlistId, trackUris);
+            return;
+        }
+
+        if (diff.hasUnremovableTracks() || diff.getMoves().size() > maxIncrementalMoves) {
+            replaceTracks(spotifyApi, userId, playlistId, trackUris);
+            return;
+        }
+
+        try {
+            applyDiff(spotifyApi, userId, playlistId, diff);
+        } catch (RuntimeException e) {
+            s_Logger.warn("Unable to update tracks for playlist " + playlistId + ", replacing all tracks", e);
+            replaceTracks(spotifyApi, userId, playlistId, trackUris);
+        }
+    }
+
+    /**
+     * Retrieve the URIs of all tracks currently in a playlist, in order.
+     *
+     * @param spotifyApi spotify API instance with tokens set
+     * @param userId     ID of playlist owner
+     * @param playlistId ID of playlist to read
+     * @return list of track URIs, with null entries for tracks without a URI
+     */
+    List<String> getTrackUris(SpotifyApi spotifyApi, String userId, String playlistId) {
+        List<String> trackUris = new ArrayList<>();
+        String errorMessage = "Unable to retrieve tracks for playlist " + playlistId;
+        Paging<PlaylistTrack> page;
+        do {
+            AbstractDataRequest tracksRequest = spotifyApi.getPlaylistsTracks(userId, playlistId)
+                    .fields("items(track(uri)),total")
+                    .limit(MAX_TRACKS_PER_REQUEST)
+                    .offset(trackUris.size())
+                    .build();
+            page = spotifyApiComponent.executeRequest(tracksRequest, errorMessage);
+            for (PlaylistTrack playlistTrack : page.getItems()) {
+                trackUris.add(playlistTrack.getTrack() == null ? null : playlistTrack.getTrack().getUri());
+            }
+        } while (page.getItems().length > 0 && trackUris.size() < page.getTotal());
+        return trackUris;
+    }
+
+    /**
+     * Apply the operations of a diff to a playlist: removals from the highest
+     * position down so earlier positions stay valid, then moves, then insertions.
+     *
+     * @param spotifyApi spotify API instance with tokens set
+     * @param userId     ID of playlist owner
+     * @param playlistId ID of playlist to write to
+     * @param diff       operations to apply
+     */
+    private void applyDiff(SpotifyApi spotifyApi, String userId, String playlistId, PlaylistDiff diff) {
+        String errorMessage = "Unable to update tracks for playlist " + playlistId;
+        String snapshotId = null;
+
+        List<Map.Entry<String, Integer>> removals = new ArrayList<>();
+        diff.getRemovals().forEach((uri, positions) -> positions.forEach(position ->
+                removals.add(new AbstractMap.SimpleEntry<>(uri, position))));
+        removals.sort(Comparator.comparing((Map.Entry<String, Integer> removal) -> removal.getValue())
+                .reversed());
+
+        for (int start = 0; start < removals.size(); start += MAX_TRACKS_PER_REQUEST) {
+            List<Map.Entry<String, Integer>> batch = removals.subList(start,
+                    Math.min(start + MAX_TRACKS_PER_REQUEST, removals.size()));
+            RemoveTracksFromPlaylistRequest.Builder removeRequest = spotifyApi
+                    .removeTracksFromPlaylist(userId, playlistId, buildRemovalJson(batch));
+            if (snapshotId != null) {
+                removeRequest.snapshotId(snapshotId);
+            }
+            snapshotId = getSnapshotId(spotifyApiComponent.executeRequest(removeRequest.build(), errorMessage), snapshotId);
+        }
+
+        for (PlaylistDiff.Move move : diff.getMoves()) {
+            ReorderPlaylistsTracksRequest.Builder reorderRequest = spotifyApi
+                    .reorderPlaylistsTracks(userId, playlistId, move.getRangeStart(), move.getInsertBefore())
+                    .range_length(1);
+            if (snapshotId != null) {
+                reorderRequest.snapshot_id(snapshotId);
+            }
+            snapshotId = getSnapshotId(spotifyApiComponent.executeRequest(reorderRequest.build(), errorMessage), snapshotId);
+        }
+
+        for (PlaylistDiff.Insert insert : diff.getInserts()) {
+            String[] insertUris = insert.getTrackUris().toArray(new String[0]);
+            List<String[]> batches = partition(insertUris);
+            for (int i = 0; i < batches.size(); i++) {
+                AddTracksToPlaylistRequest addRequest = spotifyApi
+                        .addTracksToPlaylist(userId, playlistId, batches.get(i))
+                        .position(insert.getPosition() + i * MAX_TRACKS_PER_REQUEST)
+                        .build();
+                snapshotId = getSnapshotId(spotifyApiComponent.executeRequest(addRequest, errorMessage), snapshotId);
+            }
+        }
+    }
+
+    /**
+     * Build the request body for removing tracks at specific positions, grouping
+     * positions by track URI.
+     *
+     * @param removals track URIs and positions to remove
+     * @return JSON array of tracks to remove
+     */
+    private JsonArray buildRemovalJson(List<Map.Entry<String, Integer>> removals) {
+        Map<String, JsonArray> positionsByUri = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> removal : removals) {
+            positionsByUri.computeIfAbsent(removal.getKey(), uri -> new JsonArray())
+                    .add(removal.getValue());
+        }
+
+        JsonArray tracks = new JsonArray();
+        positionsByUri.forEach((uri, positions) -> {
+            JsonObject track = new JsonObject();
+            track.addProperty("uri", uri);
+            track.add("positions", positions);
+            tracks.add(track);
+        });
+        return tracks;
+    }
+
+    /**
+     * Get the snapshot ID from the result of a playlist modification, if present.
+     *
+     * @param result          result of modification
+     * @param defaultSnapshot snapshot ID to use if the result has none
+     * @return snapshot ID
+     */
+    private String getSnapshotId(Object result, String defaultSnapshot) {
+        if (result instanceof SnapshotResult && ((SnapshotResult) result).getSnapshotId() != null) {
+            return ((SnapshotResult) result).getSnapshotId();
+        }
+        return defaultSnapshot;
+    }
+
+    /**
+     * Split track URIs into batches no larger than the per-request limit.
+     *
+     * @param trackUris URIs to split
+     * @return list of batches
+     */
+    List<String[]> partition(String[] trackUris) {
+        List<String[]> batches = new ArrayList<>();
+        for (int start = 0; start < trackUris.length; start += MAX_TRACKS_PER_REQUEST) {
+            int end = Math.min(start + MAX_TRACKS_PER_REQUEST, trackUris.length);
+            batches.add(Arrays.copyOfRange(trackUris, start, end));
+        }
+        return batches;
+    }
+
+    /**
+     * Execute the prepared batch requests in order. Each batch is retried by
+     * {@link SpotifyApiComponent#executeRequest} where that is safe, and is not
+     * resent here; once a batch has failed, the remaining batches are not sent.
+     *
+     * @param requests     prepared requests, in the order they must be applied
+     * @param errorMessage error message to use in event of failure
+     */
+    private void executeBatches(List<AbstractDataRequest> requests, String errorMessage) {
+        for (int i = 0; i < requests.size(); i++) {
+            try {
+                spotifyApiComponent.executeRequest(requests.get(i), errorMessage);
+            } catch (RuntimeException e) {
+                throw new RuntimeException(String.format("%s (%d of %d batches written)",
+                        errorMessage, i, requests.size()), e);
+            }
+        }
+    }
+}
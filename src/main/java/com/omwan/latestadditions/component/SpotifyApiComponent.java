@@ -1,26 +1,55 @@
 package com.omwan.latestadditions.component;
 
+import com.omwan.latestadditions.dto.SpotifyCredentials;
+import com.omwan.latestadditions.http.RequestScheduler;
+import com.omwan.latestadditions.http.SingleFlight;
+import com.wrapper.spotify.IHttpManager;
 import com.wrapper.spotify.SpotifyApi;
 import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+import com.wrapper.spotify.exceptions.detailed.BadGatewayException;
+import com.wrapper.spotify.exceptions.detailed.InternalServerErrorException;
+import com.wrapper.spotify.exceptions.detailed.ServiceUnavailableException;
+import com.wrapper.spotify.exceptions.detailed.TooManyRequestsException;
 import com.wrapper.spotify.exceptions.detailed.UnauthorizedException;
 import com.wrapper.spotify.model_objects.credentials.AuthorizationCodeCredentials;
 import com.wrapper.spotify.model_objects.specification.User;
 import com.wrapper.spotify.requests.data.AbstractDataRequest;
+import com.wrapper.spotify.requests.data.playlists.ReplacePlaylistsTracksRequest;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.http.Header;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.message.BasicHeader;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
-import org.springframework.web.util.WebUtils;
+import org.springframework.web.context.request.RequestContextHolder;
 
-import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
- * Component to manage common functionalities relating to the Spotify API.
+ * Component to manage common functionalities relating to the Spotify API. The
+ * tokens of a user are always given explicitly rather than read from the current
+ * request, so requests can be executed from any thread. Saving refreshed tokens
+ * for the user is left to listeners of {@link TokenRefreshedEvent}.
  */
 @Component
 public class SpotifyApiComponent {
+    private static final Logger s_Logger = LogManager.getLogger();
+
+    private static final String AUTHORIZATION_HEADER = "Authorization";
+    private static final String BEARER_PREFIX = "Bearer ";
 
     @Value("${spotify.client}")
     private String spotifyClient;
@@ -31,42 +60,87 @@ public class SpotifyApiComponent {
     @Value("${spotify.redirect.uri}")
     private String spotifyRedirectUri;
 
+    @Value("${spotify.api.uri}")
+    private String spotifyApiUri;
+
+    @Value("${spotify.request.max.attempts}")
+    private int maxAttempts;
+
+    @Value("${spotify.request.retry.backoff.ms}")
+    private long retryBackoffMs;
+
+    @Value("${spotify.token.refresh.margin.ms}")
+    private long tokenRefreshMarginMs;
+
+    @Value("${spotify.token.tracked.max.size}")
+    private int maxTrackedTokens;
+
+    @Autowired
+    private IHttpManager spotifyHttpManager;
+
     @Autowired
-    @SuppressWarnings("SpringJavaAutowiringInspection")
-    private HttpServletRequest request;
+    private RequestScheduler requestScheduler;
 
     @Autowired
-    @SuppressWarnings("SpringJavaAutowiringInspection")
-    private HttpServletResponse response;
+    private MeterRegistry meterRegistry;
 
     @Autowired
-    private CookieUtils cookieUtils;
+    private ApplicationEventPublisher eventPublisher;
+
+    private final SingleFlight<String, Object> sharedRequests = new SingleFlight<>();
+
+    private final SingleFlight<String, AuthorizationCodeCredentials> tokenRefreshes = new SingleFlight<>();
+
+    private final Map<String, String> refreshTokens = newTokenMap();
+
+    private final Map<String, String> replacedTokens = newTokenMap();
 
     /**
      * Build instance of SpotifyApi with spotify client, secret, and redirect
-     * from environment variables.
+     * from environment variables. Instances share a single pooled HTTP manager,
+     * so building one does not open any connections. Web API requests are sent
+     * to the configured base URI, so that a stand-in server can be used in place
+     * of Spotify; authorization requests always go to Spotify's accounts service.
      *
      * @return SpotifyApi instance.
      */
     public SpotifyApi getSpotifyApi() {
+        URI apiUri = URI.create(spotifyApiUri);
+        int port = apiUri.getPort() != -1
+                ? apiUri.getPort()
+                : "http".equals(apiUri.getScheme()) ? 80 : SpotifyApi.DEFAULT_PORT;
         return new SpotifyApi.Builder()
                 .setClientId(spotifyClient)
                 .setClientSecret(spotifyClientSecret)
                 .setRedirectUri(URI.create(spotifyRedirectUri))
+                .setScheme(apiUri.getScheme())
+                .setHost(apiUri.getHost())
+                .setPort(port)
+                .setHttpManager(spotifyHttpManager)
                 .build();
     }
 
     /**
-     * Build instance of SpotifyApi with access and refresh tokens set
-     * from cookies.
+     * Build instance of SpotifyApi with the given access and refresh tokens set.
+     * If the access token is about to expire, it is refreshed before being set.
      *
+     * @param credentials tokens of user
      * @return SpotifyApi instance with access + refresh tokens
      */
-    public SpotifyApi getApiWithTokens() {
+    public SpotifyApi getApi(SpotifyCredentials credentials) {
         SpotifyApi spotifyApi = getSpotifyApi();
 
-        String accessToken = cookieUtils.getCookieValue(request, "ACCESS_TOKEN");
-        String refreshToken = cookieUtils.getCookieValue(request, "REFRESH_TOKEN");
+        String accessToken = credentials.getAccessToken();
+        String refreshToken = credentials.getRefreshToken();
+        refreshTokens.put(accessToken, refreshToken);
+
+        if (credentials.expiresWithin(tokenRefreshMarginMs)) {
+            try {
+                accessToken = refreshAccessToken(accessToken);
+            } catch (RuntimeException e) {
+                s_Logger.warn("Unable to refresh access token before expiry", e);
+            }
+        }
 
         spotifyApi.setAccessToken(accessToken);
         spotifyApi.setRefreshToken(refreshToken);
@@ -75,47 +149,52 @@ public class SpotifyApiComponent {
     }
 
     /**
-     * Helper to check if access and refresh tokens have already been set as cookies.
+     * Build instance of SpotifyApi for a user without a browser session, such
+     * as when rebuilding playlists in the background, by exchanging the given
+     * refresh token for an access token. Spotify may issue a new refresh token,
+     * in which case it is set on the returned instance.
      *
-     * @return whether or not access/refresh tokens exist as cookies.
+     * @param refreshToken refresh token of user
+     * @return SpotifyApi instance with access + refresh tokens
      */
-    public boolean tokensExist() {
-        return WebUtils.getCookie(request, "ACCESS_TOKEN") != null
-                && WebUtils.getCookie(request, "REFRESH_TOKEN") != null;
-    }
+    public SpotifyApi getApiWithRefreshToken(String refreshToken) {
+        AuthorizationCodeCredentials credentials = tokenRefreshes.execute(refreshToken,
+                () -> requestNewToken(refreshToken));
+        String newRefreshToken = credentials.getRefreshToken() != null
+                ? credentials.getRefreshToken()
+                : refreshToken;
+        refreshTokens.put(credentials.getAccessToken(), newRefreshToken);
 
-    /**
-     * Retrieve user ID of current user, and save as a cookie.
-     *
-     * @return user ID of current user
-     */
-    public String getCurrentUserId() {
-        String userId = "";
-        try {
-            userId = cookieUtils.getCookieValue(request, "USER_ID");
-            return userId;
-        } catch (RuntimeException e) {
-            userId = getCurrentUserIdFromApi();
-            response.addCookie(cookieUtils.buildCookie("USER_ID", userId));
-            return userId;
-        }
+        SpotifyApi spotifyApi = getSpotifyApi();
+        spotifyApi.setAccessToken(credentials.getAccessToken());
+        spotifyApi.setRefreshToken(newRefreshToken);
+        return spotifyApi;
     }
 
     /**
-     * Make Spotify API call to retrieve user ID of current user.
+     * Make Spotify API call to retrieve user ID of the user the given API
+     * instance is authorized for.
      *
-     * @return current user ID
+     * @param spotifyApi spotify API instance with tokens set
+     * @return user ID
      */
-    private String getCurrentUserIdFromApi() {
-        SpotifyApi spotifyApi = getApiWithTokens();
+    public String getCurrentUserId(SpotifyApi spotifyApi) {
         AbstractDataRequest userRequest = spotifyApi.getCurrentUsersProfile()
                 .build();
-        User user = executeRequest(userRequest, "ugh");
+        User user = executeRequest(userRequest, "Unable to retrieve current user");
         return user.getId();
     }
 
     /**
-     * Helper to execute API requests.
+     * Helper to execute API requests. Each attempt waits for a permit from the
+     * request scheduler. Rate-limited requests are retried once Spotify's
+     * Retry-After time has passed, and idempotent requests that fail with a
+     * server error are retried with exponential backoff. This is the only place
+     * Spotify requests are retried. If the access token has expired, it is
+     * refreshed and the request is replayed once with the new token. The time
+     * spent waiting for a permit and the duration of each attempt are recorded,
+     * tagged by endpoint and by the outcome of the attempt, and each replayed
+     * attempt is counted, tagged by endpoint and by the reason for the replay.
      *
      * @param requestBuilder request to execute
      * @param errorMessage   error message to log in event of failure
@@ -124,37 +203,288 @@ public class SpotifyApiComponent {
      */
     public <T> T executeRequest(AbstractDataRequest requestBuilder,
                                 String errorMessage) {
-        try {
-            return requestBuilder.execute();
-        } catch (UnauthorizedException e) {
-            refreshToken();
-            throw new RuntimeException("Token refreshed, try making request again");
-        } catch (IOException | SpotifyWebApiException e) {
-            throw new RuntimeException(errorMessage, e);
+        String accessToken = getAccessToken(requestBuilder);
+        String replacement = accessToken == null ? null : replacedTokens.get(accessToken);
+        if (replacement != null) {
+            accessToken = replacement;
+            setAccessToken(requestBuilder, accessToken);
+        }
+
+        String endpoint = getEndpoint(requestBuilder);
+        boolean refreshed = false;
+        for (int attempt = 1; ; attempt++) {
+            long queuedAt = System.nanoTime();
+            requestScheduler.acquire(getSchedulingKey(requestBuilder));
+            long start = System.nanoTime();
+            meterRegistry.timer("spotify.scheduler.wait", "endpoint", endpoint)
+                    .record(start - queuedAt, TimeUnit.NANOSECONDS);
+            try {
+                T result = requestBuilder.execute();
+                recordRequest(endpoint, "success", start);
+                return result;
+            } catch (UnauthorizedException e) {
+                recordRequest(endpoint, "401", start);
+                if (refreshed || accessToken == null) {
+                    throw new RuntimeException(errorMessage, e);
+                }
+                accessToken = refreshAccessToken(accessToken);
+                setAccessToken(requestBuilder, accessToken);
+                refreshed = true;
+                attempt--;
+                recordRetry(endpoint, "401");
+            } catch (TooManyRequestsException e) {
+                recordRequest(endpoint, "429", start);
+                long retryAfterMs = e.getRetryAfter() > 0
+                        ? TimeUnit.SECONDS.toMillis(e.getRetryAfter())
+                        : getBackoffMs(attempt);
+                requestScheduler.pause(retryAfterMs);
+                if (attempt >= maxAttempts) {
+                    throw new RuntimeException(errorMessage, e);
+                }
+                s_Logger.warn("Rate limited by Spotify, retrying in {} ms", retryAfterMs);
+                recordRetry(endpoint, "429");
+            } catch (InternalServerErrorException | BadGatewayException | ServiceUnavailableException e) {
+                recordRequest(endpoint, "5xx", start);
+                if (attempt >= maxAttempts || !isIdempotent(requestBuilder)) {
+                    throw new RuntimeException(errorMessage, e);
+                }
+                long backoffMs = getBackoffMs(attempt);
+                s_Logger.warn("Spotify server error on attempt {}, retrying in {} ms", attempt, backoffMs);
+                sleep(backoffMs);
+                recordRetry(endpoint, "5xx");
+            } catch (IOException | SpotifyWebApiException e) {
+                recordRequest(endpoint, "error", start);
+                throw new RuntimeException(errorMessage, e);
+            }
         }
     }
 
     /**
-     * Refresh access token for spotify api.
+     * Helper to execute read requests whose results do not depend on the user
+     * making them. Concurrent requests for the same resource and query share one
+     * call to the Spotify API, even when made by different users. Callers must
+     * already have confirmed that the user has access to the requested resource.
+     *
+     * @param requestBuilder request to execute
+     * @param errorMessage   error message to log in event of failure
+     * @param <T>            return type of request
+     * @return value of executed request
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T executeSharedRequest(AbstractDataRequest requestBuilder,
+                                      String errorMessage) {
+        return (T) sharedRequests.execute(getSharedRequestKey(requestBuilder),
+                () -> executeRequest(requestBuilder, errorMessage));
+    }
+
+    /**
+     * Get the key that identical shared requests are coalesced by: the endpoint,
+     * the request path without its user segment, and the sorted query
+     * parameters. Playlist IDs are unique across users, so requests for the same
+     * playlist page made through different users' paths share a key.
+     *
+     * @param requestBuilder request to get key of
+     * @return shared request key
      */
-    private void refreshToken() {
+    static String getSharedRequestKey(AbstractDataRequest requestBuilder) {
+        URI uri = requestBuilder.getUri();
+        String path = uri.getPath().replaceFirst("/users/[^/]+/", "/");
+        String query = URLEncodedUtils.parse(uri, StandardCharsets.UTF_8).stream()
+                .map(parameter -> parameter.getName() + "=" + parameter.getValue())
+                .sorted()
+                .collect(Collectors.joining("&"));
+        return getEndpoint(requestBuilder) + " " + path + "?" + query;
+    }
+
+    /**
+     * Get a fresh access token to replace the given one. Concurrent refreshes
+     * for the same user share one call to Spotify, and requests still holding
+     * the old token afterwards are switched to the new one without a refresh.
+     * Tokens that were switched to the given token are forgotten, since it is
+     * no longer valid either. The new tokens are published as a
+     * {@link TokenRefreshedEvent}.
+     *
+     * @param accessToken access token to replace
+     * @return new access token
+     */
+    private String refreshAccessToken(String accessToken) {
+        String replacement = replacedTokens.get(accessToken);
+        if (replacement != null) {
+            return replacement;
+        }
+
+        String refreshToken = refreshTokens.get(accessToken);
+        if (refreshToken == null) {
+            throw new RuntimeException("Unable to refresh access token, no refresh token available");
+        }
+
+        String currentRefreshToken = refreshToken;
+        AuthorizationCodeCredentials credentials = tokenRefreshes.execute(currentRefreshToken,
+                () -> requestNewToken(currentRefreshToken));
+
+        String newAccessToken = credentials.getAccessToken();
+        synchronized (replacedTokens) {
+            replacedTokens.values().removeIf(accessToken::equals);
+        }
+        replacedTokens.put(accessToken, newAccessToken);
+        refreshTokens.put(newAccessToken, credentials.getRefreshToken() != null
+                ? credentials.getRefreshToken()
+                : currentRefreshToken);
+        eventPublisher.publishEvent(new TokenRefreshedEvent(credentials));
+        return newAccessToken;
+    }
+
+    /**
+     * Make Spotify API call to exchange a refresh token for a new access token.
+     *
+     * @param refreshToken refresh token
+     * @return new credentials
+     */
+    private AuthorizationCodeCredentials requestNewToken(String refreshToken) {
         SpotifyApi spotifyApi = getSpotifyApi();
-        spotifyApi.setRefreshToken(cookieUtils.getCookieValue(request, "REFRESH_TOKEN"));
+        spotifyApi.setRefreshToken(refreshToken);
 
         try {
             AuthorizationCodeCredentials authorizationCodeCredentials = spotifyApi.authorizationCodeRefresh()
                     .build()
                     .execute();
-
-            response.addCookie(cookieUtils.buildCookie("ACCESS_TOKEN",
-                    authorizationCodeCredentials.getAccessToken()));
-            response.addCookie(cookieUtils.buildCookie("REFRESH_TOKEN",
-                    authorizationCodeCredentials.getRefreshToken()));
-
-            System.out.println(String.format("Token successfully refreshed, expires in %s",
-                    authorizationCodeCredentials.getExpiresIn()));
+            s_Logger.info("Token successfully refreshed, expires in {}", authorizationCodeCredentials.getExpiresIn());
+            return authorizationCodeCredentials;
         } catch (IOException | SpotifyWebApiException e) {
             throw new RuntimeException("Unable to refresh access token", e);
         }
     }
+
+    /**
+     * Get the access token a request is authorized with.
+     *
+     * @param requestBuilder request to check
+     * @return access token, or null if the request has none
+     */
+    private static String getAccessToken(AbstractDataRequest requestBuilder) {
+        for (Header header : requestBuilder.getHeaders()) {
+            if (AUTHORIZATION_HEADER.equalsIgnoreCase(header.getName())
+                    && header.getValue() != null
+                    && header.getValue().startsWith(BEARER_PREFIX)) {
+                return header.getValue().substring(BEARER_PREFIX.length());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Replace the access token a request is authorized with.
+     *
+     * @param requestBuilder request to update
+     * @param accessToken    new access token
+     */
+    private static void setAccessToken(AbstractDataRequest requestBuilder, String accessToken) {
+        List<Header> headers = requestBuilder.getHeaders();
+        headers.removeIf(header -> AUTHORIZATION_HEADER.equalsIgnoreCase(header.getName()));
+        headers.add(new BasicHeader(AUTHORIZATION_HEADER, BEARER_PREFIX + accessToken));
+    }
+
+    /**
+     * Create a bounded map for tracking tokens, discarding the least recently
+     * used entries once it holds more than the configured number of tokens.
+     *
+     * @return synchronized token map
+     */
+    private Map<String, String> newTokenMap() {
+        return Collections.synchronizedMap(new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxTrackedTokens;
+            }
+        });
+    }
+
+    /**
+     * Get the key of the request scheduler queue for a request. Each access
+     * token gets one queue for requests made while handling a browser request
+     * and one for requests made in the background, so that a large build does
+     * not hold up interactive browsing.
+     *
+     * @param requestBuilder request to schedule
+     * @return scheduling key
+     */
+    private String getSchedulingKey(AbstractDataRequest requestBuilder) {
+        String authorization = "";
+        for (Header header : requestBuilder.getHeaders()) {
+            if (AUTHORIZATION_HEADER.equalsIgnoreCase(header.getName())) {
+                authorization = header.getValue();
+            }
+        }
+        boolean interactive = RequestContextHolder.getRequestAttributes() != null;
+        return (interactive ? "interactive:" : "background:") + authorization;
+    }
+
+    /**
+     * Get the endpoint a request is for, named after the request class of the
+     * Spotify API wrapper, such as "GetPlaylistsTracks".
+     *
+     * @param requestBuilder request to name
+     * @return endpoint name
+     */
+    private static String getEndpoint(AbstractDataRequest requestBuilder) {
+        return requestBuilder.getClass().getSimpleName().replaceFirst("Request$", "");
+    }
+
+    /**
+     * Record the duration and outcome of an attempt to execute a request.
+     *
+     * @param endpoint   endpoint the request is for
+     * @param outcome    outcome of the attempt
+     * @param startNanos time the attempt started
+     */
+    private void recordRequest(String endpoint, String outcome, long startNanos) {
+        meterRegistry.timer("spotify.requests", "endpoint", endpoint, "outcome", outcome)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Count an attempt to execute a request that is about to be replayed.
+     *
+     * @param endpoint endpoint the request is for
+     * @param reason   outcome of the attempt that caused the replay
+     */
+    private void recordRetry(String endpoint, String reason) {
+        meterRegistry.counter("spotify.requests.retries", "endpoint", endpoint, "reason", reason).increment();
+    }
+
+    /**
+     * Check if a request has the same result however many times it is applied,
+     * and so is safe to retry after a server error that may have come after it
+     * was applied. Requests in the Spotify API wrapper are named after their
+     * operation, and every read operation is a "get"; of the writes, only
+     * replacing a playlist's tracks is idempotent.
+     *
+     * @param requestBuilder request to check
+     * @return whether or not the request is idempotent
+     */
+    private static boolean isIdempotent(AbstractDataRequest requestBuilder) {
+        return requestBuilder.getClass().getSimpleName().startsWith("Get")
+                || requestBuilder instanceof ReplacePlaylistsTracksRequest;
+    }
+
+    /**
+     * Get the time to wait before retrying, doubling with each attempt and
+     * jittered to spread out retries from concurrent callers.
+     *
+     * @param attempt number of the attempt that failed
+     * @return time to wait in milliseconds
+     */
+    private long getBackoffMs(int attempt) {
+        long backoff = retryBackoffMs << Math.min(attempt - 1, 16);
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while retrying Spotify request", e);
+        }
+    }
 }
@@ -0,0 +1,138 @@
+package com.omwan.latestadditions.component;
+
+import com.omwan.latestadditions.dto.SpotifyCredentials;
+import com.wrapper.spotify.SpotifyApi;
+import com.wrapper.spotify.model_objects.credentials.AuthorizationCodeCredentials;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Component to manage the Spotify credentials of the user making the current
+ * browser request, which are kept as cookies. Must only be called while handling
+ * a browser request; work that runs on other threads should be given the
+ * credentials or API instance resolved here instead.
+ */
+@Component
+public class SpotifyCredentialsComponent {
+
+    @Autowired
+    @SuppressWarnings("SpringJavaAutowiringInspection")
+    private HttpServletRequest request;
+
+    @Autowired
+    @SuppressWarnings("SpringJavaAutowiringInspection")
+    private HttpServletResponse response;
+
+    @Autowired
+    private CookieUtils cookieUtils;
+
+    @Autowired
+    private SpotifyApiComponent spotifyApiComponent;
+
+    /**
+     * Retrieve the access and refresh tokens of the current user from the
+     * cookies, along with the time the access token expires if it was saved.
+     *
+     * @return credentials of current user
+     */
+    public SpotifyCredentials getCredentials() {
+        String accessToken = cookieUtils.getCookieValue(request, "ACCESS_TOKEN");
+        String refreshToken = cookieUtils.getCookieValue(request, "REFRESH_TOKEN");
+        return new SpotifyCredentials(accessToken, refreshToken, getExpiresAt());
+    }
+
+    /**
+     * Build instance of SpotifyApi with access and refresh tokens set
+     * from cookies. If the access token is about to expire, it is refreshed
+     * before being set.
+     *
+     * @return SpotifyApi instance with access + refresh tokens
+     */
+    public SpotifyApi getApiWithTokens() {
+        return spotifyApiComponent.getApi(getCredentials());
+    }
+
+    /**
+     * Save the access and refresh tokens from the given credentials as cookies,
+     * along with the time the access token expires.
+     *
+     * @param response    response to add cookies to
+     * @param credentials credentials to save
+     */
+    public void storeCredentials(HttpServletResponse response, AuthorizationCodeCredentials credentials) {
+        response.addCookie(cookieUtils.buildCookie("ACCESS_TOKEN", credentials.getAccessToken()));
+        if (credentials.getRefreshToken() != null) {
+            response.addCookie(cookieUtils.buildCookie("REFRESH_TOKEN", credentials.getRefreshToken()));
+        }
+        if (credentials.getExpiresIn() != null) {
+            long expiresAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(credentials.getExpiresIn());
+            response.addCookie(cookieUtils.buildCookie("TOKEN_EXPIRES_AT", String.valueOf(expiresAt)));
+        }
+    }
+
+    /**
+     * Save refreshed tokens as cookies if the refresh happened while handling a
+     * browser request. Tokens refreshed by work on other threads are not saved,
+     * and the browser's old tokens are switched to the new ones by the API
+     * component on their next use.
+     *
+     * @param event token refresh event
+     */
+    @EventListener
+    public void onTokenRefreshed(TokenRefreshedEvent event) {
+        if (RequestContextHolder.getRequestAttributes() != null) {
+            storeCredentials(response, event.getCredentials());
+        }
+    }
+
+    /**
+     * Helper to check if access and refresh tokens have already been set as cookies.
+     *
+     * @return whether or not access/refresh tokens exist as cookies.
+     */
+    public boolean tokensExist() {
+        return WebUtils.getCookie(request, "ACCESS_TOKEN") != null
+                && WebUtils.getCookie(request, "REFRESH_TOKEN") != null;
+    }
+
+    /**
+     * Retrieve user ID of current user, and save as a cookie.
+     *
+     * @return user ID of current user
+     */
+    public String getCurrentUserId() {
+        try {
+            return cookieUtils.getCookieValue(request, "USER_ID");
+        } catch (RuntimeException e) {
+            String userId = spotifyApiComponent.getCurrentUserId(getApiWithTokens());
+            response.addCookie(cookieUtils.buildCookie("USER_ID", userId));
+            return userId;
+        }
+    }
+
+    /**
+     * Get the time the access token in the cookies expires. Tokens saved before
+     * expiry times were recorded have no expiry time.
+     *
+     * @return expiry time in epoch milliseconds, or null if unknown
+     */
+    private Long getExpiresAt() {
+        Cookie expiresAt = WebUtils.getCookie(request, "TOKEN_EXPIRES_AT");
+        if (expiresAt == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(expiresAt.getValue());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.omwan.latestadditions.component;
+
+import com.wrapper.spotify.model_objects.credentials.AuthorizationCodeCredentials;
+
+/**
+ * Event published when an access token is refreshed, so that the new tokens can
+ * be saved for the user.
+ */
+public class TokenRefreshedEvent {
+
+    private final AuthorizationCodeCredentials credentials;
+
+    public TokenRefreshedEvent(AuthorizationCodeCredentials credentials) {
+        this.credentials = credentials;
+    }
+
+    public AuthorizationCodeCredentials getCredentials() {
+        return credentials;
+    }
+}
@@ -0,0 +1,174 @@
+package com.omwan.latestadditions.component;
+
+import com.omwan.latestadditions.db.PlaylistTrackTail;
+import com.omwan.latestadditions.db.PlaylistTrackTailRepository;
+import com.omwan.latestadditions.dto.PlaylistIdWrapper;
+import com.omwan.latestadditions.merge.PlaylistCursor;
+import com.wrapper.spotify.SpotifyApi;
+import com.wrapper.spotify.model_objects.specification.Paging;
+import com.wrapper.spotify.model_objects.specification.Playlist;
+import com.wrapper.spotify.model_objects.specification.PlaylistSimplified;
+import com.wrapper.spotify.model_objects.specification.PlaylistTrack;
+import com.wrapper.spotify.requests.data.AbstractDataRequest;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Component to retrieve the most recent tracks of a source playlist, served
+ * from the track tail cache when the playlist's snapshot ID has not changed
+ * since the tracks were cached.
+ */
+@Component
+public class TrackTailCacheComponent {
+    private static final Logger s_Logger = LogManager.getLogger();
+
+    static final int USER_PLAYLIST_PAGE_SIZE = 50;
+
+    @Autowired
+    private SpotifyApiComponent spotifyApiComponent;
+
+    @Autowired
+    private PlaylistTrackTailRepository playlistTrackTailRepository;
+
+    @Value("${spotify.track.cache.enabled}")
+    private boolean enabled;
+
+    /**
+     * Resolve the snapshot IDs and track totals of many playlists at once from
+     * the current user's list of playlists, which includes both for every
+     * playlist on each page. Paging stops once every playlist is resolved, and
+     * never takes more than half as many requests as looking up each playlist
+     * individually would; playlists left unresolved are looked up individually
+     * when their tracks are retrieved.
+     *
+     * @param spotifyApi spotify API instance with tokens set
+     * @param playlists  playlists to resolve
+     */
+    public void resolveVersions(SpotifyApi spotifyApi, List<PlaylistIdWrapper> playlists) {
+        Map<String, PlaylistIdWrapper> unresolved = new HashMap<>();
+        for (PlaylistIdWrapper playlist : playlists) {
+            if (playlist.getSnapshotId() == null || playlist.getTotal() == null) {
+                unresolved.put(playlist.getPlaylistId(), playlist);
+            }
+        }
+
+        int maxPages = unresolved.size() / 2;
+        try {
+            for (int page = 0; page < maxPages && !unresolved.isEmpty(); page++) {
+                AbstractDataRequest pageRequest = spotifyApi.getListOfCurrentUsersPlaylists()
+                        .limit(USER_PLAYLIST_PAGE_SIZE)
+                        .offset(page * USER_PLAYLIST_PAGE_SIZE)
+                        .build();
+                Paging<PlaylistSimplified> userPlaylists = spotifyApiComponent.executeRequest(pageRequest,
+                        "Unable to retrieve user playlists");
+                for (PlaylistSimplified userPlaylist : userPlaylists.getItems()) {
+                    PlaylistIdWrapper playlist = unresolved.remove(userPlaylist.getId());
+                    if (playlist != null && userPlaylist.getTracks() != null) {
+                        playlist.setSnapshotId(userPlaylist.getSnapshotId());
+                        playlist.setTotal(userPlaylist.getTracks().getTotal());
+                    }
+                }
+                if (userPlaylists.getNext() == null) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            s_Logger.warn("Unable to resolve playlist versions from user playlists", e);
+        }
+    }
+
+    /**
+     * Get the most recent tracks of a playlist, and set the offset of the
+     * playlist wrapper to the position of the first returned track and its
+     * snapshot ID to the current snapshot of the playlist. The snapshot ID and
+     * track total are looked up unless already resolved.
+     *
+     * @param spotifyApi  spotify API instance with tokens set
+     * @param playlist    playlist to retrieve tracks for
+     * @param numTracks   number of tracks to retrieve
+     * @param pageFetcher fetcher for tracks that are not cached
+     * @return most recent tracks, in playlist order
+     */
+    public PlaylistTrack[] getRecentTracks(SpotifyApi spotifyApi,
+                                           PlaylistIdWrapper playlist,
+                                           int numTracks,
+                                           PlaylistCursor.PageFetcher pageFetcher) {
+        if (playlist.getSnapshotId() == null || playlist.getTotal() == null) {
+            Playlist version = getPlaylistVersion(spotifyApi, playlist);
+            playlist.setSnapshotId(version.getSnapshotId());
+            playlist.setTotal(version.getTracks().getTotal());
+        }
+        String snapshotId = playlist.getSnapshotId();
+        int total = playlist.getTotal();
+        int offset = Math.max(total - numTracks, 0);
+        playlist.setOffset(offset);
+
+        PlaylistTrackTail cached = enabled
+                ? playlistTrackTailRepository.findByPlaylistId(playlist.getPlaylistId())
+                : null;
+        if (cached != null
+                && cached.getSnapshotId().equals(snapshotId)
+                && cached.getTotal() == total
+                && cached.getOffset() <= offset) {
+            s_Logger.debug("Serving tracks for playlist {} from cache", playlist.getPlaylistId());
+            PlaylistTrack[] tracks = cached.getTracks();
+            return Arrays.copyOfRange(tracks, offset - cached.getOffset(), tracks.length);
+        }
+
+        PlaylistTrack[] tracks = fetchTracks(playlist, offset, total - offset, pageFetcher);
+        if (enabled && snapshotId != null) {
+            playlistTrackTailRepository.save(new PlaylistTrackTail(playlist.getPlaylistId(),
+                    snapshotId, total, offset, tracks));
+        }
+        return tracks;
+    }
+
+    /**
+     * Retrieve a range of a playlist's tracks in pages no larger than Spotify's
+     * limit, stopping early if the playlist turns out to be shorter than expected.
+     *
+     * @param playlist    playlist to retrieve tracks for
+     * @param offset      position of first track to retrieve
+     * @param count       number of tracks to retrieve
+     * @param pageFetcher fetcher for pages of tracks
+     * @return retrieved tracks, in playlist order
+     */
+    private static PlaylistTrack[] fetchTracks(PlaylistIdWrapper playlist, int offset, int count,
+                                               PlaylistCursor.PageFetcher pageFetcher) {
+        List<PlaylistTrack> tracks = new ArrayList<>(count);
+        for (int pageOffset = offset; pageOffset < offset + count; pageOffset += PlaylistCursor.MAX_PAGE_SIZE) {
+            int limit = Math.min(PlaylistCursor.MAX_PAGE_SIZE, offset + count - pageOffset);
+            PlaylistTrack[] page = pageFetcher.fetch(playlist, limit, pageOffset);
+            tracks.addAll(Arrays.asList(page));
+            if (page.length < limit) {
+                break;
+            }
+        }
+        return tracks.toArray(new PlaylistTrack[0]);
+    }
+
+    /**
+     * Retrieve the snapshot ID and number of tracks of a playlist.
+     *
+     * @param spotifyApi spotify API instance with tokens set
+     * @param playlist   playlist to retrieve
+     * @return playlist with snapshot ID and track total set
+     */
+    private Playlist getPlaylistVersion(SpotifyApi spotifyApi, PlaylistIdWrapper playlist) {
+        AbstractDataRequest versionRequest = spotifyApi
+                .getPlaylist(playlist.getUserId(), playlist.getPlaylistId())
+                .fields("snapshot_id,tracks(total)")
+                .build();
+        String errorMessage = "Unable to retrieve snapshot for playlist " + playlist.getPlaylistId();
+        return spotifyApiComponent.executeRequest(versionRequest, errorMessage);
+    }
+}
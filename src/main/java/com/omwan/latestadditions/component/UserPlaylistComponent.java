@@ -1,12 +1,15 @@
 package com.omwan.latestadditions.component;
 
 import com.omwan.latestadditions.db.UserPlaylistRepository;
+import com.omwan.latestadditions.db.UserTokenRepository;
+import com.omwan.latestadditions.dto.BuildPlaylistRequest;
 import com.omwan.latestadditions.dto.PlaylistIdWrapper;
 import com.omwan.latestadditions.db.UserPlaylist;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -18,6 +21,9 @@ public class UserPlaylistComponent {
     @Autowired
     private UserPlaylistRepository userPlaylistRepository;
 
+    @Autowired
+    private UserTokenRepository userTokenRepository;
+
     /**
      * Retrieve IDs of all saved playlists for a given user.
      *
@@ -31,16 +37,92 @@ public class UserPlaylistComponent {
     }
 
     /**
-     * Save a playlist for a given user.
+     * Retrieve a saved playlist for a given user.
+     *
+     * @param userId     user ID the playlist is saved for
+     * @param playlistId ID of playlist to retrieve
+     * @return saved playlist, or null if the user has not saved the playlist
+     */
+    public UserPlaylist getUserPlaylist(String userId, String playlistId) {
+        return userPlaylistRepository.findByUserIdAndPlaylistId(userId, playlistId);
+    }
+
+    /**
+     * Save a playlist for a given user, or mark it as rebuilt if it has
+     * already been saved.
      *
      * @param userId     user ID to save playlist for
      * @param playlistId ID of playlist to save
      */
     public void saveUserPlaylist(String userId, String playlistId) {
-        UserPlaylist userPlaylist = new UserPlaylist();
-        userPlaylist.setUserId(userId);
-        userPlaylist.setPlaylistId(playlistId);
-        userPlaylistRepository.save(userPlaylist);
+        userPlaylistRepository.save(new UserPlaylist(userId, playlistId));
+    }
+
+    /**
+     * Save many playlists in a single transaction, marking any that have
+     * already been saved as rebuilt instead of saving them twice.
+     *
+     * @param userPlaylists playlists to save
+     * @return number of playlists saved or updated
+     */
+    public int upsertUserPlaylists(List<UserPlaylist> userPlaylists) {
+        return userPlaylistRepository.upsertAll(userPlaylists);
+    }
+
+    /**
+     * Record that a saved playlist has just been rebuilt from the given
+     * specification, so that it can be rebuilt again in the background.
+     *
+     * @param userId          user ID the playlist is saved for
+     * @param playlistId      ID of playlist that was rebuilt
+     * @param buildSpec       specification to rebuild the playlist with
+     * @param sourceSnapshots mapping of source playlist IDs to their snapshot IDs
+     */
+    public void recordPlaylistBuild(String userId, String playlistId, BuildPlaylistRequest buildSpec,
+                                    Map<String, String> sourceSnapshots) {
+        userPlaylistRepository.updateBuild(userId, playlistId, buildSpec, sourceSnapshots);
+    }
+
+    /**
+     * Record that a saved playlist has just been checked for changes to its
+     * sources without being rebuilt.
+     *
+     * @param userId     user ID the playlist is saved for
+     * @param playlistId ID of playlist that was checked
+     */
+    public void markPlaylistChecked(String userId, String playlistId) {
+        userPlaylistRepository.updateLastChecked(userId, playlistId);
+    }
+
+    /**
+     * Retrieve saved playlists that are due to be refreshed.
+     *
+     * @param checkedBefore epoch milliseconds playlists must not have been checked since
+     * @param limit         maximum number of playlists to retrieve
+     * @return list of saved playlists
+     */
+    public List<UserPlaylist> getPlaylistsDueForRefresh(long checkedBefore, int limit) {
+        return userPlaylistRepository.findDueForRefresh(checkedBefore, limit);
+    }
+
+    /**
+     * Retrieve the refresh token stored for a user.
+     *
+     * @param userId user ID to retrieve refresh token for
+     * @return refresh token, or null if none is stored
+     */
+    public String getRefreshToken(String userId) {
+        return userTokenRepository.findRefreshToken(userId);
+    }
+
+    /**
+     * Store the refresh token for a user.
+     *
+     * @param userId       user ID to store refresh token for
+     * @param refreshToken refresh token
+     */
+    public void saveRefreshToken(String userId, String refreshToken) {
+        userTokenRepository.save(userId, refreshToken);
     }
 
     /**
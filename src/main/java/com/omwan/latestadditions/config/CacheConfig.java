@@ -0,0 +1,29 @@
+package com.omwan.latestadditions.config;
+
+import com.omwan.latestadditions.cache.PlaylistMetadataCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configurations for caches of Spotify API data.
+ */
+@Configuration
+public class CacheConfig {
+
+    @Value("${spotify.metadata.cache.max.size}")
+    private int metadataCacheMaxSize;
+
+    @Value("${spotify.metadata.cache.ttl.ms}")
+    private long metadataCacheTtlMs;
+
+    /**
+     * Build cache of playlist details shown in the UI.
+     *
+     * @return playlist metadata cache
+     */
+    @Bean
+    public PlaylistMetadataCache playlistMetadataCache() {
+        return new PlaylistMetadataCache(metadataCacheMaxSize, metadataCacheTtlMs);
+    }
+}
@@ -0,0 +1,35 @@
+package com.omwan.latestadditions.config;
+
+import com.omwan.latestadditions.db.SqliteConnectionPool;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Configurations for access to the sqlite database.
+ */
+@Configuration
+public class DatabaseConfig {
+
+    @Value("${sqlite.url}")
+    private String url;
+
+    @Value("${sqlite.pool.size}")
+    private int poolSize;
+
+    @Value("${sqlite.busy.timeout.ms}")
+    private int busyTimeoutMs;
+
+    @Value("${sqlite.pool.acquire.timeout.ms}")
+    private long acquireTimeoutMs;
+
+    /**
+     * Build pool of connections shared by repositories.
+     *
+     * @return connection pool
+     */
+    @Bean(destroyMethod = "close")
+    public SqliteConnectionPool sqliteConnectionPool() {
+        return new SqliteConnectionPool(url, poolSize, busyTimeoutMs, acquireTimeoutMs);
+    }
+}
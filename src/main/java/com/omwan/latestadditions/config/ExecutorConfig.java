@@ -0,0 +1,69 @@
+package com.omwan.latestadditions.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configurations for executors used to make Spotify API calls concurrently.
+ */
+@Configuration
+public class ExecutorConfig {
+
+    @Value("${spotify.fetch.parallelism}")
+    private int fetchParallelism;
+
+    @Value("${spotify.build.parallelism}")
+    private int buildParallelism;
+
+    @Value("${spotify.build.queue.capacity}")
+    private int buildQueueCapacity;
+
+    @Value("${spotify.refresh.parallelism}")
+    private int refreshParallelism;
+
+    /**
+     * Build bounded executor used to retrieve tracks for source playlists
+     * concurrently.
+     *
+     * @return executor service
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService playlistFetchExecutor() {
+        return Executors.newFixedThreadPool(fetchParallelism,
+                new CustomizableThreadFactory("playlist-fetch-"));
+    }
+
+    /**
+     * Build bounded executor used to run playlist builds in the background.
+     * Builds submitted while the queue is full are rejected rather than
+     * queued indefinitely.
+     *
+     * @return executor service
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService playlistBuildExecutor() {
+        return new ThreadPoolExecutor(buildParallelism, buildParallelism, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(buildQueueCapacity),
+                new CustomizableThreadFactory("playlist-build-"));
+    }
+
+    /**
+     * Build executor used to run delayed background refreshes of saved playlists.
+     *
+     * @return scheduled executor service
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ScheduledExecutorService playlistRefreshExecutor() {
+        return Executors.newScheduledThreadPool(refreshParallelism,
+                new CustomizableThreadFactory("playlist-refresh-"));
+    }
+}
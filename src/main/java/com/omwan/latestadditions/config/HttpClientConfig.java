@@ -0,0 +1,110 @@
+package com.omwan.latestadditions.config;
+
+import com.omwan.latestadditions.http.PooledHttpManager;
+import com.omwan.latestadditions.http.RequestScheduler;
+import com.wrapper.spotify.IHttpManager;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configurations for the HTTP client shared by all Spotify API calls.
+ */
+@Configuration
+public class HttpClientConfig {
+
+    @Value("${spotify.http.pool.max.total}")
+    private int maxTotalConnections;
+
+    @Value("${spotify.http.pool.max.per.route}")
+    private int maxConnectionsPerRoute;
+
+    @Value("${spotify.http.keep.alive.ms}")
+    private long keepAliveMs;
+
+    @Value("${spotify.http.connect.timeout.ms}")
+    private int connectTimeoutMs;
+
+    @Value("${spotify.http.socket.timeout.ms}")
+    private int socketTimeoutMs;
+
+    @Value("${spotify.rate.permits.per.second}")
+    private double permitsPerSecond;
+
+    @Value("${spotify.rate.burst}")
+    private int burst;
+
+    @Value("${spotify.rate.acquire.timeout.ms}")
+    private long acquireTimeoutMs;
+
+    /**
+     * Build connection pool for the Spotify API hosts.
+     *
+     * @return connection manager
+     */
+    @Bean(destroyMethod = "shutdown")
+    public PoolingHttpClientConnectionManager spotifyConnectionManager() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(
+                keepAliveMs, TimeUnit.MILLISECONDS);
+        connectionManager.setMaxTotal(maxTotalConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        return connectionManager;
+    }
+
+    /**
+     * Build HTTP client that keeps connections alive for reuse, honouring any
+     * shorter keep-alive the server asks for, and evicts idle connections.
+     *
+     * @param connectionManager connection pool
+     * @return HTTP client
+     */
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient spotifyHttpClient(PoolingHttpClientConnectionManager connectionManager) {
+        ConnectionKeepAliveStrategy keepAliveStrategy = (response, context) -> {
+            long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE
+                    .getKeepAliveDuration(response, context);
+            return serverKeepAlive > 0 ? Math.min(serverKeepAlive, keepAliveMs) : keepAliveMs;
+        };
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(keepAliveStrategy)
+                .evictExpiredConnections()
+                .evictIdleConnections(keepAliveMs, TimeUnit.MILLISECONDS)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(connectTimeoutMs)
+                        .setConnectionRequestTimeout(connectTimeoutMs)
+                        .setSocketTimeout(socketTimeoutMs)
+                        .build())
+                .build();
+    }
+
+    /**
+     * Build HTTP manager shared by every SpotifyApi instance.
+     *
+     * @param spotifyHttpClient pooled HTTP client
+     * @return HTTP manager
+     */
+    @Bean
+    public IHttpManager spotifyHttpManager(CloseableHttpClient spotifyHttpClient) {
+        return new PooledHttpManager(spotifyHttpClient);
+    }
+
+    /**
+     * Build scheduler that rate limits every call to the Spotify API.
+     *
+     * @return request scheduler
+     */
+    @Bean
+    public RequestScheduler requestScheduler() {
+        return new RequestScheduler(permitsPerSecond, burst, acquireTimeoutMs);
+    }
+}
@@ -0,0 +1,12 @@
+package com.omwan.latestadditions.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Configurations to enable scheduled background tasks.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,15 +1,13 @@
 package com.omwan.latestadditions.controller;
 
+import com.omwan.latestadditions.dto.SavedPlaylistsResponse;
 import com.omwan.latestadditions.service.SavedPlaylistService;
-import com.wrapper.spotify.model_objects.specification.Playlist;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.List;
-
 /**
  * Controller for saved playlist-related services.
  */
@@ -21,7 +19,7 @@ public class SavedPlaylistController {
     private SavedPlaylistService savedPlaylistService;
 
     @RequestMapping(method = RequestMethod.GET, value = "")
-    public List<Playlist> getExistingPlaylists() {
+    public SavedPlaylistsResponse getExistingPlaylists() {
         return savedPlaylistService.getExistingPlaylists();
     }
 
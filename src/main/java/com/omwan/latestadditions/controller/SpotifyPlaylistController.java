@@ -1,6 +1,8 @@
 package com.omwan.latestadditions.controller;
 
+import com.omwan.latestadditions.dto.BuildJob;
 import com.omwan.latestadditions.dto.BuildPlaylistRequest;
+import com.omwan.latestadditions.dto.CacheStats;
 import com.omwan.latestadditions.dto.LatestPlaylistResponse;
 import com.omwan.latestadditions.service.SpotifyPlaylistService;
 import com.wrapper.spotify.model_objects.specification.Paging;
@@ -35,8 +37,28 @@ public class SpotifyPlaylistController {
         return spotifyPlaylistService.getPlaylistDetails(playlistId);
     }
 
+    @RequestMapping(method = RequestMethod.GET, value = "/cache/stats")
+    public CacheStats getMetadataCacheStats() {
+        return spotifyPlaylistService.getMetadataCacheStats();
+    }
+
     @RequestMapping(method = RequestMethod.POST, value = "")
     public LatestPlaylistResponse buildLatestAdditionsPlaylist(@RequestBody BuildPlaylistRequest request) {
         return spotifyPlaylistService.buildLatestAdditionsPlaylist(request);
     }
+
+    @RequestMapping(method = RequestMethod.POST, value = "/jobs")
+    public BuildJob submitLatestAdditionsBuild(@RequestBody BuildPlaylistRequest request) {
+        return spotifyPlaylistService.submitLatestAdditionsBuild(request);
+    }
+
+    @RequestMapping(method = RequestMethod.POST, value = "/{id}/rebuild")
+    public BuildJob submitSavedPlaylistRebuild(@PathVariable(name = "id") String playlistId) {
+        return spotifyPlaylistService.submitSavedPlaylistRebuild(playlistId);
+    }
+
+    @RequestMapping(method = RequestMethod.GET, value = "/jobs/{id}")
+    public BuildJob getBuildJob(@PathVariable(name = "id") String jobId) {
+        return spotifyPlaylistService.getBuildJob(jobId);
+    }
 }
\ No newline at end of file
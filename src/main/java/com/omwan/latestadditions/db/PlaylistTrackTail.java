@@ -0,0 +1,67 @@
+package com.omwan.latestadditions.db;
+
+import com.wrapper.spotify.model_objects.specification.PlaylistTrack;
+
+/**
+ * Class to represent data in playlist_track_tail table: the most recent tracks
+ * of a playlist as of a given snapshot.
+ */
+public class PlaylistTrackTail {
+
+    private String playlistId;
+    private String snapshotId;
+    private int total;
+    private int offset;
+    private PlaylistTrack[] tracks;
+
+    public PlaylistTrackTail() {
+    }
+
+    public PlaylistTrackTail(String playlistId, String snapshotId, int total, int offset, PlaylistTrack[] tracks) {
+        this.playlistId = playlistId;
+        this.snapshotId = snapshotId;
+        this.total = total;
+        this.offset = offset;
+        this.tracks = tracks;
+    }
+
+    public String getPlaylistId() {
+        return playlistId;
+    }
+
+    public void setPlaylistId(String playlistId) {
+        this.playlistId = playlistId;
+    }
+
+    public String getSnapshotId() {
+        return snapshotId;
+    }
+
+    public void setSnapshotId(String snapshotId) {
+        this.snapshotId = snapshotId;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public void setOffset(int offset) {
+        this.offset = offset;
+    }
+
+    public PlaylistTrack[] getTracks() {
+        return tracks;
+    }
+
+    public void setTracks(PlaylistTrack[] tracks) {
+        this.tracks = tracks;
+    }
+}
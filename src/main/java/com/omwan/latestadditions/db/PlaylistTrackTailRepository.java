@@ -0,0 +1,86 @@
+package com.omwan.latestadditions.db;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializer;
+import com.wrapper.spotify.model_objects.specification.PlaylistTrack;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Date;
+
+/**
+ * Class to access sqlite database for cached playlist track tails. Tracks are
+ * stored as JSON, one row per playlist.
+ */
+@Component
+@DependsOn("schemaMigration")
+public class PlaylistTrackTailRepository {
+    private static final Logger s_Logger = LogManager.getLogger();
+
+    private static final String SELECT_SQL = "select * from playlist_track_tail where playlist_id = ?";
+    private static final String UPSERT_SQL = "insert into playlist_track_tail "
+            + "(playlist_id, snapshot_id, total, track_offset, tracks, updated_at) values (?, ?, ?, ?, ?, ?) "
+            + "on conflict (playlist_id) do update set snapshot_id = excluded.snapshot_id, "
+            + "total = excluded.total, track_offset = excluded.track_offset, "
+            + "tracks = excluded.tracks, updated_at = excluded.updated_at";
+
+    private static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(Date.class, (JsonSerializer<Date>) (date, type, context) ->
+                    new JsonPrimitive(date.getTime()))
+            .registerTypeAdapter(Date.class, (JsonDeserializer<Date>) (json, type, context) ->
+                    new Date(json.getAsLong()))
+            .create();
+
+    @Autowired
+    private SqliteConnectionPool connectionPool;
+
+    public PlaylistTrackTail findByPlaylistId(String playlistId) {
+        try (PooledConnection connection = connectionPool.acquire()) {
+            PreparedStatement selectStmt = connection.prepare(SELECT_SQL);
+            selectStmt.setString(1, playlistId);
+
+            try (ResultSet rs = selectStmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                PlaylistTrackTail tail = new PlaylistTrackTail();
+                tail.setPlaylistId(rs.getString("playlist_id"));
+                tail.setSnapshotId(rs.getString("snapshot_id"));
+                tail.setTotal(rs.getInt("total"));
+                tail.setOffset(rs.getInt("track_offset"));
+                tail.setTracks(GSON.fromJson(rs.getString("tracks"), PlaylistTrack[].class));
+                return tail;
+            }
+        } catch (SQLException | JsonParseException e) {
+            s_Logger.warn("Exception occurred while reading from sqlite", e);
+        }
+
+        return null;
+    }
+
+    public void save(PlaylistTrackTail tail) {
+        try (PooledConnection connection = connectionPool.acquire()) {
+            PreparedStatement upsertStmt = connection.prepare(UPSERT_SQL);
+            upsertStmt.setString(1, tail.getPlaylistId());
+            upsertStmt.setString(2, tail.getSnapshotId());
+            upsertStmt.setInt(3, tail.getTotal());
+            upsertStmt.setInt(4, tail.getOffset());
+            upsertStmt.setString(5, GSON.toJson(tail.getTracks()));
+            upsertStmt.setLong(6, System.currentTimeMillis());
+
+            upsertStmt.execute();
+        } catch (SQLException e) {
+            s_Logger.warn("Exception occurred while saving to sqlite", e);
+        }
+    }
+}
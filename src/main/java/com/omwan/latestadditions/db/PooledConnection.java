@@ -0,0 +1,115 @@
+package com.omwan.latestadditions.db;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Connection borrowed from a SqliteConnectionPool. Prepared statements are
+ * cached by SQL for the lifetime of the underlying connection, so callers must
+ * not close statements obtained from this connection, only their result sets.
+ * Closing this connection returns it to the pool.
+ */
+public class PooledConnection implements AutoCloseable {
+    private static final Logger s_Logger = LogManager.getLogger();
+
+    private final SqliteConnectionPool pool;
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+    PooledConnection(SqliteConnectionPool pool, Connection connection) {
+        this.pool = pool;
+        this.connection = connection;
+    }
+
+    /**
+     * Get a prepared statement for the given SQL, reusing a previously prepared
+     * statement if there is one.
+     *
+     * @param sql SQL to prepare
+     * @return prepared statement with no parameters set
+     * @throws SQLException if the statement cannot be prepared
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement == null) {
+            statement = connection.prepareStatement(sql);
+            statements.put(sql, statement);
+        } else {
+            statement.clearParameters();
+            statement.clearBatch();
+        }
+        return statement;
+    }
+
+    /**
+     * Get the underlying connection, for managing transactions.
+     *
+     * @return underlying connection
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Return the connection to the pool.
+     */
+    @Override
+    public void close() {
+        pool.release(this);
+    }
+
+    /**
+     * Check if the underlying connection is still open.
+     *
+     * @return whether or not the connection is usable
+     */
+    boolean isValid() {
+        try {
+            return !connection.isClosed();
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Roll back any transaction left open by the borrower and restore autocommit.
+     *
+     * @return whether or not the connection can be reused
+     */
+    boolean reset() {
+        try {
+            if (connection.isClosed()) {
+                return false;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            s_Logger.warn("Unable to reset sqlite connection", e);
+            return false;
+        }
+    }
+
+    /**
+     * Close cached statements and the underlying connection.
+     */
+    void closePhysical() {
+        try {
+            for (PreparedStatement statement : statements.values()) {
+                statement.close();
+            }
+            statements.clear();
+            connection.close();
+        } catch (SQLException e) {
+            s_Logger.warn("Unable to close sqlite connection", e);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.omwan.latestadditions.db;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class to bring the sqlite database schema up to date on startup. The schema
+ * version is tracked in the user_version pragma; each migration runs in its own
+ * transaction and bumps the version by one.
+ */
+@Component
+public class SchemaMigration {
+    private static final Logger s_Logger = LogManager.getLogger();
+
+    private static final List<List<String>> MIGRATIONS = Arrays.asList(
+            // 1: key user_playlist on (user_id, playlist_id), index playlist_id,
+            // and record when each playlist was created and last built
+            Arrays.asList(
+                    "create table if not exists user_playlist (user_id text, playlist_id text)",
+                    "create table user_playlist_v1 ("
+                            + "user_id text not null, "
+                            + "playlist_id text not null, "
+                            + "created_at integer not null default (cast(strftime('%s', 'now') as integer) * 1000), "
+                            + "last_built_at integer, "
+                            + "primary key (user_id, playlist_id))",
+                    "insert or ignore into user_playlist_v1 (user_id, playlist_id) "
+                            + "select user_id, playlist_id from user_playlist "
+                            + "where user_id is not null and playlist_id is not null",
+                    "drop table user_playlist",
+                    "alter table user_playlist_v1 rename to user_playlist",
+                    "create index user_playlist_playlist_id on user_playlist (playlist_id)"
+            ),
+            // 2: cache the most recent tracks of source playlists by snapshot
+            Collections.singletonList(
+                    "create table playlist_track_tail ("
+                            + "playlist_id text primary key, "
+                            + "snapshot_id text not null, "
+                            + "total integer not null, "
+                            + "track_offset integer not null, "
+                            + "tracks text not null, "
+                            + "updated_at integer not null)"
+            ),
+            // 3: store the build specification and source snapshots of saved
+            // playlists, and users' refresh tokens, so playlists can be rebuilt
+            // in the background
+            Arrays.asList(
+                    "alter table user_playlist add column build_spec text",
+                    "alter table user_playlist add column source_snapshots text",
+                    "alter table user_playlist add column last_checked_at integer",
+                    "create table user_token ("
+                            + "user_id text primary key, "
+                            + "refresh_token text not null, "
+                            + "updated_at integer not null)"
+            )
+    );
+
+    @Autowired
+    private SqliteConnectionPool connectionPool;
+
+    /**
+     * Apply every migration newer than the current schema version.
+     */
+    @PostConstruct
+    public void migrate() {
+        try (PooledConnection pooledConnection = connectionPool.acquire()) {
+            Connection connection = pooledConnection.getConnection();
+            int version = getSchemaVersion(connection);
+            for (int i = version; i < MIGRATIONS.size(); i++) {
+                applyMigration(connection, i + 1, MIGRATIONS.get(i));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Unable to migrate sqlite schema", e);
+        }
+    }
+
+    /**
+     * Get the latest schema version known to the application.
+     *
+     * @return latest schema version
+     */
+    public static int getLatestVersion() {
+        return MIGRATIONS.size();
+    }
+
+    private static int getSchemaVersion(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("pragma user_version")) {
+            return rs.getInt(1);
+        }
+    }
+
+    private static void applyMigration(Connection connection, int version, List<String> statements)
+            throws SQLException {
+        s_Logger.info("Migrating sqlite schema to version {}", version);
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+            statement.execute("pragma user_version = " + version);
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+}
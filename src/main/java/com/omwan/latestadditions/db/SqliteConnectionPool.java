@@ -0,0 +1,139 @@
+package com.omwan.latestadditions.db;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.sqlite.SQLiteConfig;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded pool of connections to a sqlite database. Connections are opened
+ * lazily in WAL journal mode with a busy timeout, so that readers do not block
+ * the writer and concurrent writers wait for the lock rather than failing.
+ */
+public class SqliteConnectionPool implements AutoCloseable {
+    private static final Logger s_Logger = LogManager.getLogger();
+
+    private final String url;
+    private final SQLiteConfig config;
+    private final long acquireTimeoutMs;
+    private final Semaphore permits;
+    private final BlockingQueue<PooledConnection> idleConnections;
+    private final List<PooledConnection> allConnections = new ArrayList<>();
+
+    private volatile boolean closed;
+
+    /**
+     * Create a pool of connections to the given database.
+     *
+     * @param url              JDBC url of the database
+     * @param maxConnections   maximum number of open connections
+     * @param busyTimeoutMs    time a connection waits for a database lock
+     * @param acquireTimeoutMs time to wait for a free connection
+     */
+    public SqliteConnectionPool(String url, int maxConnections, int busyTimeoutMs, long acquireTimeoutMs) {
+        this.url = url;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.permits = new Semaphore(maxConnections, true);
+        this.idleConnections = new LinkedBlockingQueue<>(maxConnections);
+
+        this.config = new SQLiteConfig();
+        config.setJournalMode(SQLiteConfig.JournalMode.WAL);
+        config.setSynchronous(SQLiteConfig.SynchronousMode.NORMAL);
+        config.setBusyTimeout(busyTimeoutMs);
+    }
+
+    /**
+     * Borrow a connection from the pool, opening a new one if no idle connection
+     * is available and the pool is not full. The connection is returned to the
+     * pool when it is closed.
+     *
+     * @return pooled connection
+     * @throws SQLException if no connection becomes available in time
+     */
+    public PooledConnection acquire() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            PooledConnection pooledConnection = idleConnections.poll();
+            if (pooledConnection == null || !pooledConnection.isValid()) {
+                discard(pooledConnection);
+                pooledConnection = open();
+            }
+            return pooledConnection;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Return a connection to the pool, discarding it if it is no longer usable.
+     *
+     * @param pooledConnection connection to return
+     */
+    void release(PooledConnection pooledConnection) {
+        try {
+            if (closed || !pooledConnection.reset()) {
+                discard(pooledConnection);
+            } else {
+                idleConnections.offer(pooledConnection);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Close every connection opened by the pool.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (allConnections) {
+            for (PooledConnection pooledConnection : allConnections) {
+                pooledConnection.closePhysical();
+            }
+            allConnections.clear();
+        }
+        idleConnections.clear();
+    }
+
+    private PooledConnection open() throws SQLException {
+        Connection connection = DriverManager.getConnection(url, config.toProperties());
+        PooledConnection pooledConnection = new PooledConnection(this, connection);
+        synchronized (allConnections) {
+            allConnections.add(pooledConnection);
+        }
+        return pooledConnection;
+    }
+
+    private void discard(PooledConnection pooledConnection) {
+        if (pooledConnection == null) {
+            return;
+        }
+        s_Logger.debug("Discarding sqlite connection");
+        synchronized (allConnections) {
+            allConnections.remove(pooledConnection);
+        }
+        pooledConnection.closePhysical();
+    }
+}
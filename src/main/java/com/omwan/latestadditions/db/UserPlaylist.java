@@ -1,5 +1,10 @@
 package com.omwan.latestadditions.db;
 
+import com.omwan.latestadditions.dto.BuildPlaylistRequest;
+
+import java.time.Instant;
+import java.util.Map;
+
 /**
  * Class to represent data in user_playlist table.
  */
@@ -7,6 +12,11 @@ public class UserPlaylist {
 
     private String userId;
     private String playlistId;
+    private Instant createdAt;
+    private Instant lastBuiltAt;
+    private Instant lastCheckedAt;
+    private BuildPlaylistRequest buildSpec;
+    private Map<String, String> sourceSnapshots;
 
     public UserPlaylist() {
     }
@@ -31,4 +41,49 @@ public class UserPlaylist {
     public void setPlaylistId(String playlistId) {
         this.playlistId = playlistId;
     }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Instant getLastBuiltAt() {
+        return lastBuiltAt;
+    }
+
+    public void setLastBuiltAt(Instant lastBuiltAt) {
+        this.lastBuiltAt = lastBuiltAt;
+    }
+
+    public Instant getLastCheckedAt() {
+        return lastCheckedAt;
+    }
+
+    public void setLastCheckedAt(Instant lastCheckedAt) {
+        this.lastCheckedAt = lastCheckedAt;
+    }
+
+    public BuildPlaylistRequest getBuildSpec() {
+        return buildSpec;
+    }
+
+    public void setBuildSpec(BuildPlaylistRequest buildSpec) {
+        this.buildSpec = buildSpec;
+    }
+
+    /**
+     * Get the snapshot IDs of the source playlists as of the last build.
+     *
+     * @return mapping of source playlist IDs to snapshot IDs
+     */
+    public Map<String, String> getSourceSnapshots() {
+        return sourceSnapshots;
+    }
+
+    public void setSourceSnapshots(Map<String, String> sourceSnapshots) {
+        this.sourceSnapshots = sourceSnapshots;
+    }
 }
@@ -1,81 +1,330 @@
 package com.omwan.latestadditions.db;
 
+import com.google.gson.ExclusionStrategy;
+import com.google.gson.FieldAttributes;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.omwan.latestadditions.dto.BuildPlaylistRequest;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
 import org.springframework.stereotype.Component;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.lang.reflect.Type;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Class to access sqlite database for user playlist data.
  */
 @Component
+@DependsOn("schemaMigration")
 public class UserPlaylistRepository {
     private static final Logger s_Logger = LogManager.getLogger();
 
-    @Value("${sqlite.url}")
-    private String url;
-    
+    private static final String SELECT_BY_USER_SQL = "select * from user_playlist where user_id = ?";
+    private static final String SELECT_BY_USER_AND_PLAYLIST_SQL =
+            "select * from user_playlist where user_id = ? and playlist_id = ?";
+    private static final String DELETE_BY_PLAYLIST_SQL = "delete from user_playlist where playlist_id = ?";
+    private static final String UPSERT_SQL =
+            "insert into user_playlist (user_id, playlist_id, created_at, last_built_at) values (?, ?, ?, ?) "
+            + "on conflict (user_id, playlist_id) do update set last_built_at = excluded.last_built_at";
+    private static final String SELECT_DUE_SQL = "select * from user_playlist where build_spec is not null "
+            + "and coalesce(last_checked_at, last_built_at, created_at) < ? "
+            + "order by coalesce(last_checked_at, last_built_at, created_at) limit ?";
+    private static final String UPDATE_BUILD_SQL = "update user_playlist set build_spec = ?, "
+            + "source_snapshots = ?, last_built_at = ?, last_checked_at = ? where user_id = ? and playlist_id = ?";
+    private static final String UPDATE_LAST_CHECKED_SQL =
+            "update user_playlist set last_checked_at = ? where user_id = ? and playlist_id = ?";
+
+    /**
+     * Fields of a build specification that are the same for every stored
+     * specification, since a rebuild always overwrites the saved playlist, and
+     * so are restored on read rather than stored.
+     */
+    private static final Set<String> IMPLIED_SPEC_FIELDS = new HashSet<>(Arrays.asList(
+            "overwriteExisting", "playlistToOverwrite"));
+
+    /**
+     * Gson instance for build specifications and source snapshots. Nulls are
+     * serialized so that source playlists, whose track counts are null until
+     * resolved by the server, are not dropped from the specification.
+     */
+    private static final Gson GSON = new GsonBuilder()
+            .serializeNulls()
+            .setExclusionStrategies(new ExclusionStrategy() {
+                @Override
+                public boolean shouldSkipField(FieldAttributes field) {
+                    return field.getDeclaringClass() == BuildPlaylistRequest.class
+                            && IMPLIED_SPEC_FIELDS.contains(field.getName());
+                }
+
+                @Override
+                public boolean shouldSkipClass(Class<?> clazz) {
+                    return false;
+                }
+            })
+            .create();
+    private static final Type SNAPSHOTS_TYPE = new TypeToken<Map<String, String>>() {
+    }.getType();
+
+    static final int MAX_BATCH_SIZE = 500;
+
+    @Autowired
+    private SqliteConnectionPool connectionPool;
+
     public List<UserPlaylist> findByUserId(String userId) {
         List<UserPlaylist> playlists = new ArrayList<>();
-        String selectSql = "select * from user_playlist where user_id = ?";
-
-        try (
-                Connection connection = DriverManager.getConnection(url);
-                PreparedStatement insertStmt = connection.prepareStatement(selectSql)
-        ) {
-            insertStmt.setString(1, userId);
-
-            ResultSet rs = insertStmt.executeQuery();
-            while (rs.next()) {
-                UserPlaylist userPlaylist = new UserPlaylist();
-                userPlaylist.setUserId(rs.getString("user_id"));
-                userPlaylist.setPlaylistId(rs.getString("playlist_id"));
-                playlists.add(userPlaylist);
+
+        try (PooledConnection connection = connectionPool.acquire()) {
+            PreparedStatement selectStmt = connection.prepare(SELECT_BY_USER_SQL);
+            selectStmt.setString(1, userId);
+
+            try (ResultSet rs = selectStmt.executeQuery()) {
+                while (rs.next()) {
+                    playlists.add(toUserPlaylist(rs));
+                }
             }
         } catch (SQLException e) {
-            s_Logger.warn("Exception occurred while saving to sqlite", e);
+            s_Logger.warn("Exception occurred while reading from sqlite", e);
+        }
+
+        return playlists;
+    }
+
+    public UserPlaylist findByUserIdAndPlaylistId(String userId, String playlistId) {
+        try (PooledConnection connection = connectionPool.acquire()) {
+            PreparedStatement selectStmt = connection.prepare(SELECT_BY_USER_AND_PLAYLIST_SQL);
+            selectStmt.setString(1, userId);
+            selectStmt.setString(2, playlistId);
+
+            try (ResultSet rs = selectStmt.executeQuery()) {
+                return rs.next() ? toUserPlaylist(rs) : null;
+            }
+        } catch (SQLException e) {
+            s_Logger.warn("Exception occurred while reading from sqlite", e);
+        }
+
+        return null;
+    }
+
+    /**
+     * Find playlists with a stored build specification that have not been
+     * built or checked for changes since the given time, least recently
+     * checked first.
+     *
+     * @param checkedBefore epoch milliseconds playlists must not have been checked since
+     * @param limit         maximum number of playlists to return
+     * @return list of playlists due for a refresh
+     */
+    public List<UserPlaylist> findDueForRefresh(long checkedBefore, int limit) {
+        List<UserPlaylist> playlists = new ArrayList<>();
+
+        try (PooledConnection connection = connectionPool.acquire()) {
+            PreparedStatement selectStmt = connection.prepare(SELECT_DUE_SQL);
+            selectStmt.setLong(1, checkedBefore);
+            selectStmt.setInt(2, limit);
+
+            try (ResultSet rs = selectStmt.executeQuery()) {
+                while (rs.next()) {
+                    playlists.add(toUserPlaylist(rs));
+                }
+            }
+        } catch (SQLException e) {
+            s_Logger.warn("Exception occurred while reading from sqlite", e);
         }
 
         return playlists;
     }
 
     public int deleteByPlaylistId(String playlistId) {
-        String deleteSql = "delete from user_playlist where playlist_id = ?";
-        try (
-                Connection connection = DriverManager.getConnection(url);
-                PreparedStatement insertStmt = connection.prepareStatement(deleteSql)
-        ) {
-            insertStmt.setString(1, playlistId);
-
-            insertStmt.execute();
+        try (PooledConnection connection = connectionPool.acquire()) {
+            PreparedStatement deleteStmt = connection.prepare(DELETE_BY_PLAYLIST_SQL);
+            deleteStmt.setString(1, playlistId);
+
+            return deleteStmt.executeUpdate();
         } catch (SQLException e) {
-            s_Logger.warn("Exception occurred while saving to sqlite", e);
+            s_Logger.warn("Exception occurred while deleting from sqlite", e);
         }
 
         return 0;
     }
 
+    /**
+     * Save a row, updating its last built time if it already exists rather
+     * than duplicating it.
+     *
+     * @param userPlaylist row to save
+     */
     public void save(UserPlaylist userPlaylist) {
-        String insertSql = "insert into user_playlist values(?, ?)";
-        try (
-                Connection connection = DriverManager.getConnection(url);
-                PreparedStatement insertStmt = connection.prepareStatement(insertSql)
-        ) {
-            insertStmt.setString(1, userPlaylist.getUserId());
-            insertStmt.setString(2, userPlaylist.getPlaylistId());
-
-            insertStmt.execute();
+        upsertAll(Collections.singletonList(userPlaylist));
+    }
+
+    /**
+     * Insert the given rows in a single transaction, updating the last built
+     * time of rows that already exist rather than duplicating them.
+     *
+     * @param userPlaylists rows to insert or update
+     * @return number of rows inserted or updated
+     */
+    public int upsertAll(Collection<UserPlaylist> userPlaylists) {
+        return writeBatch(UPSERT_SQL, userPlaylists);
+    }
+
+    /**
+     * Record a build of a saved playlist, along with the specification it was
+     * built from and the snapshot IDs of its source playlists. Only the parts
+     * of the specification needed to rebuild the playlist are stored; on read,
+     * the specification is set to overwrite the playlist, incrementally or not
+     * as it was stored.
+     *
+     * @param userId          user ID the playlist is saved for
+     * @param playlistId      ID of playlist that was built
+     * @param buildSpec       specification to rebuild the playlist with
+     * @param sourceSnapshots mapping of source playlist IDs to snapshot IDs
+     * @return number of rows updated
+     */
+    public int updateBuild(String userId, String playlistId, BuildPlaylistRequest buildSpec,
+                           Map<String, String> sourceSnapshots) {
+        try (PooledConnection connection = connectionPool.acquire()) {
+            long now = System.currentTimeMillis();
+            PreparedStatement updateStmt = connection.prepare(UPDATE_BUILD_SQL);
+            updateStmt.setString(1, GSON.toJson(buildSpec));
+            updateStmt.setString(2, GSON.toJson(sourceSnapshots));
+            updateStmt.setLong(3, now);
+            updateStmt.setLong(4, now);
+            updateStmt.setString(5, userId);
+            updateStmt.setString(6, playlistId);
+
+            return updateStmt.executeUpdate();
+        } catch (SQLException e) {
+            s_Logger.warn("Exception occurred while saving to sqlite", e);
+        }
+
+        return 0;
+    }
+
+    public int updateLastChecked(String userId, String playlistId) {
+        try (PooledConnection connection = connectionPool.acquire()) {
+            PreparedStatement updateStmt = connection.prepare(UPDATE_LAST_CHECKED_SQL);
+            updateStmt.setLong(1, System.currentTimeMillis());
+            updateStmt.setString(2, userId);
+            updateStmt.setString(3, playlistId);
+
+            return updateStmt.executeUpdate();
         } catch (SQLException e) {
             s_Logger.warn("Exception occurred while saving to sqlite", e);
         }
+
+        return 0;
+    }
+
+    /**
+     * Write rows with JDBC batches of at most MAX_BATCH_SIZE statements, all
+     * within one transaction. Missing timestamps are set to the current time.
+     *
+     * @param sql           insert statement taking user ID, playlist ID, and timestamps
+     * @param userPlaylists rows to write
+     * @return number of rows written, or 0 if the transaction was rolled back
+     */
+    private int writeBatch(String sql, Collection<UserPlaylist> userPlaylists) {
+        if (userPlaylists.isEmpty()) {
+            return 0;
+        }
+
+        long now = System.currentTimeMillis();
+        try (PooledConnection pooledConnection = connectionPool.acquire()) {
+            Connection connection = pooledConnection.getConnection();
+            connection.setAutoCommit(false);
+            try {
+                PreparedStatement batchStmt = pooledConnection.prepare(sql);
+                int written = 0;
+                int batched = 0;
+                for (UserPlaylist userPlaylist : userPlaylists) {
+                    batchStmt.setString(1, userPlaylist.getUserId());
+                    batchStmt.setString(2, userPlaylist.getPlaylistId());
+                    batchStmt.setLong(3, toEpochMillis(userPlaylist.getCreatedAt(), now));
+                    batchStmt.setLong(4, toEpochMillis(userPlaylist.getLastBuiltAt(), now));
+                    batchStmt.addBatch();
+                    if (++batched == MAX_BATCH_SIZE) {
+                        written += sum(batchStmt.executeBatch());
+                        batched = 0;
+                    }
+                }
+                if (batched > 0) {
+                    written += sum(batchStmt.executeBatch());
+                }
+                connection.commit();
+                return written;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            s_Logger.warn("Exception occurred while saving batch to sqlite", e);
+        }
+
+        return 0;
+    }
+
+    /**
+     * Map the current row of a result set to a user playlist. A build
+     * specification that cannot be parsed is treated as missing.
+     *
+     * @param rs result set positioned at a row
+     * @return user playlist
+     */
+    private static UserPlaylist toUserPlaylist(ResultSet rs) throws SQLException {
+        UserPlaylist userPlaylist = new UserPlaylist();
+        userPlaylist.setUserId(rs.getString("user_id"));
+        userPlaylist.setPlaylistId(rs.getString("playlist_id"));
+        userPlaylist.setCreatedAt(toInstant(rs.getLong("created_at"), rs.wasNull()));
+        userPlaylist.setLastBuiltAt(toInstant(rs.getLong("last_built_at"), rs.wasNull()));
+        userPlaylist.setLastCheckedAt(toInstant(rs.getLong("last_checked_at"), rs.wasNull()));
+        try {
+            BuildPlaylistRequest buildSpec = GSON.fromJson(rs.getString("build_spec"), BuildPlaylistRequest.class);
+            if (buildSpec != null) {
+                buildSpec.setOverwriteExisting(true);
+                buildSpec.setPlaylistToOverwrite(userPlaylist.getPlaylistId());
+            }
+            userPlaylist.setBuildSpec(buildSpec);
+            userPlaylist.setSourceSnapshots(GSON.fromJson(rs.getString("source_snapshots"), SNAPSHOTS_TYPE));
+        } catch (JsonParseException e) {
+            s_Logger.warn("Unable to parse build specification of playlist " + userPlaylist.getPlaylistId(), e);
+        }
+        return userPlaylist;
+    }
+
+    private static int sum(int[] updateCounts) {
+        int total = 0;
+        for (int updateCount : updateCounts) {
+            total += Math.max(updateCount, 0);
+        }
+        return total;
+    }
+
+    private static long toEpochMillis(Instant instant, long defaultMillis) {
+        return instant == null ? defaultMillis : instant.toEpochMilli();
+    }
+
+    private static Instant toInstant(long epochMillis, boolean wasNull) {
+        return wasNull ? null : Instant.ofEpochMilli(epochMillis);
     }
 
 }
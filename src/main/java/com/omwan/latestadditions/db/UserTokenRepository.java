@@ -0,0 +1,57 @@
+package com.omwan.latestadditions.db;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Class to access sqlite database for the refresh tokens of users with saved
+ * playlists, used to rebuild their playlists in the background.
+ */
+@Component
+@DependsOn("schemaMigration")
+public class UserTokenRepository {
+    private static final Logger s_Logger = LogManager.getLogger();
+
+    private static final String SELECT_SQL = "select refresh_token from user_token where user_id = ?";
+    private static final String UPSERT_SQL = "insert into user_token (user_id, refresh_token, updated_at) "
+            + "values (?, ?, ?) on conflict (user_id) do update set "
+            + "refresh_token = excluded.refresh_token, updated_at = excluded.updated_at";
+
+    @Autowired
+    private SqliteConnectionPool connectionPool;
+
+    public String findRefreshToken(String userId) {
+        try (PooledConnection connection = connectionPool.acquire()) {
+            PreparedStatement selectStmt = connection.prepare(SELECT_SQL);
+            selectStmt.setString(1, userId);
+
+            try (ResultSet rs = selectStmt.executeQuery()) {
+                return rs.next() ? rs.getString("refresh_token") : null;
+            }
+        } catch (SQLException e) {
+            s_Logger.warn("Exception occurred while reading from sqlite", e);
+        }
+
+        return null;
+    }
+
+    public void save(String userId, String refreshToken) {
+        try (PooledConnection connection = connectionPool.acquire()) {
+            PreparedStatement upsertStmt = connection.prepare(UPSERT_SQL);
+            upsertStmt.setString(1, userId);
+            upsertStmt.setString(2, refreshToken);
+            upsertStmt.setLong(3, System.currentTimeMillis());
+
+            upsertStmt.execute();
+        } catch (SQLException e) {
+            s_Logger.warn("Exception occurred while saving to sqlite", e);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.omwan.latestadditions.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * DTO representing a "Latest Additions" playlist build running in the
+ * background, containing its progress and, once finished, its result.
+ */
+public class BuildJob {
+
+    /**
+     * Stages of a build job.
+     */
+    public enum Status {
+        QUEUED, RUNNING, SUCCEEDED, FAILED
+    }
+
+    private final String id;
+    private final String userId;
+    private final BuildProgress progress = new BuildProgress();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile LatestPlaylistResponse result;
+    private volatile String error;
+    private volatile long finishedAt;
+
+    public BuildJob(String id, String userId) {
+        this.id = id;
+        this.userId = userId;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    @JsonIgnore
+    public String getUserId() {
+        return userId;
+    }
+
+    public BuildProgress getProgress() {
+        return progress;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public LatestPlaylistResponse getResult() {
+        return result;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Get the time the job finished, in epoch milliseconds.
+     *
+     * @return finish time, or 0 if the job has not finished
+     */
+    @JsonIgnore
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    @JsonIgnore
+    public boolean isFinished() {
+        return status == Status.SUCCEEDED || status == Status.FAILED;
+    }
+
+    public void start() {
+        status = Status.RUNNING;
+    }
+
+    public void succeed(LatestPlaylistResponse result) {
+        this.result = result;
+        finishedAt = System.currentTimeMillis();
+        status = Status.SUCCEEDED;
+    }
+
+    public void fail(String error) {
+        this.error = error;
+        finishedAt = System.currentTimeMillis();
+        status = Status.FAILED;
+    }
+}
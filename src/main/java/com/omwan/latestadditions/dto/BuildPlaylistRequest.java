@@ -9,13 +9,23 @@ public class BuildPlaylistRequest {
 
     private Map<String, Integer> playlistIds;
     private boolean overwriteExisting;
+    private boolean incrementalOverwrite;
     private String playlistName;
     private int numTracks;
     private String description;
     private boolean isPublic;
     private boolean isCollaborative;
     private String playlistToOverwrite;
-
+    private DedupPolicy dedupPolicy = DedupPolicy.URI;
+    private transient boolean debug;
+
+    /**
+     * Get the source playlists, as a mapping of playlist IDs to track counts.
+     * Track counts are resolved by the server and may be null; any counts given
+     * by the client are ignored.
+     *
+     * @return mapping of source playlist IDs to track counts
+     */
     public Map<String, Integer> getPlaylistIds() {
         return playlistIds;
     }
@@ -32,6 +42,14 @@ public class BuildPlaylistRequest {
         this.overwriteExisting = overwriteExisting;
     }
 
+    public boolean isIncrementalOverwrite() {
+        return incrementalOverwrite;
+    }
+
+    public void setIncrementalOverwrite(boolean incrementalOverwrite) {
+        this.incrementalOverwrite = incrementalOverwrite;
+    }
+
     public String getPlaylistName() {
         return playlistName;
     }
@@ -80,4 +98,26 @@ public class BuildPlaylistRequest {
     public void setPlaylistToOverwrite(String playlistToOverwrite) {
         this.playlistToOverwrite = playlistToOverwrite;
     }
+
+    public DedupPolicy getDedupPolicy() {
+        return dedupPolicy;
+    }
+
+    public void setDedupPolicy(DedupPolicy dedupPolicy) {
+        this.dedupPolicy = dedupPolicy;
+    }
+
+    /**
+     * Check if a trace of the build should be included in the response. Not
+     * stored with saved build specifications.
+     *
+     * @return whether or not to include a build trace
+     */
+    public boolean isDebug() {
+        return debug;
+    }
+
+    public void setDebug(boolean debug) {
+        this.debug = debug;
+    }
 }
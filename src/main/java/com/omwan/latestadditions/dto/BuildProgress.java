@@ -0,0 +1,39 @@
+package com.omwan.latestadditions.dto;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DTO representing the progress of a "Latest Additions" playlist build, as
+ * numbers of tracks retrieved from source playlists, selected for the playlist,
+ * and written to Spotify.
+ */
+public class BuildProgress {
+
+    private final AtomicInteger tracksFetched = new AtomicInteger();
+    private final AtomicInteger tracksMerged = new AtomicInteger();
+    private final AtomicInteger tracksWritten = new AtomicInteger();
+
+    public int getTracksFetched() {
+        return tracksFetched.get();
+    }
+
+    public void addTracksFetched(int count) {
+        tracksFetched.addAndGet(count);
+    }
+
+    public int getTracksMerged() {
+        return tracksMerged.get();
+    }
+
+    public void setTracksMerged(int count) {
+        tracksMerged.set(count);
+    }
+
+    public int getTracksWritten() {
+        return tracksWritten.get();
+    }
+
+    public void setTracksWritten(int count) {
+        tracksWritten.set(count);
+    }
+}
@@ -0,0 +1,51 @@
+package com.omwan.latestadditions.dto;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DTO representing a breakdown of a "Latest Additions" playlist build, as the
+ * milliseconds spent in each phase and the work done for each source playlist.
+ */
+public class BuildTrace {
+
+    private final Map<String, Long> phaseMs = new LinkedHashMap<>();
+    private final Map<String, PlaylistTrace> playlists = new LinkedHashMap<>();
+
+    /**
+     * Start tracing the given source playlists. Must be called before the
+     * playlists are traced from other threads.
+     *
+     * @param playlistIds IDs of source playlists
+     */
+    public void addPlaylists(Collection<String> playlistIds) {
+        for (String playlistId : playlistIds) {
+            playlists.put(playlistId, new PlaylistTrace(playlistId));
+        }
+    }
+
+    /**
+     * Get the trace of a source playlist.
+     *
+     * @param playlistId ID of source playlist
+     * @return playlist trace
+     */
+    public PlaylistTrace getPlaylist(String playlistId) {
+        return playlists.get(playlistId);
+    }
+
+    public List<PlaylistTrace> getPlaylists() {
+        return new ArrayList<>(playlists.values());
+    }
+
+    public Map<String, Long> getPhaseMs() {
+        return phaseMs;
+    }
+
+    public void setPhaseMs(String phase, long millis) {
+        phaseMs.put(phase, millis);
+    }
+}
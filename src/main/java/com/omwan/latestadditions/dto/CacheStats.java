@@ -0,0 +1,70 @@
+package com.omwan.latestadditions.dto;
+
+/**
+ * Counters describing the effectiveness of a cache. Revalidations are requests
+ * served from the cache after confirming with Spotify that the entry is current.
+ */
+public class CacheStats {
+
+    private long size;
+    private long hits;
+    private long revalidations;
+    private long misses;
+    private long evictions;
+
+    public CacheStats() {
+    }
+
+    public CacheStats(long size, long hits, long revalidations, long misses, long evictions) {
+        this.size = size;
+        this.hits = hits;
+        this.revalidations = revalidations;
+        this.misses = misses;
+        this.evictions = evictions;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public void setHits(long hits) {
+        this.hits = hits;
+    }
+
+    public long getRevalidations() {
+        return revalidations;
+    }
+
+    public void setRevalidations(long revalidations) {
+        this.revalidations = revalidations;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public void setMisses(long misses) {
+        this.misses = misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public void setEvictions(long evictions) {
+        this.evictions = evictions;
+    }
+
+    public double getHitRatio() {
+        long requests = hits + revalidations + misses;
+        return requests == 0 ? 0 : (double) (hits + revalidations) / requests;
+    }
+}
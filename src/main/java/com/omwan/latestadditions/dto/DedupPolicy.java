@@ -0,0 +1,26 @@
+package com.omwan.latestadditions.dto;
+
+/**
+ * Policies for deciding whether two tracks are duplicates when building a
+ * "Latest Additions" playlist. Each policy includes the checks of the ones
+ * before it.
+ */
+public enum DedupPolicy {
+
+    /**
+     * Tracks are duplicates if they share the same Spotify URI.
+     */
+    URI,
+
+    /**
+     * Tracks are duplicates if they share the same URI or ISRC, catching the
+     * same recording released on more than one album.
+     */
+    ISRC,
+
+    /**
+     * Tracks are duplicates if they share the same URI, ISRC, or normalized
+     * title and lead artist, catching remasters and re-releases.
+     */
+    TITLE
+}
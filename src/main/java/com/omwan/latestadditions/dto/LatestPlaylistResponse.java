@@ -1,13 +1,16 @@
 package com.omwan.latestadditions.dto;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.wrapper.spotify.model_objects.specification.PlaylistTrack;
 
 import java.util.List;
 
 /**
  * DTO representing output of successfully creating/updating a "Latest Additions"
- * playlist containing the playlist URL and the first 10 tracks of the playlist.
+ * playlist containing the playlist URL and the first 10 tracks of the playlist,
+ * the IDs of any source playlists whose tracks could not all be retrieved, and
+ * a trace of the build if one was requested.
  */
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class LatestPlaylistResponse {
@@ -15,6 +18,12 @@ public class LatestPlaylistResponse {
     private String playlistUrl;
     private List<PlaylistTrack> tracklistPreview;
 
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private List<String> skippedPlaylistIds;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private BuildTrace trace;
+
     public String getPlaylistUrl() {
         return playlistUrl;
     }
@@ -30,4 +39,20 @@ public class LatestPlaylistResponse {
     public void setTracklistPreview(List<PlaylistTrack> tracklistPreview) {
         this.tracklistPreview = tracklistPreview;
     }
+
+    public List<String> getSkippedPlaylistIds() {
+        return skippedPlaylistIds;
+    }
+
+    public void setSkippedPlaylistIds(List<String> skippedPlaylistIds) {
+        this.skippedPlaylistIds = skippedPlaylistIds;
+    }
+
+    public BuildTrace getTrace() {
+        return trace;
+    }
+
+    public void setTrace(BuildTrace trace) {
+        this.trace = trace;
+    }
 }
@@ -10,6 +10,8 @@ public class PlaylistIdWrapper {
 
     private int skipCount;
     private int offset;
+    private String snapshotId;
+    private Integer total;
 
     public PlaylistIdWrapper() {
 
@@ -51,4 +53,25 @@ public class PlaylistIdWrapper {
     public void setOffset(int offset) {
         this.offset = offset;
     }
+
+    public String getSnapshotId() {
+        return snapshotId;
+    }
+
+    public void setSnapshotId(String snapshotId) {
+        this.snapshotId = snapshotId;
+    }
+
+    /**
+     * Get the number of tracks in the playlist, if it has been resolved.
+     *
+     * @return number of tracks, or null if not yet resolved
+     */
+    public Integer getTotal() {
+        return total;
+    }
+
+    public void setTotal(Integer total) {
+        this.total = total;
+    }
 }
@@ -0,0 +1,75 @@
+package com.omwan.latestadditions.dto;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DTO representing the work done for one source playlist during a "Latest
+ * Additions" playlist build: requests made for pages of its tracks, tracks
+ * retrieved, refills of its cursor during the merge, and tracks skipped as
+ * local files or duplicates.
+ */
+public class PlaylistTrace {
+
+    private final String playlistId;
+    private final AtomicInteger trackRequests = new AtomicInteger();
+    private final AtomicInteger tracksFetched = new AtomicInteger();
+    private volatile boolean cached;
+    private volatile int refillCount;
+    private volatile int skipCount;
+
+    public PlaylistTrace(String playlistId) {
+        this.playlistId = playlistId;
+    }
+
+    public String getPlaylistId() {
+        return playlistId;
+    }
+
+    public int getTrackRequests() {
+        return trackRequests.get();
+    }
+
+    public int getTracksFetched() {
+        return tracksFetched.get();
+    }
+
+    /**
+     * Record a request for a page of the playlist's tracks.
+     *
+     * @param trackCount number of tracks retrieved
+     */
+    public void addTrackRequest(int trackCount) {
+        trackRequests.incrementAndGet();
+        tracksFetched.addAndGet(trackCount);
+    }
+
+    /**
+     * Check if the most recent tracks of the playlist were served from the
+     * track tail cache.
+     *
+     * @return whether or not the tracks were cached
+     */
+    public boolean isCached() {
+        return cached;
+    }
+
+    public void setCached(boolean cached) {
+        this.cached = cached;
+    }
+
+    public int getRefillCount() {
+        return refillCount;
+    }
+
+    public void setRefillCount(int refillCount) {
+        this.refillCount = refillCount;
+    }
+
+    public int getSkipCount() {
+        return skipCount;
+    }
+
+    public void setSkipCount(int skipCount) {
+        this.skipCount = skipCount;
+    }
+}
@@ -0,0 +1,37 @@
+package com.omwan.latestadditions.dto;
+
+import com.wrapper.spotify.model_objects.specification.Playlist;
+
+import java.util.List;
+
+/**
+ * DTO representing the playlists the current user has previously created using
+ * this application, along with the IDs of any saved playlists that could not be
+ * retrieved from Spotify, such as playlists deleted there.
+ */
+public class SavedPlaylistsResponse {
+
+    private List<Playlist> playlists;
+    private List<String> failedPlaylistIds;
+
+    public SavedPlaylistsResponse(List<Playlist> playlists, List<String> failedPlaylistIds) {
+        this.playlists = playlists;
+        this.failedPlaylistIds = failedPlaylistIds;
+    }
+
+    public List<Playlist> getPlaylists() {
+        return playlists;
+    }
+
+    public void setPlaylists(List<Playlist> playlists) {
+        this.playlists = playlists;
+    }
+
+    public List<String> getFailedPlaylistIds() {
+        return failedPlaylistIds;
+    }
+
+    public void setFailedPlaylistIds(List<String> failedPlaylistIds) {
+        this.failedPlaylistIds = failedPlaylistIds;
+    }
+}
@@ -0,0 +1,50 @@
+package com.omwan.latestadditions.dto;
+
+/**
+ * Tokens authorizing requests to the Spotify API on behalf of a user. Instances
+ * are immutable, so they can be resolved while handling a browser request and
+ * handed to work running on other threads.
+ */
+public class SpotifyCredentials {
+
+    private final String accessToken;
+    private final String refreshToken;
+    private final Long expiresAt;
+
+    /**
+     * Create credentials from the given tokens.
+     *
+     * @param accessToken  access token
+     * @param refreshToken refresh token
+     * @param expiresAt    time the access token expires in epoch milliseconds,
+     *                     or null if unknown
+     */
+    public SpotifyCredentials(String accessToken, String refreshToken, Long expiresAt) {
+        this.accessToken = accessToken;
+        this.refreshToken = refreshToken;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getAccessToken() {
+        return accessToken;
+    }
+
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+
+    public Long getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * Check if the access token expires within the given margin. Tokens without
+     * a known expiry time are treated as valid until Spotify rejects them.
+     *
+     * @param marginMs margin in milliseconds
+     * @return whether or not the access token should be refreshed
+     */
+    public boolean expiresWithin(long marginMs) {
+        return expiresAt != null && System.currentTimeMillis() + marginMs >= expiresAt;
+    }
+}
@@ -0,0 +1,198 @@
+package com.omwan.latestadditions.http;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import com.wrapper.spotify.HttpDeleteBody;
+import com.wrapper.spotify.IHttpManager;
+import com.wrapper.spotify.exceptions.SpotifyWebApiException;
+import com.wrapper.spotify.exceptions.detailed.BadGatewayException;
+import com.wrapper.spotify.exceptions.detailed.BadRequestException;
+import com.wrapper.spotify.exceptions.detailed.ForbiddenException;
+import com.wrapper.spotify.exceptions.detailed.InternalServerErrorException;
+import com.wrapper.spotify.exceptions.detailed.NotFoundException;
+import com.wrapper.spotify.exceptions.detailed.ServiceUnavailableException;
+import com.wrapper.spotify.exceptions.detailed.TooManyRequestsException;
+import com.wrapper.spotify.exceptions.detailed.UnauthorizedException;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP manager for the Spotify API backed by a single pooled HTTP client, so
+ * that connections are kept alive and reused across every SpotifyApi instance.
+ * Access tokens are sent by each SpotifyApi instance as request headers, so the
+ * manager holds no per-user state and is safe to share between threads.
+ */
+public class PooledHttpManager implements IHttpManager {
+
+    private final CloseableHttpClient httpClient;
+
+    /**
+     * Create a manager executing requests with the given client.
+     *
+     * @param httpClient pooled HTTP client
+     */
+    public PooledHttpManager(CloseableHttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    @Override
+    public String get(URI uri, Header[] headers) throws IOException, SpotifyWebApiException {
+        HttpGet httpGet = new HttpGet(uri);
+        httpGet.setHeaders(headers);
+        return execute(httpGet);
+    }
+
+    @Override
+    public String post(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        return execute(withBody(new HttpPost(uri), headers, body));
+    }
+
+    @Override
+    public String put(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        return execute(withBody(new HttpPut(uri), headers, body));
+    }
+
+    @Override
+    public String delete(URI uri, Header[] headers, HttpEntity body) throws IOException, SpotifyWebApiException {
+        HttpDeleteBody httpDelete = new HttpDeleteBody();
+        httpDelete.setURI(uri);
+        return execute(withBody(httpDelete, headers, body));
+    }
+
+    /**
+     * Set the headers and body of a request.
+     *
+     * @param request request to populate
+     * @param headers request headers
+     * @param body    request body
+     * @return populated request
+     */
+    private static HttpRequestBase withBody(HttpEntityEnclosingRequestBase request,
+                                            Header[] headers,
+                                            HttpEntity body) {
+        request.setHeaders(headers);
+        request.setEntity(body);
+        return request;
+    }
+
+    /**
+     * Execute a request, fully consuming the response so that the connection is
+     * returned to the pool.
+     *
+     * @param request request to execute
+     * @return response body
+     */
+    private String execute(HttpRequestBase request) throws IOException, SpotifyWebApiException {
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            return getResponseBody(response);
+        }
+    }
+
+    /**
+     * Get the number of seconds to wait before retrying from a Retry-After
+     * header, given either as a number of seconds or as an HTTP date. A missing
+     * or unparseable header gives 0, so that the caller's default backoff is used.
+     *
+     * @param retryAfter Retry-After header, or null if absent
+     * @return seconds to wait, or 0 if unknown
+     */
+    static int getRetryAfterSeconds(Header retryAfter) {
+        if (retryAfter == null || retryAfter.getValue() == null) {
+            return 0;
+        }
+        String value = retryAfter.getValue().trim();
+        try {
+            return Math.max(Integer.parseInt(value), 0);
+        } catch (NumberFormatException e) {
+            Date retryAt = DateUtils.parseDate(value);
+            if (retryAt == null) {
+                return 0;
+            }
+            long delayMs = retryAt.getTime() - System.currentTimeMillis();
+            return (int) Math.max(TimeUnit.MILLISECONDS.toSeconds(delayMs + 999), 0);
+        }
+    }
+
+    /**
+     * Read the body of a response, mapping error statuses to the exceptions the
+     * Spotify API wrapper raises for them.
+     *
+     * @param response response to read
+     * @return response body
+     */
+    static String getResponseBody(HttpResponse response) throws IOException, SpotifyWebApiException {
+        HttpEntity entity = response.getEntity();
+        String responseBody = entity == null ? null : EntityUtils.toString(entity, "UTF-8");
+        String errorMessage = getErrorMessage(responseBody, response.getStatusLine().getReasonPhrase());
+
+        switch (response.getStatusLine().getStatusCode()) {
+            case 400:
+                throw new BadRequestException(errorMessage);
+            case 401:
+                throw new UnauthorizedException(errorMessage);
+            case 403:
+                throw new ForbiddenException(errorMessage);
+            case 404:
+                throw new NotFoundException(errorMessage);
+            case 429:
+                throw new TooManyRequestsException(errorMessage,
+                        getRetryAfterSeconds(response.getFirstHeader("Retry-After")));
+            case 500:
+                throw new InternalServerErrorException(errorMessage);
+            case 502:
+                throw new BadGatewayException(errorMessage);
+            case 503:
+                throw new ServiceUnavailableException(errorMessage);
+            default:
+                return responseBody;
+        }
+    }
+
+    /**
+     * Extract the error message from an error response body, falling back to the
+     * reason phrase of the response.
+     *
+     * @param responseBody response body
+     * @param reasonPhrase reason phrase of the response status
+     * @return error message
+     */
+    private static String getErrorMessage(String responseBody, String reasonPhrase) {
+        if (responseBody == null) {
+            return reasonPhrase;
+        }
+        try {
+            JsonElement json = new JsonParser().parse(responseBody);
+            if (!json.isJsonObject() || !json.getAsJsonObject().has("error")) {
+                return reasonPhrase;
+            }
+            JsonObject body = json.getAsJsonObject();
+            if (body.has("error_description")) {
+                return body.get("error_description").getAsString();
+            }
+            JsonElement error = body.get("error");
+            if (error.isJsonObject() && error.getAsJsonObject().has("message")) {
+                return error.getAsJsonObject().get("message").getAsString();
+            }
+            return reasonPhrase;
+        } catch (JsonSyntaxException | IllegalStateException e) {
+            return reasonPhrase;
+        }
+    }
+}
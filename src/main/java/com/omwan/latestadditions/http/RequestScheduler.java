@@ -0,0 +1,172 @@
+package com.omwan.latestadditions.http;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Schedules calls to the Spotify API under a token-bucket rate limit. Callers
+ * waiting for a permit are queued by key, and permits are handed out to the
+ * queues in round-robin order, so that a caller issuing many requests cannot
+ * starve callers issuing a few. When Spotify asks clients to back off, no
+ * permits are handed out until the requested time has passed.
+ */
+public class RequestScheduler {
+
+    private static final class Waiter {
+        private boolean granted;
+    }
+
+    private final double permitsPerNano;
+    private final double burst;
+    private final long acquireTimeoutNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitsChanged = lock.newCondition();
+    private final Map<String, Deque<Waiter>> queues = new HashMap<>();
+    private final Deque<String> rotation = new ArrayDeque<>();
+
+    private double tokens;
+    private long lastRefill;
+    private long pausedUntil;
+
+    /**
+     * Create a scheduler handing out the given number of permits per second.
+     *
+     * @param permitsPerSecond sustained rate of permits
+     * @param burst            maximum number of permits that can accumulate
+     * @param acquireTimeoutMs maximum time a caller waits for a permit
+     */
+    public RequestScheduler(double permitsPerSecond, int burst, long acquireTimeoutMs) {
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.acquireTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMs);
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+        this.pausedUntil = lastRefill;
+    }
+
+    /**
+     * Wait for a permit to make a call. Callers sharing a key are served in the
+     * order they arrive; callers with different keys take turns.
+     *
+     * @param key key of the queue to wait in
+     * @throws RuntimeException if no permit is granted within the acquire timeout
+     */
+    public void acquire(String key) {
+        long deadline = System.nanoTime() + acquireTimeoutNanos;
+        Waiter waiter = new Waiter();
+
+        lock.lock();
+        try {
+            Deque<Waiter> queue = queues.get(key);
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                queues.put(key, queue);
+                rotation.addLast(key);
+            }
+            queue.addLast(waiter);
+
+            while (true) {
+                long now = System.nanoTime();
+                dispatch(now);
+                if (waiter.granted) {
+                    return;
+                }
+                if (now - deadline >= 0) {
+                    remove(key, waiter);
+                    throw new RuntimeException("Timed out waiting to call the Spotify API");
+                }
+                long wait = Math.min(deadline - now, nanosUntilNextPermit(now));
+                permitsChanged.awaitNanos(Math.max(wait, 1));
+            }
+        } catch (InterruptedException e) {
+            remove(key, waiter);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting to call the Spotify API", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stop handing out permits for the given time, such as when Spotify responds
+     * with a Retry-After header.
+     *
+     * @param millis time to pause for
+     */
+    public void pause(long millis) {
+        lock.lock();
+        try {
+            long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+            if (until - pausedUntil > 0) {
+                pausedUntil = until;
+            }
+            permitsChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of callers waiting for a permit.
+     *
+     * @return number of waiting callers
+     */
+    public int getWaitingCount() {
+        lock.lock();
+        try {
+            return queues.values().stream().mapToInt(Deque::size).sum();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hand out available permits to the heads of the queues in round-robin order.
+     *
+     * @param now current time, in nanos
+     */
+    private void dispatch(long now) {
+        tokens = Math.min(burst, tokens + (now - lastRefill) * permitsPerNano);
+        lastRefill = now;
+        if (now - pausedUntil < 0) {
+            return;
+        }
+
+        boolean granted = false;
+        while (tokens >= 1 && !rotation.isEmpty()) {
+            String key = rotation.pollFirst();
+            Deque<Waiter> queue = queues.get(key);
+            queue.pollFirst().granted = true;
+            tokens--;
+            granted = true;
+            if (queue.isEmpty()) {
+                queues.remove(key);
+            } else {
+                rotation.addLast(key);
+            }
+        }
+        if (granted) {
+            permitsChanged.signalAll();
+        }
+    }
+
+    private long nanosUntilNextPermit(long now) {
+        long untilResumed = Math.max(pausedUntil - now, 0);
+        long untilToken = tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / permitsPerNano);
+        return Math.max(untilResumed, untilToken);
+    }
+
+    private void remove(String key, Waiter waiter) {
+        Deque<Waiter> queue = queues.get(key);
+        if (queue != null && queue.remove(waiter) && queue.isEmpty()) {
+            queues.remove(key);
+            rotation.remove(key);
+        }
+    }
+}
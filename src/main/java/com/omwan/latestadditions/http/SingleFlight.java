@@ -0,0 +1,64 @@
+package com.omwan.latestadditions.http;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls with the same key, so that only the first caller
+ * performs the call and callers arriving while it is in flight share its
+ * result. Failures are not shared: if the call fails, every waiting caller
+ * performs the call itself, so that errors specific to one caller (such as an
+ * expired access token) do not fail the others.
+ *
+ * @param <K> key type
+ * @param <V> result type
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Perform a call, or wait for an identical call already in flight.
+     *
+     * @param key    key identifying the call
+     * @param loader call to perform
+     * @return result of the call
+     */
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            try {
+                return existing.get();
+            } catch (ExecutionException e) {
+                return loader.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for request " + key, e);
+            }
+        }
+
+        try {
+            V result = loader.get();
+            call.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    /**
+     * Get the number of calls currently in flight.
+     *
+     * @return number of calls in flight
+     */
+    public int size() {
+        return inFlight.size();
+    }
+}
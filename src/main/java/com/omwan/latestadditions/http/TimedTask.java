@@ -0,0 +1,71 @@
+package com.omwan.latestadditions.http;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Task run on a shared executor whose timeout is measured from when it starts
+ * running rather than from when it is submitted, so that time spent queued
+ * behind the tasks of other callers does not count against it.
+ *
+ * @param <T> result type
+ */
+public class TimedTask<T> {
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final Future<T> future;
+    private volatile long startNanos;
+
+    private TimedTask(ExecutorService executor, Callable<T> task) {
+        this.future = executor.submit(() -> {
+            startNanos = System.nanoTime();
+            started.countDown();
+            return task.call();
+        });
+    }
+
+    /**
+     * Submit a task to run on the given executor.
+     *
+     * @param executor executor to run task on
+     * @param task     task to run
+     * @param <T>      result type
+     * @return submitted task
+     */
+    public static <T> TimedTask<T> submit(ExecutorService executor, Callable<T> task) {
+        return new TimedTask<>(executor, task);
+    }
+
+    /**
+     * Wait for the task to start, then wait for its result for up to the given
+     * time after it started.
+     *
+     * @param timeoutMs time the task may run for, in milliseconds
+     * @return result of the task
+     * @throws InterruptedException if interrupted while waiting
+     * @throws ExecutionException   if the task failed
+     * @throws TimeoutException     if the task did not finish in time
+     */
+    public T get(long timeoutMs) throws InterruptedException, ExecutionException, TimeoutException {
+        started.await();
+        long remaining = startNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMs) - System.nanoTime();
+        return future.get(Math.max(remaining, 0), TimeUnit.NANOSECONDS);
+    }
+
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    /**
+     * Cancel the task, interrupting it if it is running. A cancelled task must
+     * not be waited on.
+     */
+    public void cancel() {
+        future.cancel(true);
+    }
+}
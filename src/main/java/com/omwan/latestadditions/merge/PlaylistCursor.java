@@ -0,0 +1,237 @@
+package com.omwan.latestadditions.merge;
+
+import com.omwan.latestadditions.dto.PlaylistIdWrapper;
+import com.omwan.latestadditions.http.TimedTask;
+import com.wrapper.spotify.model_objects.specification.PlaylistTrack;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Cursor over the tracks of a source playlist, walking backwards from the most
+ * recently added track. Local files and duplicate tracks are skipped iteratively;
+ * when the buffered tracks are not expected to cover the remaining demand, the
+ * previous page of the playlist is fetched in the background, sized according
+ * to the ratio of tracks skipped so far.
+ */
+public class PlaylistCursor {
+    private static final Logger s_Logger = LogManager.getLogger();
+
+    static final int MIN_PAGE_SIZE = 10;
+    public static final int MAX_PAGE_SIZE = 100;
+    static final int LOW_WATERMARK = 5;
+
+    /**
+     * Retrieves a page of tracks for a playlist.
+     */
+    public interface PageFetcher {
+
+        PlaylistTrack[] fetch(PlaylistIdWrapper playlist, int limit, int offset);
+    }
+
+    private final PlaylistIdWrapper playlist;
+    private final Deque<PlaylistTrack> buffer;
+    private final int maxTracks;
+    private final PageFetcher pageFetcher;
+    private final ExecutorService executor;
+    private final long fetchTimeoutMs;
+
+    private PlaylistTrack current;
+    private TimedTask<PlaylistTrack[]> prefetch;
+    private int prefetchOffset;
+    private int examinedCount;
+    private int deliveredCount;
+    private int refillCount;
+    private boolean fetchFailed;
+
+    /**
+     * Create a cursor over the given initial tracks of a playlist. The offset of
+     * the playlist wrapper must be set to the position of the first initial track.
+     *
+     * @param playlist       playlist to walk
+     * @param initialTracks  most recent tracks of the playlist, in playlist order
+     * @param maxTracks      maximum number of tracks that will be taken from the cursor
+     * @param pageFetcher    fetcher for earlier pages of the playlist
+     * @param executor       executor to fetch pages on
+     * @param fetchTimeoutMs time a page fetch may run for once started
+     */
+    public PlaylistCursor(PlaylistIdWrapper playlist,
+                          Collection<PlaylistTrack> initialTracks,
+                          int maxTracks,
+                          PageFetcher pageFetcher,
+                          ExecutorService executor,
+                          long fetchTimeoutMs) {
+        this.playlist = playlist;
+        this.buffer = new ArrayDeque<>(initialTracks);
+        this.maxTracks = maxTracks;
+        this.pageFetcher = pageFetcher;
+        this.executor = executor;
+        this.fetchTimeoutMs = fetchTimeoutMs;
+        playlist.setSkipCount(0);
+    }
+
+    /**
+     * Move the cursor to the next most recent track of the playlist that is not
+     * a local file or a duplicate of a track in the given index, and record that
+     * track in the index.
+     *
+     * @param dedupIndex index of tracks already selected or queued
+     * @return whether or not another track was found
+     */
+    public boolean advance(TrackDedupIndex dedupIndex) {
+        current = null;
+        while (deliveredCount < maxTracks) {
+            applyPrefetch(false);
+            if (buffer.isEmpty()) {
+                schedulePrefetch();
+                if (!applyPrefetch(true)) {
+                    return false;
+                }
+            }
+
+            PlaylistTrack nextTrack = buffer.removeLast();
+            examinedCount++;
+            if (nextTrack.getIsLocal() || !dedupIndex.add(nextTrack)) {
+                playlist.setSkipCount(playlist.getSkipCount() + 1);
+            } else {
+                current = nextTrack;
+                deliveredCount++;
+            }
+            schedulePrefetch();
+
+            if (current != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the track the cursor is currently positioned at.
+     *
+     * @return current track, or null if the cursor is exhausted
+     */
+    public PlaylistTrack getCurrent() {
+        return current;
+    }
+
+    /**
+     * Get the playlist this cursor walks.
+     *
+     * @return playlist wrapper
+     */
+    public PlaylistIdWrapper getPlaylist() {
+        return playlist;
+    }
+
+    /**
+     * Get the number of additional pages fetched for this playlist.
+     *
+     * @return number of refills
+     */
+    public int getRefillCount() {
+        return refillCount;
+    }
+
+    /**
+     * Check if fetching an earlier page of the playlist failed, in which case
+     * the cursor may have run out of tracks before reaching its maximum.
+     *
+     * @return whether or not a page fetch failed
+     */
+    public boolean isFetchFailed() {
+        return fetchFailed;
+    }
+
+    /**
+     * Cancel any outstanding page fetch.
+     */
+    public void close() {
+        if (prefetch != null) {
+            prefetch.cancel();
+            prefetch = null;
+        }
+    }
+
+    /**
+     * Start fetching the previous page of the playlist if the buffered tracks are
+     * not expected to cover the remaining demand and no fetch is outstanding.
+     */
+    private void schedulePrefetch() {
+        int offset = playlist.getOffset();
+        if (prefetch != null || offset == 0) {
+            return;
+        }
+
+        double keepRatio = 1 - getSkipRatio();
+        int remainingDemand = maxTracks - deliveredCount;
+        double expectedUsable = buffer.size() * keepRatio;
+        if (expectedUsable >= Math.min(remainingDemand, LOW_WATERMARK)) {
+            return;
+        }
+
+        int pageSize = keepRatio <= 0
+                ? MAX_PAGE_SIZE
+                : (int) Math.ceil((remainingDemand - expectedUsable) / keepRatio);
+        pageSize = Math.max(MIN_PAGE_SIZE, Math.min(MAX_PAGE_SIZE, pageSize));
+
+        int pageOffset = Math.max(offset - pageSize, 0);
+        int limit = offset - pageOffset;
+        prefetchOffset = pageOffset;
+        prefetch = TimedTask.submit(executor, () -> pageFetcher.fetch(playlist, limit, pageOffset));
+        refillCount++;
+    }
+
+    /**
+     * Move the tracks of a completed page fetch to the front of the buffer.
+     *
+     * @param wait whether to wait for an outstanding fetch to complete
+     * @return whether or not any tracks were added to the buffer
+     */
+    private boolean applyPrefetch(boolean wait) {
+        if (prefetch == null || (!wait && !prefetch.isDone())) {
+            return false;
+        }
+
+        TimedTask<PlaylistTrack[]> page = prefetch;
+        prefetch = null;
+        PlaylistTrack[] tracks;
+        try {
+            tracks = page.get(fetchTimeoutMs);
+        } catch (TimeoutException e) {
+            page.cancel();
+            s_Logger.warn("Timed out retrieving more tracks for playlist {}", playlist.getPlaylistId());
+            fetchFailed = true;
+            return false;
+        } catch (ExecutionException e) {
+            s_Logger.warn("Unable to retrieve more tracks for playlist " + playlist.getPlaylistId(),
+                    e.getCause());
+            fetchFailed = true;
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while retrieving playlist tracks", e);
+        }
+
+        playlist.setOffset(prefetchOffset);
+        for (int i = tracks.length - 1; i >= 0; i--) {
+            buffer.addFirst(tracks[i]);
+        }
+        return tracks.length > 0;
+    }
+
+    /**
+     * Get the ratio of examined tracks that were skipped.
+     *
+     * @return skip ratio between 0 and 1
+     */
+    private double getSkipRatio() {
+        return examinedCount == 0 ? 0 : (double) playlist.getSkipCount() / examinedCount;
+    }
+}
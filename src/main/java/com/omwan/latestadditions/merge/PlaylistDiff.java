@@ -0,0 +1,253 @@
+package com.omwan.latestadditions.merge;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Set of operations that transform the current track list of a playlist into a
+ * target track list. Operations are applied in three phases: removals of tracks
+ * not in the target, single-track moves of the remaining tracks outside their
+ * longest correctly ordered subsequence, and insertions of new tracks.
+ */
+public class PlaylistDiff {
+
+    /**
+     * Move of a single track, with positions relative to the playlist at the
+     * time the move is applied.
+     */
+    public static class Move {
+
+        private final int rangeStart;
+        private final int insertBefore;
+
+        Move(int rangeStart, int insertBefore) {
+            this.rangeStart = rangeStart;
+            this.insertBefore = insertBefore;
+        }
+
+        public int getRangeStart() {
+            return rangeStart;
+        }
+
+        public int getInsertBefore() {
+            return insertBefore;
+        }
+    }
+
+    /**
+     * Insertion of a run of consecutive tracks at a position, relative to the
+     * playlist after all previous insertions have been applied.
+     */
+    public static class Insert {
+
+        private final int position;
+        private final List<String> trackUris;
+
+        Insert(int position, List<String> trackUris) {
+            this.position = position;
+            this.trackUris = trackUris;
+        }
+
+        public int getPosition() {
+            return position;
+        }
+
+        public List<String> getTrackUris() {
+            return trackUris;
+        }
+    }
+
+    private final Map<String, List<Integer>> removals;
+    private final List<Move> moves;
+    private final List<Insert> inserts;
+    private final int unremovableCount;
+
+    private PlaylistDiff(Map<String, List<Integer>> removals, List<Move> moves, List<Insert> inserts,
+                         int unremovableCount) {
+        this.removals = removals;
+        this.moves = moves;
+        this.inserts = inserts;
+        this.unremovableCount = unremovableCount;
+    }
+
+    /**
+     * Compute the operations needed to turn the current track list into the
+     * target track list. Target URIs are expected to be unique. Current tracks
+     * without a URI, such as tracks no longer available, cannot be removed by
+     * position, so they are counted rather than included in the removals.
+     *
+     * @param currentUris URIs of tracks currently in the playlist
+     * @param targetUris  URIs of tracks the playlist should contain, in order
+     * @return playlist diff
+     */
+    public static PlaylistDiff compute(List<String> currentUris, List<String> targetUris) {
+        Map<String, Integer> targetPositions = new HashMap<>();
+        for (int i = 0; i < targetUris.size(); i++) {
+            targetPositions.put(targetUris.get(i), i);
+        }
+
+        Map<String, List<Integer>> removals = new HashMap<>();
+        List<String> kept = new ArrayList<>();
+        Set<String> keptUris = new HashSet<>();
+        int unremovableCount = 0;
+        for (int i = 0; i < currentUris.size(); i++) {
+            String uri = currentUris.get(i);
+            if (uri == null) {
+                unremovableCount++;
+            } else if (targetPositions.containsKey(uri) && keptUris.add(uri)) {
+                kept.add(uri);
+            } else {
+                removals.computeIfAbsent(uri, key -> new ArrayList<>()).add(i);
+            }
+        }
+
+        List<Move> moves = computeMoves(kept, targetPositions);
+        List<Insert> inserts = computeInserts(targetUris, keptUris);
+        return new PlaylistDiff(removals, moves, inserts, unremovableCount);
+    }
+
+    /**
+     * Compute the moves needed to put the kept tracks in target order. Tracks in
+     * the longest subsequence already in target order stay where they are; every
+     * other track is moved, in target order, to just after its predecessor.
+     *
+     * @param kept            URIs of tracks remaining after removals, in current order
+     * @param targetPositions mapping of URIs to their position in the target
+     * @return list of moves
+     */
+    private static List<Move> computeMoves(List<String> kept, Map<String, Integer> targetPositions) {
+        int[] ranks = new int[kept.size()];
+        for (int i = 0; i < kept.size(); i++) {
+            ranks[i] = targetPositions.get(kept.get(i));
+        }
+        Set<String> inOrder = new HashSet<>();
+        for (int index : longestIncreasingSubsequence(ranks)) {
+            inOrder.add(kept.get(index));
+        }
+
+        List<String> ordered = new ArrayList<>(kept);
+        ordered.sort((a, b) -> Integer.compare(targetPositions.get(a), targetPositions.get(b)));
+
+        List<String> working = new ArrayList<>(kept);
+        List<Move> moves = new ArrayList<>();
+        for (int i = 0; i < ordered.size(); i++) {
+            String uri = ordered.get(i);
+            if (inOrder.contains(uri)) {
+                continue;
+            }
+            int from = working.indexOf(uri);
+            int insertBefore = i == 0 ? 0 : working.indexOf(ordered.get(i - 1)) + 1;
+            if (insertBefore == from || insertBefore == from + 1) {
+                continue;
+            }
+            moves.add(new Move(from, insertBefore));
+            working.remove(from);
+            working.add(insertBefore > from ? insertBefore - 1 : insertBefore, uri);
+        }
+        return moves;
+    }
+
+    /**
+     * Compute the insertions of tracks that are in the target but not kept from
+     * the current playlist, grouping consecutive new tracks together.
+     *
+     * @param targetUris URIs of tracks the playlist should contain, in order
+     * @param keptUris   URIs of tracks remaining after removals
+     * @return list of insertions
+     */
+    private static List<Insert> computeInserts(List<String> targetUris, Set<String> keptUris) {
+        List<Insert> inserts = new ArrayList<>();
+        int i = 0;
+        while (i < targetUris.size()) {
+            if (keptUris.contains(targetUris.get(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < targetUris.size() && !keptUris.contains(targetUris.get(i))) {
+                i++;
+            }
+            inserts.add(new Insert(start, new ArrayList<>(targetUris.subList(start, i))));
+        }
+        return inserts;
+    }
+
+    /**
+     * Find the indices of a longest strictly increasing subsequence of the given
+     * values in O(n log n).
+     *
+     * @param values values to search
+     * @return indices of the subsequence, in ascending order
+     */
+    static List<Integer> longestIncreasingSubsequence(int[] values) {
+        int[] tailIndices = new int[values.length];
+        int[] previous = new int[values.length];
+        int length = 0;
+
+        for (int i = 0; i < values.length; i++) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (values[tailIndices[mid]] < values[i]) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            previous[i] = low > 0 ? tailIndices[low - 1] : -1;
+            tailIndices[low] = i;
+            length = Math.max(length, low + 1);
+        }
+
+        Integer[] indices = new Integer[length];
+        for (int i = length - 1, index = length > 0 ? tailIndices[length - 1] : -1; i >= 0; i--) {
+            indices[i] = index;
+            index = previous[index];
+        }
+        return new ArrayList<>(Arrays.asList(indices));
+    }
+
+    /**
+     * Get the tracks to remove, as a mapping of URIs to their positions in the
+     * current playlist.
+     *
+     * @return mapping of URIs to positions
+     */
+    public Map<String, List<Integer>> getRemovals() {
+        return Collections.unmodifiableMap(removals);
+    }
+
+    public List<Move> getMoves() {
+        return Collections.unmodifiableList(moves);
+    }
+
+    public List<Insert> getInserts() {
+        return Collections.unmodifiableList(inserts);
+    }
+
+    /**
+     * Check if the current playlist has tracks without a URI. The operations of
+     * the diff only produce the target track list if there are none.
+     *
+     * @return whether or not the current playlist has tracks that cannot be removed
+     */
+    public boolean hasUnremovableTracks() {
+        return unremovableCount > 0;
+    }
+
+    /**
+     * Check if the current playlist already matches the target.
+     *
+     * @return whether or not there are no operations to apply
+     */
+    public boolean isEmpty() {
+        return removals.isEmpty() && moves.isEmpty() && inserts.isEmpty() && unremovableCount == 0;
+    }
+}
@@ -0,0 +1,216 @@
+package com.omwan.latestadditions.merge;
+
+import com.omwan.latestadditions.dto.DedupPolicy;
+import com.wrapper.spotify.model_objects.specification.ArtistSimplified;
+import com.wrapper.spotify.model_objects.specification.PlaylistTrack;
+import com.wrapper.spotify.model_objects.specification.Track;
+import org.apache.commons.lang3.StringUtils;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Index of the tracks selected for a "Latest Additions" playlist, used to detect
+ * duplicate tracks in constant time. Depending on the dedup policy, each track is
+ * recorded under its URI, ISRC, and normalized title; keys are stored in a single
+ * open-addressing hash table with linear probing.
+ */
+public class TrackDedupIndex {
+
+    private static final int MAX_KEYS_PER_TRACK = 3;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern BRACKETED = Pattern.compile("[(\\[][^)\\]]*[)\\]]");
+    private static final Pattern DASH_SUFFIX = Pattern.compile("\\s+-\\s+.*$");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^\\p{Alnum}]+");
+
+    private final DedupPolicy policy;
+
+    private String[] keys;
+    private int[] hashes;
+    private int size;
+
+    /**
+     * Create an index sized to hold the given number of tracks without resizing.
+     *
+     * @param policy         policy for deciding whether two tracks are duplicates
+     * @param expectedTracks expected number of tracks to be recorded
+     */
+    public TrackDedupIndex(DedupPolicy policy, int expectedTracks) {
+        this.policy = policy == null ? DedupPolicy.URI : policy;
+        int keysPerTrack = this.policy.ordinal() + 1;
+        int capacity = Integer.highestOneBit(Math.max(expectedTracks * keysPerTrack, 4) * 2 - 1) << 1;
+        this.keys = new String[capacity];
+        this.hashes = new int[capacity];
+    }
+
+    /**
+     * Record the given track in the index, unless it is a duplicate of a track
+     * that has already been recorded. Tracks without track info (such as tracks
+     * that are unavailable) are never recorded.
+     *
+     * @param playlistTrack track to record
+     * @return whether or not the track was recorded
+     */
+    public boolean add(PlaylistTrack playlistTrack) {
+        String[] trackKeys = buildKeys(playlistTrack.getTrack());
+        if (trackKeys[0] == null) {
+            return false;
+        }
+        for (String key : trackKeys) {
+            if (key != null && indexOf(key) >= 0) {
+                return false;
+            }
+        }
+        for (String key : trackKeys) {
+            if (key != null) {
+                insert(key);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check if the given track is a duplicate of a track already in the index.
+     *
+     * @param playlistTrack track to check
+     * @return whether or not the track is a duplicate
+     */
+    public boolean contains(PlaylistTrack playlistTrack) {
+        for (String key : buildKeys(playlistTrack.getTrack())) {
+            if (key != null && indexOf(key) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the number of keys recorded in the index.
+     *
+     * @return number of keys
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Build the keys to record the given track under for the current policy.
+     *
+     * @param track track to build keys for
+     * @return array of keys, with null entries for keys that do not apply
+     */
+    private String[] buildKeys(Track track) {
+        String[] trackKeys = new String[MAX_KEYS_PER_TRACK];
+        if (track == null || track.getUri() == null) {
+            return trackKeys;
+        }
+        trackKeys[0] = "uri:" + track.getUri();
+
+        if (policy.compareTo(DedupPolicy.ISRC) >= 0 && track.getExternalIds() != null) {
+            Map<String, String> externalIds = track.getExternalIds().getExternalIds();
+            String isrc = externalIds == null ? null : externalIds.get("isrc");
+            if (StringUtils.isNotBlank(isrc)) {
+                trackKeys[1] = "isrc:" + isrc.trim().toUpperCase(Locale.ROOT);
+            }
+        }
+
+        if (policy.compareTo(DedupPolicy.TITLE) >= 0 && StringUtils.isNotBlank(track.getName())) {
+            ArtistSimplified[] artists = track.getArtists();
+            String artist = artists == null || artists.length == 0 ? "" : artists[0].getName();
+            trackKeys[2] = "title:" + normalize(artist) + "|" + normalize(track.getName());
+        }
+
+        return trackKeys;
+    }
+
+    /**
+     * Normalize a title or artist name so that remasters, live versions, and other
+     * variations of the same song compare as equal.
+     *
+     * @param value value to normalize
+     * @return normalized value
+     */
+    static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(value, Normalizer.Form.NFD);
+        normalized = DIACRITICS.matcher(normalized).replaceAll("");
+        normalized = normalized.toLowerCase(Locale.ROOT);
+        normalized = BRACKETED.matcher(normalized).replaceAll(" ");
+        normalized = DASH_SUFFIX.matcher(normalized).replaceAll("");
+        return NON_ALPHANUMERIC.matcher(normalized).replaceAll(" ").trim();
+    }
+
+    /**
+     * Find the slot containing the given key.
+     *
+     * @param key key to find
+     * @return slot index, or -1 if the key is not in the table
+     */
+    private int indexOf(String key) {
+        int hash = spread(key.hashCode());
+        int mask = keys.length - 1;
+        for (int i = hash & mask; keys[i] != null; i = (i + 1) & mask) {
+            if (hashes[i] == hash && keys[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Insert a key known not to be in the table, growing the table if it is
+     * more than half full.
+     *
+     * @param key key to insert
+     */
+    private void insert(String key) {
+        if ((size + 1) * 2 > keys.length) {
+            resize();
+        }
+        int hash = spread(key.hashCode());
+        int mask = keys.length - 1;
+        int i = hash & mask;
+        while (keys[i] != null) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        hashes[i] = hash;
+        size++;
+    }
+
+    /**
+     * Double the capacity of the table and rehash all keys.
+     */
+    private void resize() {
+        String[] oldKeys = keys;
+        int[] oldHashes = hashes;
+        keys = new String[oldKeys.length * 2];
+        hashes = new int[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != null) {
+                int i = oldHashes[j] & mask;
+                while (keys[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                hashes[i] = oldHashes[j];
+            }
+        }
+    }
+
+    /**
+     * Spread the higher bits of a hash code into the lower bits used for indexing.
+     *
+     * @param hashCode hash code to spread
+     * @return spread hash code
+     */
+    private static int spread(int hashCode) {
+        return hashCode ^ (hashCode >>> 16);
+    }
+}
@@ -1,7 +1,7 @@
 package com.omwan.latestadditions.service;
 
-import com.omwan.latestadditions.component.CookieUtils;
 import com.omwan.latestadditions.component.SpotifyApiComponent;
+import com.omwan.latestadditions.component.SpotifyCredentialsComponent;
 import com.wrapper.spotify.SpotifyApi;
 import com.wrapper.spotify.exceptions.SpotifyWebApiException;
 import com.wrapper.spotify.model_objects.credentials.AuthorizationCodeCredentials;
@@ -26,7 +26,7 @@ public class AuthServiceImpl implements AuthService {
     private SpotifyApiComponent spotifyApiComponent;
 
     @Autowired
-    private CookieUtils cookieUtils;
+    private SpotifyCredentialsComponent spotifyCredentialsComponent;
 
     /**
      * Make authorization request for API usage.
@@ -60,10 +60,7 @@ public class AuthServiceImpl implements AuthService {
                 .build();
         try {
             AuthorizationCodeCredentials authorizationCodeCredentials = authorizationCodeRequest.execute();
-            response.addCookie(cookieUtils.buildCookie("ACCESS_TOKEN",
-                    authorizationCodeCredentials.getAccessToken()));
-            response.addCookie(cookieUtils.buildCookie("REFRESH_TOKEN",
-                    authorizationCodeCredentials.getRefreshToken()));
+            spotifyCredentialsComponent.storeCredentials(response, authorizationCodeCredentials);
             handleRedirect(response, "/", "Could not redirect to application main page");
         } catch (IOException | SpotifyWebApiException e) {
             throw new RuntimeException("Could not retrieve auth code credentials", e);
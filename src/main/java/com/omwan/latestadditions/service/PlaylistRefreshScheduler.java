@@ -0,0 +1,96 @@
+package com.omwan.latestadditions.service;
+
+import com.omwan.latestadditions.component.UserPlaylistComponent;
+import com.omwan.latestadditions.db.UserPlaylist;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically rebuilds saved playlists from their stored specifications.
+ * Each poll picks up playlists that have not been checked within the refresh
+ * interval and spreads their refreshes over the jitter window, so that saved
+ * playlists do not all hit the Spotify API at once.
+ */
+@Component
+public class PlaylistRefreshScheduler {
+    private static final Logger s_Logger = LogManager.getLogger();
+
+    @Autowired
+    private UserPlaylistComponent userPlaylistComponent;
+
+    @Autowired
+    private SpotifyPlaylistService spotifyPlaylistService;
+
+    @Autowired
+    private ScheduledExecutorService playlistRefreshExecutor;
+
+    @Value("${spotify.refresh.enabled}")
+    private boolean enabled;
+
+    @Value("${spotify.refresh.interval.ms}")
+    private long refreshIntervalMs;
+
+    @Value("${spotify.refresh.jitter.ms}")
+    private long jitterMs;
+
+    @Value("${spotify.refresh.batch.size}")
+    private int batchSize;
+
+    private final Set<String> pendingRefreshes = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Schedule refreshes of saved playlists that are due, skipping playlists
+     * whose refresh from a previous poll has not run yet.
+     */
+    @Scheduled(initialDelayString = "${spotify.refresh.jitter.ms}", fixedDelayString = "${spotify.refresh.poll.ms}")
+    public void scheduleDueRefreshes() {
+        if (!enabled) {
+            return;
+        }
+
+        long checkedBefore = System.currentTimeMillis() - refreshIntervalMs;
+        List<UserPlaylist> duePlaylists = userPlaylistComponent.getPlaylistsDueForRefresh(checkedBefore, batchSize);
+        for (UserPlaylist userPlaylist : duePlaylists) {
+            String key = userPlaylist.getUserId() + ":" + userPlaylist.getPlaylistId();
+            if (!pendingRefreshes.add(key)) {
+                continue;
+            }
+            long delayMs = jitterMs > 0 ? ThreadLocalRandom.current().nextLong(jitterMs) : 0;
+            playlistRefreshExecutor.schedule(() -> refresh(key, userPlaylist), delayMs, TimeUnit.MILLISECONDS);
+        }
+        if (!duePlaylists.isEmpty()) {
+            s_Logger.info("Scheduled refresh of {} saved playlists", duePlaylists.size());
+        }
+    }
+
+    /**
+     * Refresh a saved playlist, logging rather than propagating failures so
+     * that one playlist cannot stop the others from being refreshed.
+     *
+     * @param key          key of the pending refresh
+     * @param userPlaylist saved playlist to refresh
+     */
+    private void refresh(String key, UserPlaylist userPlaylist) {
+        try {
+            if (spotifyPlaylistService.refreshSavedPlaylist(userPlaylist)) {
+                s_Logger.info("Refreshed saved playlist {}", userPlaylist.getPlaylistId());
+            }
+        } catch (RuntimeException e) {
+            s_Logger.warn("Unable to refresh saved playlist " + userPlaylist.getPlaylistId(), e);
+            userPlaylistComponent.markPlaylistChecked(userPlaylist.getUserId(), userPlaylist.getPlaylistId());
+        } finally {
+            pendingRefreshes.remove(key);
+        }
+    }
+}
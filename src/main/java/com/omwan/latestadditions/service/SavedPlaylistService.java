@@ -1,15 +1,13 @@
 package com.omwan.latestadditions.service;
 
-import com.wrapper.spotify.model_objects.specification.Playlist;
-
-import java.util.List;
+import com.omwan.latestadditions.dto.SavedPlaylistsResponse;
 
 /**
  * Services pertaining to playlist info saved to MongoDB.
  */
 public interface SavedPlaylistService {
 
-    List<Playlist> getExistingPlaylists();
+    SavedPlaylistsResponse getExistingPlaylists();
 
     void deleteSavedPlaylist(String playlistId);
 }
@@ -1,29 +1,51 @@
 package com.omwan.latestadditions.service;
 
-import com.omwan.latestadditions.component.SpotifyApiComponent;
+import com.omwan.latestadditions.component.PlaylistMetadataComponent;
+import com.omwan.latestadditions.component.SpotifyCredentialsComponent;
 import com.omwan.latestadditions.component.UserPlaylistComponent;
 import com.omwan.latestadditions.dto.PlaylistIdWrapper;
+import com.omwan.latestadditions.dto.SavedPlaylistsResponse;
+import com.omwan.latestadditions.http.TimedTask;
 import com.wrapper.spotify.SpotifyApi;
 import com.wrapper.spotify.model_objects.specification.Playlist;
-import com.wrapper.spotify.requests.data.AbstractDataRequest;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Implementation of services pertaining to playlist info saved to MongoDB
  */
 @Service
 public class SavedPlaylistServiceImpl implements SavedPlaylistService {
+    private static final Logger s_Logger = LogManager.getLogger();
+
+    private static final String SAVED_PLAYLIST_FIELDS = "name,tracks(total),uri,id";
 
     @Autowired
-    private SpotifyApiComponent spotifyApiComponent;
+    private SpotifyCredentialsComponent spotifyCredentialsComponent;
 
     @Autowired
     private UserPlaylistComponent userPlaylistComponent;
 
+    @Autowired
+    private PlaylistMetadataComponent playlistMetadataComponent;
+
+    @Autowired
+    private ExecutorService playlistFetchExecutor;
+
+    @Value("${spotify.fetch.timeout.ms}")
+    private long fetchTimeoutMs;
+
     /**
      * Delete a previously saved playlist from application.
      *
@@ -32,36 +54,56 @@ public class SavedPlaylistServiceImpl implements SavedPlaylistService {
     @Override
     public void deleteSavedPlaylist(String playlistId) {
         userPlaylistComponent.deleteSavedPlaylist(playlistId);
+        playlistMetadataComponent.invalidate(playlistId);
     }
 
 
     /**
      * Get all playlists that the current user has previously created
-     * using this application.
+     * using this application. Playlists are retrieved concurrently, each for up
+     * to the fetch timeout once it starts; the IDs of any that cannot be
+     * retrieved, such as playlists deleted from Spotify, are returned separately
+     * so that they can still be deleted.
      *
-     * @return list of playlists
+     * @return retrieved playlists and IDs of playlists that failed to retrieve
      */
     @Override
-    public List<Playlist> getExistingPlaylists() {
-        if (!spotifyApiComponent.tokensExist()) {
+    public SavedPlaylistsResponse getExistingPlaylists() {
+        if (!spotifyCredentialsComponent.tokensExist()) {
             return null;
         }
 
-        String userId = spotifyApiComponent.getCurrentUserId();
+        String userId = spotifyCredentialsComponent.getCurrentUserId();
         List<PlaylistIdWrapper> playlistWrappers = userPlaylistComponent.getPlaylistsForUser(userId);
+        SpotifyApi spotifyApi = spotifyCredentialsComponent.getApiWithTokens();
+
+        Map<String, TimedTask<Playlist>> pendingPlaylists = new LinkedHashMap<>();
+        for (PlaylistIdWrapper wrapper : playlistWrappers) {
+            pendingPlaylists.put(wrapper.getPlaylistId(), TimedTask.submit(playlistFetchExecutor, () ->
+                    playlistMetadataComponent.getPlaylist(spotifyApi, userId, wrapper.getPlaylistId(),
+                            SAVED_PLAYLIST_FIELDS)));
+        }
 
         List<Playlist> existingPlaylists = new ArrayList<>();
+        List<String> failedPlaylistIds = new ArrayList<>();
 
-        for (PlaylistIdWrapper wrapper : playlistWrappers) {
-            SpotifyApi spotifyApi = spotifyApiComponent.getApiWithTokens();
-            AbstractDataRequest getPlaylistRequest = spotifyApi.getPlaylist(userId, wrapper.getPlaylistId())
-                    .fields("name,tracks(total),uri,id")
-                    .build();
-            String errorMessage = "Unable to retrieve existing playlists for user " + userId;
-            Playlist playlist = spotifyApiComponent.executeRequest(getPlaylistRequest, errorMessage);
-            existingPlaylists.add(playlist);
+        for (Map.Entry<String, TimedTask<Playlist>> pending : pendingPlaylists.entrySet()) {
+            String playlistId = pending.getKey();
+            try {
+                existingPlaylists.add(pending.getValue().get(fetchTimeoutMs));
+            } catch (TimeoutException e) {
+                pending.getValue().cancel();
+                s_Logger.warn("Timed out retrieving saved playlist {}", playlistId);
+                failedPlaylistIds.add(playlistId);
+            } catch (ExecutionException e) {
+                s_Logger.warn("Unable to retrieve saved playlist " + playlistId, e.getCause());
+                failedPlaylistIds.add(playlistId);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while retrieving saved playlists", e);
+            }
         }
 
-        return existingPlaylists;
+        return new SavedPlaylistsResponse(existingPlaylists, failedPlaylistIds);
     }
 }
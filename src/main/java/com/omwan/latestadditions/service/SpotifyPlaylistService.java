@@ -1,6 +1,9 @@
 package com.omwan.latestadditions.service;
 
+import com.omwan.latestadditions.db.UserPlaylist;
+import com.omwan.latestadditions.dto.BuildJob;
 import com.omwan.latestadditions.dto.BuildPlaylistRequest;
+import com.omwan.latestadditions.dto.CacheStats;
 import com.omwan.latestadditions.dto.LatestPlaylistResponse;
 import com.wrapper.spotify.model_objects.specification.Paging;
 import com.wrapper.spotify.model_objects.specification.Playlist;
@@ -16,4 +19,14 @@ public interface SpotifyPlaylistService {
     Playlist getPlaylistDetails(String playlistId);
 
     LatestPlaylistResponse buildLatestAdditionsPlaylist(BuildPlaylistRequest request);
+
+    BuildJob submitLatestAdditionsBuild(BuildPlaylistRequest request);
+
+    BuildJob submitSavedPlaylistRebuild(String playlistId);
+
+    BuildJob getBuildJob(String jobId);
+
+    boolean refreshSavedPlaylist(UserPlaylist userPlaylist);
+
+    CacheStats getMetadataCacheStats();
 }
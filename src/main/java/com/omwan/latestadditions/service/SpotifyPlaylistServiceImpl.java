@@ -1,27 +1,52 @@
 package com.omwan.latestadditions.service;
 
+import com.omwan.latestadditions.component.BuildJobComponent;
+import com.omwan.latestadditions.component.PlaylistMetadataComponent;
+import com.omwan.latestadditions.component.PlaylistWriterComponent;
 import com.omwan.latestadditions.component.SpotifyApiComponent;
+import com.omwan.latestadditions.component.SpotifyCredentialsComponent;
+import com.omwan.latestadditions.component.TrackTailCacheComponent;
 import com.omwan.latestadditions.component.UserPlaylistComponent;
+import com.omwan.latestadditions.db.UserPlaylist;
+import com.omwan.latestadditions.dto.BuildJob;
 import com.omwan.latestadditions.dto.BuildPlaylistRequest;
+import com.omwan.latestadditions.dto.BuildProgress;
+import com.omwan.latestadditions.dto.BuildTrace;
+import com.omwan.latestadditions.dto.CacheStats;
 import com.omwan.latestadditions.dto.LatestPlaylistResponse;
 import com.omwan.latestadditions.dto.PlaylistIdWrapper;
+import com.omwan.latestadditions.dto.PlaylistTrace;
+import com.omwan.latestadditions.http.TimedTask;
+import com.omwan.latestadditions.merge.PlaylistCursor;
+import com.omwan.latestadditions.merge.TrackDedupIndex;
 import com.wrapper.spotify.SpotifyApi;
 import com.wrapper.spotify.model_objects.specification.Paging;
 import com.wrapper.spotify.model_objects.specification.Playlist;
 import com.wrapper.spotify.model_objects.specification.PlaylistSimplified;
 import com.wrapper.spotify.model_objects.specification.PlaylistTrack;
 import com.wrapper.spotify.requests.data.AbstractDataRequest;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 /**
@@ -29,13 +54,41 @@ import java.util.stream.Collectors;
  */
 @Service
 public class SpotifyPlaylistServiceImpl implements SpotifyPlaylistService {
+    private static final Logger s_Logger = LogManager.getLogger();
 
     @Autowired
     private SpotifyApiComponent spotifyApiComponent;
 
+    @Autowired
+    private SpotifyCredentialsComponent spotifyCredentialsComponent;
+
     @Autowired
     private UserPlaylistComponent userPlaylistComponent;
 
+    @Autowired
+    private PlaylistWriterComponent playlistWriterComponent;
+
+    @Autowired
+    private PlaylistMetadataComponent playlistMetadataComponent;
+
+    @Autowired
+    private TrackTailCacheComponent trackTailCacheComponent;
+
+    @Autowired
+    private BuildJobComponent buildJobComponent;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ExecutorService playlistFetchExecutor;
+
+    @Value("${spotify.fetch.timeout.ms}")
+    private long fetchTimeoutMs;
+
+    @Value("${spotify.refresh.enabled}")
+    private boolean refreshEnabled;
+
     /**
      * Get playlists for the current user.
      *
@@ -45,11 +98,11 @@ public class SpotifyPlaylistServiceImpl implements SpotifyPlaylistService {
      */
     @Override
     public Paging<PlaylistSimplified> getUserPlaylists(int limit, int offset) {
-        if (!spotifyApiComponent.tokensExist()) {
+        if (!spotifyCredentialsComponent.tokensExist()) {
             return null;
         }
 
-        SpotifyApi spotifyApi = spotifyApiComponent.getApiWithTokens();
+        SpotifyApi spotifyApi = spotifyCredentialsComponent.getApiWithTokens();
 
         AbstractDataRequest usersPlaylistsRequest = spotifyApi
                 .getListOfCurrentUsersPlaylists()
@@ -72,15 +125,20 @@ public class SpotifyPlaylistServiceImpl implements SpotifyPlaylistService {
                 "external_urls", "href", "images", "name", "owner",
                 "tracks.total", "uri", "isCollaborative", "isPublicAccess"));
 
-        SpotifyApi spotifyApi = spotifyApiComponent.getApiWithTokens();
-        String userId = spotifyApiComponent.getCurrentUserId();
+        SpotifyApi spotifyApi = spotifyCredentialsComponent.getApiWithTokens();
+        String userId = spotifyCredentialsComponent.getCurrentUserId();
 
-        AbstractDataRequest playlistDetailsRequest = spotifyApi
-                .getPlaylist(userId, playlistId)
-                .fields(fields)
-                .build();
-        String errorMessage = "Unable to retrieve playlist details for playlist " + playlistId;
-        return spotifyApiComponent.executeRequest(playlistDetailsRequest, errorMessage);
+        return playlistMetadataComponent.getPlaylist(spotifyApi, userId, playlistId, fields);
+    }
+
+    /**
+     * Get hit and miss counts for the cache of playlist details.
+     *
+     * @return cache statistics
+     */
+    @Override
+    public CacheStats getMetadataCacheStats() {
+        return playlistMetadataComponent.getStats();
     }
 
     /**
@@ -91,27 +149,235 @@ public class SpotifyPlaylistServiceImpl implements SpotifyPlaylistService {
      */
     @Override
     public LatestPlaylistResponse buildLatestAdditionsPlaylist(BuildPlaylistRequest request) {
-        String userId = spotifyApiComponent.getCurrentUserId();
+        String userId = spotifyCredentialsComponent.getCurrentUserId();
+        SpotifyApi spotifyApi = spotifyCredentialsComponent.getApiWithTokens();
+        return buildLatestAdditionsPlaylist(spotifyApi, userId, request, new BuildProgress());
+    }
+
+    /**
+     * Queue a build of a latest additions playlist with the specified requirements
+     * to run in the background. The user's tokens are resolved before the build is
+     * queued, since the build runs after the current request has completed.
+     *
+     * @param request playlist specifications
+     * @return queued build job
+     */
+    @Override
+    public BuildJob submitLatestAdditionsBuild(BuildPlaylistRequest request) {
+        String userId = spotifyCredentialsComponent.getCurrentUserId();
+        SpotifyApi spotifyApi = spotifyCredentialsComponent.getApiWithTokens();
+        return buildJobComponent.submit(userId,
+                progress -> buildLatestAdditionsPlaylist(spotifyApi, userId, request, progress));
+    }
+
+    /**
+     * Queue a rebuild of a saved playlist from its stored specification, so
+     * that the client does not have to resubmit the source playlists.
+     *
+     * @param playlistId ID of saved playlist to rebuild
+     * @return queued build job
+     */
+    @Override
+    public BuildJob submitSavedPlaylistRebuild(String playlistId) {
+        String userId = spotifyCredentialsComponent.getCurrentUserId();
+        UserPlaylist userPlaylist = userPlaylistComponent.getUserPlaylist(userId, playlistId);
+        if (userPlaylist == null || !hasSources(userPlaylist.getBuildSpec())) {
+            throw new IllegalArgumentException("No build specification saved for playlist " + playlistId);
+        }
+
+        SpotifyApi spotifyApi = spotifyCredentialsComponent.getApiWithTokens();
+        BuildPlaylistRequest buildSpec = userPlaylist.getBuildSpec();
+        return buildJobComponent.submit(userId,
+                progress -> buildLatestAdditionsPlaylist(spotifyApi, userId, buildSpec, progress));
+    }
+
+    /**
+     * Get the progress of a build job belonging to the current user.
+     *
+     * @param jobId ID of build job
+     * @return build job
+     */
+    @Override
+    public BuildJob getBuildJob(String jobId) {
+        return buildJobComponent.getJob(spotifyCredentialsComponent.getCurrentUserId(), jobId);
+    }
+
+    /**
+     * Create or update latest additions playlist with the specified requirements,
+     * using the given API instance rather than the current request's cookies.
+     * The time spent fetching, merging, writing, and persisting is recorded for
+     * each build, and returned with a per-playlist trace if the request asks for
+     * debug output. Source playlists whose tracks could not all be retrieved are
+     * listed in the response; if there are any, an existing playlist is left as
+     * it is rather than overwritten with a partial set of tracks.
+     *
+     * @param spotifyApi spotify API instance with tokens set
+     * @param userId     user ID of current user
+     * @param request    playlist specifications
+     * @param progress   progress to report to
+     * @return track preview for created/updated playlist
+     */
+    private LatestPlaylistResponse buildLatestAdditionsPlaylist(SpotifyApi spotifyApi,
+                                                                String userId,
+                                                                BuildPlaylistRequest request,
+                                                                BuildProgress progress) {
         List<PlaylistIdWrapper> playlists = request.getPlaylistIds().keySet().stream()
                 .map((String playlistId) -> new PlaylistIdWrapper(playlistId, userId))
                 .collect(Collectors.toList());
+        BuildTrace trace = new BuildTrace();
+        trace.addPlaylists(request.getPlaylistIds().keySet());
+        List<String> skippedPlaylistIds = new ArrayList<>();
 
+        long phaseStart = System.nanoTime();
         Map<PlaylistIdWrapper, LinkedList<PlaylistTrack>> playlistTracks =
-                getPlaylistTracks(request, playlists);
+                getPlaylistTracks(spotifyApi, request, playlists, progress, trace, skippedPlaylistIds);
+        phaseStart = recordPhase("fetch", phaseStart, trace);
 
-        List<PlaylistTrack> latestAdditionsTracks = getLatestAdditions(request, playlistTracks);
+        List<PlaylistTrack> latestAdditionsTracks = getLatestAdditions(spotifyApi, request, playlistTracks,
+                progress, trace, skippedPlaylistIds);
         String[] trackUris = latestAdditionsTracks.stream()
                 .map(playlistTrack -> playlistTrack.getTrack().getUri())
                 .collect(Collectors.toList())
                 .toArray(new String[latestAdditionsTracks.size()]);
+        phaseStart = recordPhase("merge", phaseStart, trace);
+
+        if (request.isOverwriteExisting() && !skippedPlaylistIds.isEmpty()) {
+            throw new RuntimeException(String.format(
+                    "Unable to retrieve tracks for source playlists %s, not overwriting playlist %s",
+                    skippedPlaylistIds, request.getPlaylistToOverwrite()));
+        }
 
         PlaylistIdWrapper playlistWrapper;
         if (request.isOverwriteExisting()) {
-            playlistWrapper = overwriteExistingLatestAdditions(request.getPlaylistToOverwrite(), trackUris, userId);
+            playlistWrapper = overwriteExistingLatestAdditions(spotifyApi, request, trackUris, userId);
         } else {
-            playlistWrapper = createNewLatestAdditions(trackUris, userId, request);
+            playlistWrapper = createNewLatestAdditions(spotifyApi, trackUris, userId, request);
+        }
+        progress.setTracksWritten(trackUris.length);
+        phaseStart = recordPhase("write", phaseStart, trace);
+
+        recordBuild(spotifyApi, userId, playlistWrapper.getPlaylistId(), request, playlists);
+        recordPhase("persist", phaseStart, trace);
+
+        LatestPlaylistResponse response = buildTrackPreviewResponse(playlistWrapper, latestAdditionsTracks);
+        response.setSkippedPlaylistIds(skippedPlaylistIds);
+        if (request.isDebug()) {
+            response.setTrace(trace);
+        }
+        return response;
+    }
+
+    /**
+     * Record the duration of a phase of a playlist build.
+     *
+     * @param phase      name of phase
+     * @param startNanos time the phase started
+     * @param trace      trace of the build
+     * @return time the phase ended, to use as the start of the next phase
+     */
+    private long recordPhase(String phase, long startNanos, BuildTrace trace) {
+        long endNanos = System.nanoTime();
+        meterRegistry.timer("playlist.build.phase", "phase", phase).record(endNanos - startNanos, TimeUnit.NANOSECONDS);
+        trace.setPhaseMs(phase, TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos));
+        return endNanos;
+    }
+
+    /**
+     * Rebuild a saved playlist from its stored specification if any of its
+     * source playlists have changed since it was last built. Runs without a
+     * browser session, using the refresh token stored for the playlist's user.
+     *
+     * @param userPlaylist saved playlist to refresh
+     * @return whether or not the playlist was rebuilt
+     */
+    @Override
+    public boolean refreshSavedPlaylist(UserPlaylist userPlaylist) {
+        String userId = userPlaylist.getUserId();
+        String playlistId = userPlaylist.getPlaylistId();
+        if (!hasSources(userPlaylist.getBuildSpec())) {
+            s_Logger.warn("Skipping refresh of playlist {}, build specification has no source playlists",
+                    playlistId);
+            userPlaylistComponent.markPlaylistChecked(userId, playlistId);
+            return false;
+        }
+
+        String refreshToken = userPlaylistComponent.getRefreshToken(userId);
+        if (refreshToken == null) {
+            s_Logger.info("Skipping refresh of playlist {}, no refresh token stored for user", playlistId);
+            userPlaylistComponent.markPlaylistChecked(userId, playlistId);
+            return false;
+        }
+
+        SpotifyApi spotifyApi = spotifyApiComponent.getApiWithRefreshToken(refreshToken);
+        if (!haveSourcesChanged(spotifyApi, userPlaylist)) {
+            s_Logger.debug("Skipping refresh of playlist {}, sources are unchanged", playlistId);
+            userPlaylistComponent.markPlaylistChecked(userId, playlistId);
+            return false;
+        }
+
+        buildLatestAdditionsPlaylist(spotifyApi, userId, userPlaylist.getBuildSpec(), new BuildProgress());
+        return true;
+    }
+
+    /**
+     * Check if a stored build specification has any source playlists. Rebuilding
+     * from one without would overwrite the saved playlist with no tracks.
+     *
+     * @param buildSpec stored build specification
+     * @return whether or not the specification can be rebuilt
+     */
+    private static boolean hasSources(BuildPlaylistRequest buildSpec) {
+        return buildSpec != null && buildSpec.getPlaylistIds() != null && !buildSpec.getPlaylistIds().isEmpty();
+    }
+
+    /**
+     * Check if any source playlist of a saved playlist has a different snapshot
+     * ID than when the playlist was last built.
+     *
+     * @param spotifyApi   spotify API instance with tokens set
+     * @param userPlaylist saved playlist to check
+     * @return whether or not any source playlist has changed
+     */
+    private boolean haveSourcesChanged(SpotifyApi spotifyApi, UserPlaylist userPlaylist) {
+        Map<String, String> sourceSnapshots = userPlaylist.getSourceSnapshots();
+        if (sourceSnapshots == null) {
+            return true;
+        }
+        for (String sourceId : userPlaylist.getBuildSpec().getPlaylistIds().keySet()) {
+            Playlist source = playlistMetadataComponent.getPlaylist(spotifyApi, userPlaylist.getUserId(),
+                    sourceId, "snapshot_id");
+            if (!Objects.equals(source.getSnapshotId(), sourceSnapshots.get(sourceId))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Store the specification a playlist was built from and the snapshot IDs of
+     * its sources. If background refreshes are enabled, the user's refresh token
+     * is stored too, so that the playlist can be rebuilt in the background when
+     * its sources change.
+     *
+     * @param spotifyApi spotify API instance with tokens set
+     * @param userId     user ID of current user
+     * @param playlistId ID of playlist that was built
+     * @param request    playlist specifications
+     * @param playlists  source playlists, with snapshot IDs set where retrieved
+     */
+    private void recordBuild(SpotifyApi spotifyApi, String userId, String playlistId,
+                             BuildPlaylistRequest request, List<PlaylistIdWrapper> playlists) {
+        Map<String, String> sourceSnapshots = new HashMap<>();
+        for (PlaylistIdWrapper playlist : playlists) {
+            if (playlist.getSnapshotId() != null) {
+                sourceSnapshots.put(playlist.getPlaylistId(), playlist.getSnapshotId());
+            }
+        }
+
+        userPlaylistComponent.recordPlaylistBuild(userId, playlistId, request, sourceSnapshots);
+        if (refreshEnabled && spotifyApi.getRefreshToken() != null) {
+            userPlaylistComponent.saveRefreshToken(userId, spotifyApi.getRefreshToken());
         }
-        return buildTrackPreviewResponse(playlistWrapper, latestAdditionsTracks);
     }
 
     /**
@@ -133,160 +399,169 @@ public class SpotifyPlaylistServiceImpl implements SpotifyPlaylistService {
 
     /**
      * Build a mapping of playlists to a LinkedList of their most recent tracks.
+     * The snapshot IDs and sizes of the playlists are resolved together first,
+     * then tracks for all playlists are retrieved concurrently, from the track tail
+     * cache for playlists that have not changed since they were last retrieved.
+     * Each retrieval may run for up to the fetch timeout once it starts, so time
+     * spent queued behind other builds is not counted against it; a playlist
+     * whose tracks cannot be retrieved in time is left out of the mapping and
+     * added to the skipped playlists rather than failing the whole build.
      *
-     * @param request   playlist specifications
-     * @param playlists playlists to retrieve tracks for
+     * @param spotifyApi         spotify API instance with tokens set
+     * @param request            playlist specifications
+     * @param playlists          playlists to retrieve tracks for
+     * @param progress           progress to report retrieved tracks to
+     * @param trace              trace to record requests for each playlist in
+     * @param skippedPlaylistIds list to add IDs of playlists that could not be retrieved to
      * @return mapping of playlists to their tracks
      */
-    private Map<PlaylistIdWrapper, LinkedList<PlaylistTrack>> getPlaylistTracks(BuildPlaylistRequest request,
-                                                                                List<PlaylistIdWrapper> playlists) {
-        Map<PlaylistIdWrapper, LinkedList<PlaylistTrack>> playlistTracks = new HashMap<>();
-
+    private Map<PlaylistIdWrapper, LinkedList<PlaylistTrack>> getPlaylistTracks(SpotifyApi spotifyApi,
+                                                                                BuildPlaylistRequest request,
+                                                                                List<PlaylistIdWrapper> playlists,
+                                                                                BuildProgress progress,
+                                                                                BuildTrace trace,
+                                                                                List<String> skippedPlaylistIds) {
+        Map<PlaylistIdWrapper, TimedTask<PlaylistTrack[]>> pendingTracks = new LinkedHashMap<>();
+        trackTailCacheComponent.resolveVersions(spotifyApi, playlists);
+
+        PlaylistCursor.PageFetcher pageFetcher = (playlist, limit, offset) -> {
+            PlaylistTrack[] tracks = getTracksForPlaylist(spotifyApi, playlist, limit, offset);
+            trace.getPlaylist(playlist.getPlaylistId()).addTrackRequest(tracks.length);
+            return tracks;
+        };
         for (PlaylistIdWrapper playlist : playlists) {
-            int limit = request.getNumTracks();
-            int playlistSize = request.getPlaylistIds().get(playlist.getPlaylistId());
-            int offset = playlistSize - request.getNumTracks();
-            if (offset < 0) {
-                offset = 0;
+            pendingTracks.put(playlist, TimedTask.submit(playlistFetchExecutor, () ->
+                    trackTailCacheComponent.getRecentTracks(spotifyApi, playlist, request.getNumTracks(),
+                            pageFetcher)));
+        }
+
+        Map<PlaylistIdWrapper, LinkedList<PlaylistTrack>> playlistTracks = new HashMap<>();
+        RuntimeException lastFailure = null;
+
+        for (Map.Entry<PlaylistIdWrapper, TimedTask<PlaylistTrack[]>> pending : pendingTracks.entrySet()) {
+            String playlistId = pending.getKey().getPlaylistId();
+            try {
+                PlaylistTrack[] tracks = pending.getValue().get(fetchTimeoutMs);
+                playlistTracks.put(pending.getKey(), new LinkedList<>(Arrays.asList(tracks)));
+                progress.addTracksFetched(tracks.length);
+                PlaylistTrace playlistTrace = trace.getPlaylist(playlistId);
+                playlistTrace.setCached(playlistTrace.getTrackRequests() == 0);
+            } catch (TimeoutException e) {
+                pending.getValue().cancel();
+                s_Logger.warn("Timed out retrieving tracks for playlist {}", playlistId);
+                skippedPlaylistIds.add(playlistId);
+                lastFailure = new RuntimeException("Timed out retrieving tracks for playlist " + playlistId, e);
+            } catch (ExecutionException e) {
+                s_Logger.warn("Unable to retrieve tracks for playlist " + playlistId, e.getCause());
+                skippedPlaylistIds.add(playlistId);
+                lastFailure = new RuntimeException("Unable to retrieve tracks for playlist " + playlistId,
+                        e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while retrieving playlist tracks", e);
             }
-            playlist.setOffset(offset);
-            PlaylistTrack[] tracks = getTracksForPlaylist(playlist, limit, offset);
-            playlistTracks.put(playlist, new LinkedList<>(Arrays.asList(tracks)));
         }
 
+        if (playlistTracks.isEmpty() && lastFailure != null) {
+            throw lastFailure;
+        }
         return playlistTracks;
     }
 
     /**
      * Generate a list of "latest additions" tracks from the given set of playlists.
+     * Each playlist is walked with a cursor, and cursors are kept in a priority
+     * queue ordered by the added date of their current track, so each track is
+     * selected in logarithmic time with respect to the number of playlists.
+     * Playlists whose earlier pages could not be retrieved are added to the
+     * skipped playlists.
      *
-     * @param request        playlist specifications
-     * @param playlistTracks mapping of playlist IDs to their tracks
+     * @param spotifyApi         spotify API instance with tokens set
+     * @param request            playlist specifications
+     * @param playlistTracks     mapping of playlist IDs to their tracks
+     * @param progress           progress to report retrieved and selected tracks to
+     * @param trace              trace to record refills and skips for each playlist in
+     * @param skippedPlaylistIds list to add IDs of playlists that could not be retrieved to
      * @return list of tracks for latest additions playlist
      */
-    private List<PlaylistTrack> getLatestAdditions(BuildPlaylistRequest request,
-                                                   Map<PlaylistIdWrapper, LinkedList<PlaylistTrack>> playlistTracks) {
+    private List<PlaylistTrack> getLatestAdditions(SpotifyApi spotifyApi,
+                                                   BuildPlaylistRequest request,
+                                                   Map<PlaylistIdWrapper, LinkedList<PlaylistTrack>> playlistTracks,
+                                                   BuildProgress progress,
+                                                   BuildTrace trace,
+                                                   List<String> skippedPlaylistIds) {
         List<PlaylistTrack> latestAdditionsTracks = new ArrayList<>();
-
-        PlaylistTrack lastAdded = null;
-        PlaylistIdWrapper lastAddedPlaylist = null;
-
-        Map<PlaylistIdWrapper, PlaylistTrack> lastAddedTracks = new HashMap<>();
-        for (PlaylistIdWrapper playlist : playlistTracks.keySet()) {
-            playlist.setSkipCount(0);
-            lastAddedTracks.put(playlist, getNextTrack(playlist, playlistTracks,
-                    lastAddedTracks.values()));
+        TrackDedupIndex dedupIndex = new TrackDedupIndex(request.getDedupPolicy(),
+                request.getNumTracks() + playlistTracks.size());
+
+        Comparator<PlaylistCursor> byAddedAt = Comparator.comparing(
+                (PlaylistCursor cursor) -> cursor.getCurrent().getAddedAt(),
+                Comparator.nullsFirst(Comparator.naturalOrder()));
+        PriorityQueue<PlaylistCursor> mostRecent = new PriorityQueue<>(
+                Math.max(playlistTracks.size(), 1), byAddedAt.reversed());
+
+        PlaylistCursor.PageFetcher pageFetcher = (playlist, limit, offset) -> {
+            PlaylistTrack[] tracks = getTracksForPlaylist(spotifyApi, playlist, limit, offset);
+            progress.addTracksFetched(tracks.length);
+            trace.getPlaylist(playlist.getPlaylistId()).addTrackRequest(tracks.length);
+            return tracks;
+        };
+        List<PlaylistCursor> cursors = new ArrayList<>();
+        for (Map.Entry<PlaylistIdWrapper, LinkedList<PlaylistTrack>> entry : playlistTracks.entrySet()) {
+            cursors.add(new PlaylistCursor(entry.getKey(), entry.getValue(), request.getNumTracks(),
+                    pageFetcher, playlistFetchExecutor, fetchTimeoutMs));
         }
 
-        int count = 0;
-        while (count < request.getNumTracks()) {
-            for (PlaylistIdWrapper playlist : lastAddedTracks.keySet()) {
-                if (lastAddedTracks.get(playlist) != null) {
-                    if (lastAdded == null) {
-                        lastAdded = lastAddedTracks.get(playlist);
-                        lastAddedPlaylist = playlist;
-                    } else {
-                        PlaylistTrack currentTrack = lastAddedTracks.get(playlist);
-                        if (currentTrack.getAddedAt().after(lastAdded.getAddedAt())) {
-                            lastAdded = currentTrack;
-                            lastAddedPlaylist = playlist;
-                        }
-                    }
+        try {
+            for (PlaylistCursor cursor : cursors) {
+                if (cursor.advance(dedupIndex)) {
+                    mostRecent.add(cursor);
                 }
             }
 
-            latestAdditionsTracks.add(lastAdded);
-            count++;
-
-            Collection<PlaylistTrack> comparedTracks = new ArrayList<>();
-            comparedTracks.addAll(latestAdditionsTracks);
-            comparedTracks.addAll(lastAddedTracks.values());
-
-            PlaylistTrack nextTrack = getNextTrack(lastAddedPlaylist, playlistTracks, comparedTracks);
-            lastAddedTracks.put(lastAddedPlaylist, nextTrack);
-            lastAdded = null;
-        }
-
-        return latestAdditionsTracks;
-    }
-
-    /**
-     * Retrieve the last added track for a given playlist, skipping local files
-     * and duplicate tracks.
-     *
-     * @param playlist         playlist to retrieve track for
-     * @param playlistTrackMap mapping of playlists to tracks
-     * @param comparedTracks   tracks to compare for duplicates
-     * @return next track for the given playlist
-     */
-    private PlaylistTrack getNextTrack(PlaylistIdWrapper playlist,
-                                       Map<PlaylistIdWrapper, LinkedList<PlaylistTrack>> playlistTrackMap,
-                                       Collection<PlaylistTrack> comparedTracks) {
-        LinkedList<PlaylistTrack> playlistTracks = playlistTrackMap.get(playlist);
-        if (!(playlistTracks.isEmpty())) {
-            PlaylistTrack nextTrack = playlistTracks.removeLast();
-            if (nextTrack.getIsLocal() || duplicateTrack(comparedTracks, nextTrack)) {
-                playlist.setSkipCount(playlist.getSkipCount() + 1);
-                return getNextTrack(playlist, playlistTrackMap, comparedTracks);
-            } else {
-                return nextTrack;
-            }
-        } else {
-            int skips = playlist.getSkipCount();
-            if (skips != 0) {
-                if (skips <= 10) {
-                    skips = 10;
+            while (latestAdditionsTracks.size() < request.getNumTracks() && !mostRecent.isEmpty()) {
+                PlaylistCursor cursor = mostRecent.poll();
+                latestAdditionsTracks.add(cursor.getCurrent());
+                progress.setTracksMerged(latestAdditionsTracks.size());
+                if (cursor.advance(dedupIndex)) {
+                    mostRecent.add(cursor);
                 }
-                int offset = Math.max(playlist.getOffset() - skips, 0);
-                PlaylistTrack[] moreTracks = getTracksForPlaylist(playlist, skips,
-                        offset);
-                if (moreTracks.length == 0) {
-                    return null;
+            }
+        } finally {
+            for (PlaylistCursor cursor : cursors) {
+                cursor.close();
+                if (cursor.isFetchFailed()) {
+                    skippedPlaylistIds.add(cursor.getPlaylist().getPlaylistId());
                 }
-                playlistTracks.addAll(Arrays.asList(moreTracks));
-                playlistTrackMap.put(playlist, playlistTracks);
-                playlist.setOffset(offset);
-                playlist.setSkipCount(0);
-                return getNextTrack(playlist, playlistTrackMap, comparedTracks);
+                PlaylistTrace playlistTrace = trace.getPlaylist(cursor.getPlaylist().getPlaylistId());
+                playlistTrace.setRefillCount(cursor.getRefillCount());
+                playlistTrace.setSkipCount(cursor.getPlaylist().getSkipCount());
             }
-            return null;
         }
-    }
 
-    /**
-     * Check if a track is in the given list of tracks.
-     *
-     * @param tracks        track to compare
-     * @param playlistTrack list of tracks to compare
-     * @return whether or not the track is present in the list
-     */
-    private boolean duplicateTrack(Collection<PlaylistTrack> tracks, PlaylistTrack playlistTrack) {
-        for (PlaylistTrack track : tracks) {
-            if (track.getTrack().getUri().equals(playlistTrack.getTrack().getUri())) {
-                return true;
-            }
-        }
-        return false;
+        return latestAdditionsTracks;
     }
 
     /**
-     * Overwrite an existing playlist with the "latest additions" tracks.
+     * Overwrite an existing playlist with the "latest additions" tracks, either
+     * incrementally or by replacing all of its tracks.
      *
-     * @param playlistToOverwrite playlist to overwrite
-     * @param trackUris           list of track URIs for playlist
-     * @param userId              user ID of current user
+     * @param spotifyApi spotify API instance with tokens set
+     * @param request    playlist specifications
+     * @param trackUris  list of track URIs for playlist
+     * @param userId     user ID of current user
      */
-    private PlaylistIdWrapper overwriteExistingLatestAdditions(String playlistToOverwrite,
+    private PlaylistIdWrapper overwriteExistingLatestAdditions(SpotifyApi spotifyApi,
+                                                               BuildPlaylistRequest request,
                                                                String[] trackUris,
                                                                String userId) {
-        SpotifyApi spotifyApi = spotifyApiComponent.getApiWithTokens();
-        PlaylistIdWrapper playlistIdWrapper = new PlaylistIdWrapper(playlistToOverwrite, userId);
-        AbstractDataRequest replaceTracksRequest = spotifyApi
-                .replacePlaylistsTracks(userId, playlistIdWrapper.getPlaylistId(), trackUris)
-                .build();
-
-        String errorMessage = "Unable to replace tracks for playlist %s" + playlistIdWrapper;
-        spotifyApiComponent.executeRequest(replaceTracksRequest, errorMessage);
+        PlaylistIdWrapper playlistIdWrapper = new PlaylistIdWrapper(request.getPlaylistToOverwrite(), userId);
+        if (request.isIncrementalOverwrite()) {
+            playlistWriterComponent.updateTracks(spotifyApi, userId, playlistIdWrapper.getPlaylistId(), trackUris);
+        } else {
+            playlistWriterComponent.replaceTracks(spotifyApi, userId, playlistIdWrapper.getPlaylistId(), trackUris);
+        }
+        playlistMetadataComponent.invalidate(playlistIdWrapper.getPlaylistId());
 
         return playlistIdWrapper;
     }
@@ -294,14 +569,15 @@ public class SpotifyPlaylistServiceImpl implements SpotifyPlaylistService {
     /**
      * Create a new playlist containing the "latest additions" tracks.
      *
-     * @param trackUris list of track URIs for playlist
-     * @param userId    user ID of current user
-     * @param request   playlist specifications
+     * @param spotifyApi spotify API instance with tokens set
+     * @param trackUris  list of track URIs for playlist
+     * @param userId     user ID of current user
+     * @param request    playlist specifications
      */
-    private PlaylistIdWrapper createNewLatestAdditions(String[] trackUris,
+    private PlaylistIdWrapper createNewLatestAdditions(SpotifyApi spotifyApi,
+                                                       String[] trackUris,
                                                        String userId,
                                                        BuildPlaylistRequest request) {
-        SpotifyApi spotifyApi = spotifyApiComponent.getApiWithTokens();
         AbstractDataRequest createPlaylistRequest = spotifyApi
                 .createPlaylist(userId, request.getPlaylistName())
                 .description(request.getDescription())
@@ -315,28 +591,26 @@ public class SpotifyPlaylistServiceImpl implements SpotifyPlaylistService {
                 createPlaylistErrorMessage);
 
         PlaylistIdWrapper playlistIdWrapper = new PlaylistIdWrapper(latestAdditions.getId(), userId);
-        AbstractDataRequest addTracksRequest = spotifyApi
-                .addTracksToPlaylist(userId, playlistIdWrapper.getPlaylistId(), trackUris)
-                .build();
-
-        String addTracksErrorMessage = "Unable to add tracks to playlist " + playlistIdWrapper.getPlaylistId();
-        spotifyApiComponent.executeRequest(addTracksRequest, addTracksErrorMessage);
+        playlistWriterComponent.addTracks(spotifyApi, userId, playlistIdWrapper.getPlaylistId(), trackUris);
         userPlaylistComponent.saveUserPlaylist(userId, playlistIdWrapper.getPlaylistId());
 
         return playlistIdWrapper;
     }
 
     /**
-     * Retrieve the tracks for an individual playlist.
+     * Retrieve the tracks for an individual playlist with the given API instance.
+     * Safe to call outside of the request thread. Identical concurrent requests
+     * share one call, since the playlist's snapshot has already been retrieved
+     * with the user's own access token by the time its tracks are requested.
      *
+     * @param spotifyApi      spotify API instance with tokens set
      * @param playlistWrapper wrapper object of playlist to retrieve tracks for
      * @param limit           maximum number of tracks to retrieve
      * @param offset          offset to start retrieving tracks from
      * @return array of playlist tracks
      */
-    private PlaylistTrack[] getTracksForPlaylist(PlaylistIdWrapper playlistWrapper, int limit, int offset) {
-        SpotifyApi spotifyApi = spotifyApiComponent.getApiWithTokens();
-
+    private PlaylistTrack[] getTracksForPlaylist(SpotifyApi spotifyApi, PlaylistIdWrapper playlistWrapper,
+                                                 int limit, int offset) {
         AbstractDataRequest trackRequest = spotifyApi
                 .getPlaylistsTracks(playlistWrapper.getUserId(), playlistWrapper.getPlaylistId())
                 .limit(limit)
@@ -344,7 +618,7 @@ public class SpotifyPlaylistServiceImpl implements SpotifyPlaylistService {
                 .build();
 
         String errorMessage = "Unable to retrieve tracks for playlist " + playlistWrapper.toString();
-        Paging<PlaylistTrack> tracks = spotifyApiComponent.executeRequest(trackRequest, errorMessage);
+        Paging<PlaylistTrack> tracks = spotifyApiComponent.executeSharedRequest(trackRequest, errorMessage);
         return tracks.getItems();
     }
 
@@ -3,7 +3,9 @@
  */
 app.constant('endpoints', {
     GET_PLAYLISTS: "/api/playlists",
-    BUILD_PLAYLIST: "/api/playlists",
+    BUILD_PLAYLIST: "/api/playlists/jobs",
+    GET_BUILD_JOB: "/api/playlists/jobs/{0}",
+    REBUILD_SAVED_PLAYLIST: "/api/playlists/{0}/rebuild",
     GET_PLAYLIST_DETAILS: "/api/playlists/{0}",
     GET_EXISTING_PLAYLISTS: "/api/saved",
     DELETE_EXISTING_PLAYLIST: "/api/saved/{0}"
@@ -1,8 +1,8 @@
 /**
  * Main controller for application.
  */
-app.controller('controller', ['$scope', '$http', '$mdDialog', 'rest', 'endpoints',
-    function ($scope, $http, $mdDialog, rest, endpoints) {
+app.controller('controller', ['$scope', '$http', '$mdDialog', '$timeout', 'rest', 'endpoints',
+    function ($scope, $http, $mdDialog, $timeout, rest, endpoints) {
 
     $scope.playlists = null;
     $scope.selectedPlaylists = [];
@@ -11,16 +11,19 @@ app.controller('controller', ['$scope', '$http', '$mdDialog', 'rest', 'endpoints
     $scope.playlistFilter = "";
     $scope.playlistDetails = {};
     $scope.existingPlaylists = [];
+    $scope.failedPlaylistIds = [];
 
     $scope.submissionForm = {
         playlistName: "Latest Additions",
         numTracks: 25,
         overwriteExisting: false,
+        incrementalOverwrite: false,
         description: null,
         isPublic: false,
         isCollaborative: false,
         playlistIds: {},
-        playlistToOverwrite: null
+        playlistToOverwrite: null,
+        dedupPolicy: "URI"
     };
 
     /**
@@ -133,12 +136,17 @@ app.controller('controller', ['$scope', '$http', '$mdDialog', 'rest', 'endpoints
         return list.indexOf(item) > -1;
     };
 
+    var BUILD_POLL_INTERVAL_MS = 1000;
+
+    $scope.buildProgress = null;
+
     /**
-     * Submit the form in its current state to the build endpoint.
+     * Submit the form in its current state to the build endpoint, and poll the
+     * resulting build job until it finishes.
      */
     $scope.submitForm = function (event) {
         $scope.selectedPlaylists.forEach(function (playlist) {
-            $scope.submissionForm.playlistIds[playlist.id] = playlist.tracks.total;
+            $scope.submissionForm.playlistIds[playlist.id] = null;
         });
 
         var description = $scope.submissionForm.description;
@@ -151,11 +159,34 @@ app.controller('controller', ['$scope', '$http', '$mdDialog', 'rest', 'endpoints
                 "https://github.com/omwan/latest-additions", [playlistNames]);
         }
 
-        var successHandler = function (response) {
+        rest.postData(endpoints.BUILD_PLAYLIST, null, $scope.submissionForm, _pollBuildJob(event),
+            "Unable to create playlist with given parameters");
+    };
+
+    /**
+     * Rebuild a saved playlist from the specification it was last built with,
+     * and poll the resulting build job until it finishes.
+     * @param id    playlist id
+     * @param event click event for modal
+     */
+    $scope.rebuildSavedPlaylist = function (id, event) {
+        rest.postData(_formatString(endpoints.REBUILD_SAVED_PLAYLIST, [id]), null, null, _pollBuildJob(event),
+            "Unable to rebuild saved playlist");
+    };
+
+    /**
+     * Build a handler that polls a build job until it finishes, then shows a
+     * preview of the built playlist.
+     * @param event         click event for modal
+     * @returns {function}  handler for responses containing a build job
+     */
+    var _pollBuildJob = function (event) {
+        var showPreview = function (result) {
             $mdDialog.show({
                 locals: {
-                    url: response.data.playlistUrl,
-                    tracks: response.data.tracklistPreview
+                    url: result.playlistUrl,
+                    tracks: result.tracklistPreview,
+                    skippedPlaylistIds: result.skippedPlaylistIds || []
                 },
                 controller: TracklistPreviewController,
                 templateUrl: '../templates/tracklist-preview.tpl.html',
@@ -165,8 +196,28 @@ app.controller('controller', ['$scope', '$http', '$mdDialog', 'rest', 'endpoints
             });
         };
 
-        rest.postData(endpoints.BUILD_PLAYLIST, null, $scope.submissionForm, successHandler,
-            "Unable to create playlist with given parameters");
+        var stopPolling = function () {
+            $scope.buildProgress = null;
+        };
+
+        var pollJob = function (response) {
+            var job = response.data;
+            $scope.buildProgress = job.progress;
+            if (job.status === "SUCCEEDED") {
+                $scope.buildProgress = null;
+                showPreview(job.result);
+            } else if (job.status === "FAILED") {
+                $scope.buildProgress = null;
+                rest.showError(job.error || "Unable to create playlist with given parameters");
+            } else {
+                $timeout(function () {
+                    rest.getData(_formatString(endpoints.GET_BUILD_JOB, [job.id]), null, pollJob,
+                        "Unable to retrieve playlist build progress", stopPolling);
+                }, BUILD_POLL_INTERVAL_MS);
+            }
+        };
+
+        return pollJob;
     };
 
     /**
@@ -175,10 +226,12 @@ app.controller('controller', ['$scope', '$http', '$mdDialog', 'rest', 'endpoints
      * @param $mdDialog   dialog module
      * @param url         link to playlist
      * @param tracks      tracklist preview for playlist
+     * @param skippedPlaylistIds IDs of source playlists that could not be retrieved
      */
-    function TracklistPreviewController($scope, $mdDialog, url, tracks) {
+    function TracklistPreviewController($scope, $mdDialog, url, tracks, skippedPlaylistIds) {
         $scope.url = url;
         $scope.tracks = tracks;
+        $scope.skippedPlaylistIds = skippedPlaylistIds;
 
         $scope.hide = function () {
             $mdDialog.hide();
@@ -190,7 +243,8 @@ app.controller('controller', ['$scope', '$http', '$mdDialog', 'rest', 'endpoints
      */
     var _getExistingPlaylists = function () {
         var successHandler = function (response) {
-            $scope.existingPlaylists = response.data;
+            $scope.existingPlaylists = response.data.playlists;
+            $scope.failedPlaylistIds = response.data.failedPlaylistIds;
             if ($scope.existingPlaylists.length > 0) {
                 $scope.submissionForm.playlistToOverwrite = $scope.existingPlaylists[0].id;
             }
@@ -206,6 +260,9 @@ app.controller('controller', ['$scope', '$http', '$mdDialog', 'rest', 'endpoints
             $scope.existingPlaylists.filter(function (playlist) {
                 return playlist.id !== id;
             });
+            $scope.failedPlaylistIds = $scope.failedPlaylistIds.filter(function (playlistId) {
+                return playlistId !== id;
+            });
         };
 
         rest.deleteData(endpoints.DELETE_EXISTING_PLAYLIST, {id: id}, successHandler,
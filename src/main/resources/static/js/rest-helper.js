@@ -4,6 +4,18 @@
 app.service('rest', ['$http', '$mdToast', '$rootScope', 
     function ($http, $mdToast, $rootScope) {
 
+    /**
+     * Show a toast containing the given error message.
+     *
+     * @param errorMessage error message to be shown
+     */
+    var _showError = function (errorMessage) {
+        $mdToast.show($mdToast.simple()
+            .textContent(errorMessage)
+            .position("bottom left")
+            .hideDelay(3000));
+    };
+
     /**
      * Make a rest call for the following parameters; handles showing loading spinner
      * while request is being made, and showing toast upon rest failure.
@@ -14,19 +26,20 @@ app.service('rest', ['$http', '$mdToast', '$rootScope',
      * @param data           request body
      * @param successHandler function to be executed upon success
      * @param errorMessage   error message to be shown in toast upon failure
+     * @param errorHandler   optional function to be executed upon failure
      */
-    var _executeHttpRequest = function (method, url, params, data, successHandler, errorMessage) {
+    var _executeHttpRequest = function (method, url, params, data, successHandler, errorMessage, errorHandler) {
         $rootScope.isLoading = true;
         $http({
             'method': method,
             'url': url,
             'params': params,
             'data': data
-        }).then(successHandler, function () {
-            $mdToast.show($mdToast.simple()
-                .textContent(errorMessage)
-                .position("bottom left")
-                .hideDelay(3000));
+        }).then(successHandler, function (response) {
+            _showError(errorMessage);
+            if (errorHandler) {
+                errorHandler(response);
+            }
         }).finally(function () {
             $rootScope.isLoading = false;
         });
@@ -38,9 +51,10 @@ app.service('rest', ['$http', '$mdToast', '$rootScope',
      * @param params         parameters to append to request url
      * @param successHandler function to be executed upon success
      * @param errorMessage   error message to be shown in toast upon failure
+     * @param errorHandler   optional function to be executed upon failure
      */
-    this.getData = function (url, params, successHandler, errorMessage) {
-        _executeHttpRequest('GET', url, params, null, successHandler, errorMessage);
+    this.getData = function (url, params, successHandler, errorMessage, errorHandler) {
+        _executeHttpRequest('GET', url, params, null, successHandler, errorMessage, errorHandler);
     };
 
     /**
@@ -65,4 +79,12 @@ app.service('rest', ['$http', '$mdToast', '$rootScope',
     this.deleteData = function (url, params, successHandler, errorMessage) {
         _executeHttpRequest('DELETE', url, params, null, successHandler, errorMessage);
     };
+
+    /**
+     * Show a toast containing the given error message.
+     * @param errorMessage   error message to be shown
+     */
+    this.showError = function (errorMessage) {
+        _showError(errorMessage);
+    };
 }]);
\ No newline at end of file
@@ -1,9 +1,13 @@
 package com.omwan.latestadditions;
 
 import com.wrapper.spotify.SpotifyApi;
+import com.wrapper.spotify.model_objects.specification.Paging;
 import com.wrapper.spotify.model_objects.specification.Playlist;
+import com.wrapper.spotify.model_objects.specification.PlaylistTrack;
+import com.wrapper.spotify.model_objects.specification.Track;
 
 import java.net.URI;
+import java.util.Date;
 
 /**
  * Util methods to create mock objects for tests.
@@ -37,4 +41,36 @@ public class SpotifyTestUtils {
                 .setId(playlistId)
                 .build();
     }
+
+    /**
+     * Create a mocked instance of a playlist track with the given track URI
+     * and added date.
+     *
+     * @param trackUri URI of track
+     * @param addedAt  time in milliseconds the track was added to the playlist
+     * @param isLocal  whether or not the track is a local file
+     * @return mocked playlist track
+     */
+    public static PlaylistTrack buildMockedPlaylistTrack(String trackUri, long addedAt, boolean isLocal) {
+        return new PlaylistTrack.Builder()
+                .setTrack(new Track.Builder()
+                        .setUri(trackUri)
+                        .build())
+                .setAddedAt(new Date(addedAt))
+                .setIsLocal(isLocal)
+                .build();
+    }
+
+    /**
+     * Create a mocked paging object containing the given playlist tracks.
+     *
+     * @param tracks tracks to add to paging object
+     * @return mocked paging object
+     */
+    public static Paging<PlaylistTrack> buildMockedTrackPaging(PlaylistTrack... tracks) {
+        return new Paging.Builder<PlaylistTrack>()
+                .setItems(tracks)
+                .setTotal(tracks.length)
+                .build();
+    }
 }
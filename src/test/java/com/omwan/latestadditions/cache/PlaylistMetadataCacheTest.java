@@ -0,0 +1,76 @@
+package com.omwan.latestadditions.cache;
+
+import com.omwan.latestadditions.SpotifyTestUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for PlaylistMetadataCache.
+ */
+public class PlaylistMetadataCacheTest {
+
+    /**
+     * Assert that once the cache is full, the least recently used entry is
+     * evicted.
+     */
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        PlaylistMetadataCache cache = new PlaylistMetadataCache(2, 1000);
+        cache.put(key("a"), entry("a", 0));
+        cache.put(key("b"), entry("b", 0));
+        cache.get(key("a"));
+        cache.put(key("c"), entry("c", 0));
+
+        assertNotNull(cache.get(key("a")));
+        assertNull(cache.get(key("b")));
+        assertNotNull(cache.get(key("c")));
+        assertEquals(1, cache.getStats().getEvictions());
+        assertEquals(2, cache.getStats().getSize());
+    }
+
+    /**
+     * Assert that entries expire after the TTL, and are fresh again once
+     * revalidated.
+     */
+    @Test
+    public void testFreshness() {
+        PlaylistMetadataCache cache = new PlaylistMetadataCache(2, 1000);
+        PlaylistMetadataCache.Entry entry = entry("a", 0);
+
+        assertTrue(cache.isFresh(entry, 999));
+        assertFalse(cache.isFresh(entry, 1000));
+
+        entry.revalidate(1000);
+        assertTrue(cache.isFresh(entry, 1999));
+    }
+
+    /**
+     * Assert that invalidating a playlist removes its entries for every user.
+     */
+    @Test
+    public void testInvalidate() {
+        PlaylistMetadataCache cache = new PlaylistMetadataCache(10, 1000);
+        cache.put(new PlaylistMetadataCache.Key("user1", "a", "id"), entry("a", 0));
+        cache.put(new PlaylistMetadataCache.Key("user2", "a", "id"), entry("a", 0));
+        cache.put(key("b"), entry("b", 0));
+
+        cache.invalidate("a");
+
+        assertEquals(1, cache.getStats().getSize());
+        assertNotNull(cache.get(key("b")));
+    }
+
+    private static PlaylistMetadataCache.Key key(String playlistId) {
+        return new PlaylistMetadataCache.Key("user", playlistId, "id");
+    }
+
+    private static PlaylistMetadataCache.Entry entry(String playlistId, long validatedAt) {
+        return new PlaylistMetadataCache.Entry(SpotifyTestUtils.buildMockedPlaylist(playlistId),
+                "snapshot", validatedAt);
+    }
+}
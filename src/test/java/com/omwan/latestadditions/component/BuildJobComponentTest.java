@@ -0,0 +1,121 @@
+package com.omwan.latestadditions.component;
+
+import com.omwan.latestadditions.dto.BuildJob;
+import com.omwan.latestadditions.dto.LatestPlaylistResponse;
+import mockit.Deencapsulation;
+import mockit.Tested;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Unit tests for BuildJobComponent.
+ */
+public class BuildJobComponentTest {
+
+    @Tested
+    private BuildJobComponent buildJobComponent;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setup() {
+        executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1));
+        buildJobComponent = new BuildJobComponent();
+        Deencapsulation.setField(buildJobComponent, "playlistBuildExecutor", executor);
+        Deencapsulation.setField(buildJobComponent, "jobRetentionMs", 60000L);
+    }
+
+    @After
+    public void teardown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Assert that a submitted build reports its progress and result, and that
+     * a failed build reports its error.
+     */
+    @Test
+    public void testSubmit() throws Exception {
+        final LatestPlaylistResponse expected = new LatestPlaylistResponse();
+
+        BuildJob succeeded = buildJobComponent.submit("user", progress -> {
+            progress.addTracksFetched(10);
+            progress.setTracksMerged(5);
+            progress.setTracksWritten(5);
+            return expected;
+        });
+        BuildJob failed = buildJobComponent.submit("user", progress -> {
+            throw new RuntimeException("build failed");
+        });
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+
+        BuildJob actual = buildJobComponent.getJob("user", succeeded.getId());
+        assertEquals(BuildJob.Status.SUCCEEDED, actual.getStatus());
+        assertSame(expected, actual.getResult());
+        assertEquals(10, actual.getProgress().getTracksFetched());
+        assertEquals(5, actual.getProgress().getTracksWritten());
+
+        actual = buildJobComponent.getJob("user", failed.getId());
+        assertEquals(BuildJob.Status.FAILED, actual.getStatus());
+        assertEquals("build failed", actual.getError());
+    }
+
+    /**
+     * Assert that a build throwing an error rather than an exception still
+     * finishes as failed.
+     */
+    @Test
+    public void testSubmitError() throws Exception {
+        BuildJob job = buildJobComponent.submit("user", progress -> {
+            throw new AssertionError("build error");
+        });
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+
+        BuildJob actual = buildJobComponent.getJob("user", job.getId());
+        assertEquals(BuildJob.Status.FAILED, actual.getStatus());
+        assertEquals("Playlist build did not complete", actual.getError());
+    }
+
+    /**
+     * Assert that builds are rejected once the queue is full.
+     */
+    @Test(expected = RuntimeException.class)
+    public void testSubmitQueueFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            for (int i = 0; i < 3; i++) {
+                buildJobComponent.submit("user", progress -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return null;
+                });
+            }
+        } finally {
+            release.countDown();
+        }
+    }
+
+    /**
+     * Assert that a user cannot retrieve another user's job.
+     */
+    @Test(expected = RuntimeException.class)
+    public void testGetJobOtherUser() {
+        BuildJob job = buildJobComponent.submit("user", progress -> null);
+        buildJobComponent.getJob("other user", job.getId());
+    }
+}
@@ -0,0 +1,126 @@
+package com.omwan.latestadditions.component;
+
+import com.omwan.latestadditions.SpotifyTestUtils;
+import com.omwan.latestadditions.cache.PlaylistMetadataCache;
+import com.omwan.latestadditions.dto.CacheStats;
+import com.wrapper.spotify.model_objects.specification.Playlist;
+import com.wrapper.spotify.requests.data.AbstractDataRequest;
+import mockit.Deencapsulation;
+import mockit.Delegate;
+import mockit.Injectable;
+import mockit.NonStrictExpectations;
+import mockit.Tested;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Unit tests for PlaylistMetadataComponent.
+ */
+public class PlaylistMetadataComponentTest {
+
+    private static final String FIELDS = "name,uri,id";
+
+    @Tested
+    private PlaylistMetadataComponent playlistMetadataComponent;
+
+    @Injectable
+    private SpotifyApiComponent spotifyApiComponent;
+
+    private List<String> requestedFields;
+
+    private String snapshotId;
+
+    @Before
+    public void setup() {
+        playlistMetadataComponent = new PlaylistMetadataComponent();
+        requestedFields = new ArrayList<>();
+        snapshotId = "snapshot1";
+
+        new NonStrictExpectations() {{
+            spotifyApiComponent.executeRequest((AbstractDataRequest) any, anyString);
+            result = new Delegate<Playlist>() {
+                @SuppressWarnings("unused")
+                Playlist executeRequest(AbstractDataRequest request, String errorMessage) {
+                    String fields = request.getUri().getQuery().replace("fields=", "");
+                    requestedFields.add(fields);
+                    return new Playlist.Builder()
+                            .setId("playlist")
+                            .setSnapshotId(snapshotId)
+                            .build();
+                }
+            };
+        }};
+    }
+
+    /**
+     * Assert that fresh entries are served from the cache without any requests.
+     */
+    @Test
+    public void testGetPlaylistHit() {
+        useCache(new PlaylistMetadataCache(10, 60000));
+
+        Playlist first = getPlaylist();
+        Playlist second = getPlaylist();
+
+        assertSame(first, second);
+        assertEquals(1, requestedFields.size());
+        assertEquals(FIELDS + ",snapshot_id", requestedFields.get(0));
+        assertStats(1, 0, 1);
+    }
+
+    /**
+     * Assert that expired entries whose snapshot has not changed are served from
+     * the cache after requesting only the snapshot ID.
+     */
+    @Test
+    public void testGetPlaylistRevalidated() {
+        useCache(new PlaylistMetadataCache(10, 0));
+
+        Playlist first = getPlaylist();
+        Playlist second = getPlaylist();
+
+        assertSame(first, second);
+        assertEquals(2, requestedFields.size());
+        assertEquals("snapshot_id", requestedFields.get(1));
+        assertStats(0, 1, 1);
+    }
+
+    /**
+     * Assert that expired entries whose snapshot has changed are retrieved again
+     * in full.
+     */
+    @Test
+    public void testGetPlaylistChanged() {
+        useCache(new PlaylistMetadataCache(10, 0));
+
+        getPlaylist();
+        snapshotId = "snapshot2";
+        Playlist actual = getPlaylist();
+
+        assertEquals("snapshot2", actual.getSnapshotId());
+        assertEquals(3, requestedFields.size());
+        assertStats(0, 0, 2);
+    }
+
+    private void useCache(PlaylistMetadataCache cache) {
+        Deencapsulation.setField(playlistMetadataComponent, "playlistMetadataCache", cache);
+    }
+
+    private Playlist getPlaylist() {
+        return playlistMetadataComponent.getPlaylist(SpotifyTestUtils.buildMockedSpotifyApi(),
+                "user", "playlist", FIELDS);
+    }
+
+    private void assertStats(long hits, long revalidations, long misses) {
+        CacheStats stats = playlistMetadataComponent.getStats();
+        assertEquals(hits, stats.getHits());
+        assertEquals(revalidations, stats.getRevalidations());
+        assertEquals(misses, stats.getMisses());
+    }
+}
@@ -0,0 +1,203 @@
+package com.omwan.latestadditions.component;
+
+import com.omwan.latestadditions.SpotifyTestUtils;
+import com.wrapper.spotify.exceptions.detailed.TooManyRequestsException;
+import com.wrapper.spotify.model_objects.specification.PlaylistTrack;
+import com.wrapper.spotify.requests.data.AbstractDataRequest;
+import com.wrapper.spotify.requests.data.playlists.AddTracksToPlaylistRequest;
+import com.wrapper.spotify.requests.data.playlists.GetPlaylistsTracksRequest;
+import com.wrapper.spotify.requests.data.playlists.RemoveTracksFromPlaylistRequest;
+import com.wrapper.spotify.requests.data.playlists.ReplacePlaylistsTracksRequest;
+import mockit.Deencapsulation;
+import mockit.Delegate;
+import mockit.Injectable;
+import mockit.NonStrictExpectations;
+import mockit.Tested;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for PlaylistWriterComponent.
+ */
+public class PlaylistWriterComponentTest {
+
+    @Tested
+    private PlaylistWriterComponent playlistWriterComponent;
+
+    @Injectable
+    private SpotifyApiComponent spotifyApiComponent;
+
+    @Before
+    public void setup() {
+        playlistWriterComponent = new PlaylistWriterComponent();
+        Deencapsulation.setField(playlistWriterComponent, "maxIncrementalMoves", 5);
+    }
+
+    /**
+     * Assert that track URIs are split into batches of at most 100 tracks,
+     * preserving their order.
+     */
+    @Test
+    public void testPartition() {
+        List<String[]> actual = playlistWriterComponent.partition(buildTrackUris(250));
+        assertEquals(3, actual.size());
+        assertEquals(100, actual.get(0).length);
+        assertEquals(100, actual.get(1).length);
+        assertEquals(50, actual.get(2).length);
+        assertEquals("track100", actual.get(1)[0]);
+        assertEquals("track249", actual.get(2)[49]);
+    }
+
+    /**
+     * Assert that replacing tracks sends a single replace request followed by
+     * append requests for the remaining batches.
+     */
+    @Test
+    public void testReplaceTracks() {
+        final List<Class<?>> executed = new ArrayList<>();
+
+        new NonStrictExpectations() {{
+            spotifyApiComponent.executeRequest((AbstractDataRequest) any, anyString);
+            result = new Delegate() {
+                Object executeRequest(AbstractDataRequest request, String errorMessage) {
+                    executed.add(request.getClass());
+                    return null;
+                }
+            };
+        }};
+
+        playlistWriterComponent.replaceTracks(SpotifyTestUtils.buildMockedSpotifyApi(),
+                "user", "playlist", buildTrackUris(250));
+        assertEquals(Arrays.asList(ReplacePlaylistsTracksRequest.class,
+                AddTracksToPlaylistRequest.class, AddTracksToPlaylistRequest.class), executed);
+    }
+
+    /**
+     * Assert that a batch that fails is not resent by the writer, since
+     * retrying is left to the API component, and that no further batches are
+     * sent after it.
+     */
+    @Test
+    public void testAddTracksFailedBatch() {
+        final List<Integer> attempts = new ArrayList<>();
+
+        new NonStrictExpectations() {{
+            spotifyApiComponent.executeRequest((AbstractDataRequest) any, anyString);
+            result = new Delegate() {
+                Object executeRequest(AbstractDataRequest request, String errorMessage) {
+                    attempts.add(attempts.size());
+                    if (attempts.size() == 2) {
+                        throw new RuntimeException(errorMessage, new TooManyRequestsException("rate limited", 0));
+                    }
+                    return null;
+                }
+            };
+        }};
+
+        try {
+            playlistWriterComponent.addTracks(SpotifyTestUtils.buildMockedSpotifyApi(),
+                    "user", "playlist", buildTrackUris(250));
+            fail("Expected exception when batch cannot be written");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("1 of 3 batches written"));
+        }
+        assertEquals(2, attempts.size());
+    }
+
+    /**
+     * Assert that when new tracks are added to the front of a playlist and the
+     * oldest tracks fall off the end, only a removal and an insertion are sent.
+     */
+    @Test
+    public void testUpdateTracks() {
+        final List<Class<?>> executed = mockExistingTracks(false, "c", "d", "e", "f");
+
+        playlistWriterComponent.updateTracks(SpotifyTestUtils.buildMockedSpotifyApi(),
+                "user", "playlist", new String[]{"a", "b", "c", "d"});
+        assertEquals(Arrays.asList(GetPlaylistsTracksRequest.class,
+                RemoveTracksFromPlaylistRequest.class, AddTracksToPlaylistRequest.class), executed);
+    }
+
+    /**
+     * Assert that if an incremental update fails, the failed write is not
+     * retried and all of the playlist's tracks are replaced instead.
+     */
+    @Test
+    public void testUpdateTracksFallback() {
+        final List<Class<?>> executed = mockExistingTracks(true, "c", "d", "e", "f");
+
+        playlistWriterComponent.updateTracks(SpotifyTestUtils.buildMockedSpotifyApi(),
+                "user", "playlist", new String[]{"a", "b", "c", "d"});
+        assertEquals(Arrays.asList(GetPlaylistsTracksRequest.class,
+                RemoveTracksFromPlaylistRequest.class, ReplacePlaylistsTracksRequest.class), executed);
+    }
+
+    /**
+     * Assert that if the playlist has a track without a URI, which cannot be
+     * removed individually, all of the playlist's tracks are replaced instead.
+     */
+    @Test
+    public void testUpdateTracksWithoutUri() {
+        final List<Class<?>> executed = mockExistingTracks(false, "c", null, "d");
+
+        playlistWriterComponent.updateTracks(SpotifyTestUtils.buildMockedSpotifyApi(),
+                "user", "playlist", new String[]{"a", "b", "c", "d"});
+        assertEquals(Arrays.asList(GetPlaylistsTracksRequest.class, ReplacePlaylistsTracksRequest.class),
+                executed);
+    }
+
+    /**
+     * Mock the spotify API component to return the given tracks as the current
+     * contents of the playlist, recording the type of every executed request.
+     *
+     * @param failRemovals whether or not removal requests should fail
+     * @param trackUris    URIs of tracks currently in the playlist
+     * @return list of executed request types
+     */
+    private List<Class<?>> mockExistingTracks(final boolean failRemovals, String... trackUris) {
+        final List<Class<?>> executed = new ArrayList<>();
+        final PlaylistTrack[] tracks = new PlaylistTrack[trackUris.length];
+        for (int i = 0; i < trackUris.length; i++) {
+            tracks[i] = SpotifyTestUtils.buildMockedPlaylistTrack(trackUris[i], i, false);
+        }
+
+        new NonStrictExpectations() {{
+            spotifyApiComponent.executeRequest((AbstractDataRequest) any, anyString);
+            result = new Delegate() {
+                Object executeRequest(AbstractDataRequest request, String errorMessage) {
+                    executed.add(request.getClass());
+                    if (request instanceof GetPlaylistsTracksRequest) {
+                        return SpotifyTestUtils.buildMockedTrackPaging(tracks);
+                    }
+                    if (failRemovals && request instanceof RemoveTracksFromPlaylistRequest) {
+                        throw new RuntimeException(errorMessage);
+                    }
+                    return null;
+                }
+            };
+        }};
+        return executed;
+    }
+
+    /**
+     * Build an array of track URIs of the given size.
+     *
+     * @param size number of URIs
+     * @return track URIs
+     */
+    private String[] buildTrackUris(int size) {
+        String[] trackUris = new String[size];
+        for (int i = 0; i < size; i++) {
+            trackUris[i] = "track" + i;
+        }
+        return trackUris;
+    }
+}
@@ -1,20 +1,52 @@
 package com.omwan.latestadditions.component;
 
+import com.omwan.latestadditions.dto.SpotifyCredentials;
+import com.omwan.latestadditions.http.RequestScheduler;
+import com.omwan.latestadditions.loadtest.FakeSpotifyServer;
+import com.wrapper.spotify.IHttpManager;
 import com.wrapper.spotify.SpotifyApi;
+import com.wrapper.spotify.SpotifyHttpManager;
+import com.wrapper.spotify.exceptions.detailed.InternalServerErrorException;
+import com.wrapper.spotify.exceptions.detailed.TooManyRequestsException;
+import com.wrapper.spotify.exceptions.detailed.UnauthorizedException;
+import com.wrapper.spotify.model_objects.credentials.AuthorizationCodeCredentials;
+import com.wrapper.spotify.model_objects.specification.Paging;
+import com.wrapper.spotify.model_objects.specification.Playlist;
+import com.wrapper.spotify.model_objects.specification.PlaylistTrack;
+import com.wrapper.spotify.requests.authorization.authorization_code.AuthorizationCodeRefreshRequest;
+import com.wrapper.spotify.requests.data.AbstractDataRequest;
+import com.wrapper.spotify.requests.data.playlists.AddTracksToPlaylistRequest;
+import com.wrapper.spotify.requests.data.playlists.GetPlaylistRequest;
+import com.wrapper.spotify.requests.data.playlists.ReplacePlaylistsTracksRequest;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import mockit.Deencapsulation;
-import mockit.Expectations;
 import mockit.Injectable;
 import mockit.Mock;
 import mockit.MockUp;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
 import mockit.Tested;
+import mockit.Verifications;
 import org.junit.Before;
+import org.apache.http.Header;
+import org.apache.http.message.BasicHeader;
 import org.junit.Test;
+import org.springframework.context.ApplicationEventPublisher;
 
-import javax.servlet.http.Cookie;
-import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
 
 /**
  * Unit tests for SpotifyApiComponent.
@@ -24,30 +56,40 @@ public class SpotifyApiComponentTest {
     private final static String SPOTIFY_CLIENT = "client";
     private final static String SPOTIFY_CLIENT_SECRET = "secret";
     private final static String SPOTIFY_REDIRECT_URI = "redirect";
+    private final static String SPOTIFY_API_URI = "http://localhost:8090";
 
     @Tested
     private SpotifyApiComponent spotifyApiComponent;
 
     @Injectable
-    private HttpServletRequest request;
+    private IHttpManager spotifyHttpManager;
 
     @Injectable
-    private HttpServletResponse response;
+    private ApplicationEventPublisher eventPublisher;
 
-    @Injectable
-    private CookieUtils cookieUtils;
+    private MeterRegistry meterRegistry;
 
     @Before
     public void setup() {
+        meterRegistry = new SimpleMeterRegistry();
         spotifyApiComponent = new SpotifyApiComponent();
         Deencapsulation.setField(spotifyApiComponent, "spotifyClient", SPOTIFY_CLIENT);
         Deencapsulation.setField(spotifyApiComponent, "spotifyClientSecret", SPOTIFY_CLIENT_SECRET);
         Deencapsulation.setField(spotifyApiComponent, "spotifyRedirectUri", SPOTIFY_REDIRECT_URI);
+        Deencapsulation.setField(spotifyApiComponent, "spotifyApiUri", SPOTIFY_API_URI);
+        Deencapsulation.setField(spotifyApiComponent, "spotifyHttpManager", spotifyHttpManager);
+        Deencapsulation.setField(spotifyApiComponent, "requestScheduler", new RequestScheduler(1000, 100, 1000));
+        Deencapsulation.setField(spotifyApiComponent, "meterRegistry", meterRegistry);
+        Deencapsulation.setField(spotifyApiComponent, "eventPublisher", eventPublisher);
+        Deencapsulation.setField(spotifyApiComponent, "maxAttempts", 3);
+        Deencapsulation.setField(spotifyApiComponent, "retryBackoffMs", 1L);
+        Deencapsulation.setField(spotifyApiComponent, "tokenRefreshMarginMs", 60000L);
+        Deencapsulation.setField(spotifyApiComponent, "maxTrackedTokens", 1000);
     }
 
     /**
      * Assert that a SpotifyApi instance can be successfully built with
-     * the correct spotify client, secret, and redirect values.
+     * the correct spotify client, secret, redirect, and API base URI values.
      */
     @Test
     public void testGetSpotifyApi() {
@@ -55,26 +97,23 @@ public class SpotifyApiComponentTest {
         assertEquals(actual.getClientId(), SPOTIFY_CLIENT);
         assertEquals(actual.getClientSecret(), SPOTIFY_CLIENT_SECRET);
         assertEquals(actual.getRedirectURI().toString(), SPOTIFY_REDIRECT_URI);
+        assertEquals("http", actual.getScheme());
+        assertEquals("localhost", actual.getHost());
+        assertEquals(Integer.valueOf(8090), actual.getPort());
+        assertSame(actual.getHttpManager(), spotifyHttpManager);
     }
 
     /**
-     * Assert that the access and refresh tokens can be successfully retrieved
-     * from the cookies and set in a spotify api instance.
+     * Assert that the given access and refresh tokens are set in a spotify api
+     * instance.
      */
     @Test
-    public void testGetApiWithTokens() {
+    public void testGetApi() {
         final String expectedAccessToken = "access token";
         final String expectedRefreshToken = "refresh token";
 
-        new Expectations() {{
-            cookieUtils.getCookieValue(request, "ACCESS_TOKEN");
-            returns(expectedAccessToken);
-
-            cookieUtils.getCookieValue(request, "REFRESH_TOKEN");
-            returns(expectedRefreshToken);
-        }};
-
-        SpotifyApi actual = spotifyApiComponent.getApiWithTokens();
+        SpotifyApi actual = spotifyApiComponent.getApi(
+                new SpotifyCredentials(expectedAccessToken, expectedRefreshToken, null));
         assertEquals(actual.getClientId(), SPOTIFY_CLIENT);
         assertEquals(actual.getClientSecret(), SPOTIFY_CLIENT_SECRET);
         assertEquals(actual.getRedirectURI().toString(), SPOTIFY_REDIRECT_URI);
@@ -83,49 +122,223 @@ public class SpotifyApiComponentTest {
     }
 
     /**
-     * Assert that the current user's ID can be retrieved from the cookie.
+     * Assert that a rate limited request is retried, and that server errors
+     * are retried for reads, with the outcome of each attempt recorded.
      */
     @Test
-    public void testGetCurrentUserIdWithCookie() {
-        final String expectedUserId = "user ID";
+    public void testExecuteRequestRetried(@Mocked final GetPlaylistRequest getPlaylistRequest) throws Exception {
+        final Playlist expected = new Playlist.Builder().setId("playlist").build();
+
+        new NonStrictExpectations() {{
+            getPlaylistRequest.execute();
+            result = new TooManyRequestsException("rate limited", 0);
+            result = new InternalServerErrorException("server error");
+            result = expected;
+        }};
+
+        Playlist actual = spotifyApiComponent.executeRequest(getPlaylistRequest, "error");
+        assertSame(expected, actual);
+        assertEquals(1, meterRegistry.timer("spotify.requests", "endpoint", "GetPlaylist",
+                "outcome", "429").count());
+        assertEquals(1, meterRegistry.timer("spotify.requests", "endpoint", "GetPlaylist",
+                "outcome", "5xx").count());
+        assertEquals(1, meterRegistry.timer("spotify.requests", "endpoint", "GetPlaylist",
+                "outcome", "success").count());
+        assertEquals(1, meterRegistry.counter("spotify.requests.retries", "endpoint", "GetPlaylist",
+                "reason", "429").count(), 0);
+        assertEquals(1, meterRegistry.counter("spotify.requests.retries", "endpoint", "GetPlaylist",
+                "reason", "5xx").count(), 0);
+    }
+
+    /**
+     * Assert that writes failing with a server error are not retried, since
+     * the write may have been applied.
+     */
+    @Test(expected = RuntimeException.class)
+    public void testExecuteRequestWriteNotRetried(@Mocked final AddTracksToPlaylistRequest addTracksRequest)
+            throws Exception {
+        new NonStrictExpectations() {{
+            addTracksRequest.execute();
+            result = new InternalServerErrorException("server error");
+            times = 1;
+        }};
+
+        spotifyApiComponent.executeRequest(addTracksRequest, "error");
+    }
 
-        new Expectations() {{
-            cookieUtils.getCookieValue(request, "USER_ID");
-            returns(expectedUserId);
+    /**
+     * Assert that replacing a playlist's tracks is retried after a server
+     * error, since applying it twice has the same result.
+     */
+    @Test
+    public void testExecuteRequestReplaceRetried(@Mocked final ReplacePlaylistsTracksRequest replaceRequest)
+            throws Exception {
+        new NonStrictExpectations() {{
+            replaceRequest.execute();
+            result = new InternalServerErrorException("server error");
+            result = "";
+            times = 2;
         }};
 
-        String actual = spotifyApiComponent.getCurrentUserId();
-        assertEquals(actual, expectedUserId);
+        spotifyApiComponent.executeRequest(replaceRequest, "error");
+        assertEquals(1, meterRegistry.counter("spotify.requests.retries", "endpoint", "ReplacePlaylistsTracks",
+                "reason", "5xx").count(), 0);
     }
 
     /**
-     * Assert that if the current user ID has not yet been set as a cookie,
-     * it can be retrieved from the API and then is set as a cookie.
+     * Assert that a request rejected for an expired access token is replayed
+     * with a refreshed token, and that later requests still holding the old
+     * token are switched to the new one without another refresh. The new
+     * token is published once for saving.
      */
     @Test
-    public void testGetCurrentUserIdWithoutCookie() throws Exception {
-        final String expectedUserId = "user ID";
+    public void testExecuteRequestRefreshesToken(@Mocked final GetPlaylistRequest getPlaylistRequest)
+            throws Exception {
+        final Playlist expected = new Playlist.Builder().setId("playlist").build();
+        final List<Header> headers = new ArrayList<>();
+        headers.add(new BasicHeader("Authorization", "Bearer old token"));
+        final int[] refreshCount = {0};
 
-        new MockUp<SpotifyApiComponent>() {
+        new MockUp<AuthorizationCodeRefreshRequest>() {
             @Mock
-            public String getCurrentUserIdFromApi() {
-                return expectedUserId;
+            public AuthorizationCodeCredentials execute() {
+                refreshCount[0]++;
+                return new AuthorizationCodeCredentials.Builder()
+                        .setAccessToken("new token")
+                        .setExpiresIn(3600)
+                        .build();
             }
         };
 
-        final Cookie userIdCookie = new Cookie("USER_ID", expectedUserId);
+        new NonStrictExpectations() {{
+            getPlaylistRequest.getHeaders();
+            result = headers;
+            getPlaylistRequest.execute();
+            result = new UnauthorizedException("expired");
+            result = expected;
+        }};
 
-        new Expectations() {{
-            cookieUtils.getCookieValue(request, "USER_ID");
-            result = new RuntimeException();
+        spotifyApiComponent.getApi(new SpotifyCredentials("old token", "refresh token", null));
+        Playlist actual = spotifyApiComponent.executeRequest(getPlaylistRequest, "error");
+        assertSame(expected, actual);
+        assertEquals("Bearer new token", headers.get(0).getValue());
 
-            cookieUtils.buildCookie("USER_ID", expectedUserId);
-            returns(userIdCookie);
+        headers.set(0, new BasicHeader("Authorization", "Bearer old token"));
+        spotifyApiComponent.executeRequest(getPlaylistRequest, "error");
+        assertEquals("Bearer new token", headers.get(0).getValue());
+        assertEquals(1, refreshCount[0]);
 
-            response.addCookie(userIdCookie);
+        new Verifications() {{
+            eventPublisher.publishEvent(withInstanceOf(TokenRefreshedEvent.class));
+            times = 1;
         }};
+    }
+
+    /**
+     * Assert that once a replacement token is itself replaced, the mapping to
+     * it from the original token is dropped.
+     */
+    @Test
+    public void testRefreshForgetsReplacedTokens() {
+        final String[] newTokens = {"new token", "newer token"};
+        final int[] refreshCount = {0};
+
+        new MockUp<AuthorizationCodeRefreshRequest>() {
+            @Mock
+            public AuthorizationCodeCredentials execute() {
+                return new AuthorizationCodeCredentials.Builder()
+                        .setAccessToken(newTokens[refreshCount[0]++])
+                        .build();
+            }
+        };
+
+        long now = System.currentTimeMillis();
+        spotifyApiComponent.getApi(new SpotifyCredentials("old token", "refresh token", now));
+        spotifyApiComponent.getApi(new SpotifyCredentials("new token", "refresh token", now));
+
+        Map<String, String> replacedTokens = Deencapsulation.getField(spotifyApiComponent, "replacedTokens");
+        assertEquals(2, refreshCount[0]);
+        assertFalse(replacedTokens.containsKey("old token"));
+        assertEquals("newer token", replacedTokens.get("new token"));
+    }
+
+    /**
+     * Assert that an access token about to expire is refreshed before it is
+     * used.
+     */
+    @Test
+    public void testGetApiRefreshesExpiringToken() {
+        new MockUp<AuthorizationCodeRefreshRequest>() {
+            @Mock
+            public AuthorizationCodeCredentials execute() {
+                return new AuthorizationCodeCredentials.Builder()
+                        .setAccessToken("new token")
+                        .build();
+            }
+        };
+
+        SpotifyApi actual = spotifyApiComponent.getApi(
+                new SpotifyCredentials("old token", "refresh token", System.currentTimeMillis()));
+        assertEquals("new token", actual.getAccessToken());
+        assertEquals("refresh token", actual.getRefreshToken());
+    }
+
+    /**
+     * Assert that two users requesting the same page of a playlist's tracks at
+     * the same time share one request to Spotify.
+     */
+    @Test
+    public void testExecuteSharedRequestAcrossUsers() throws Exception {
+        final FakeSpotifyServer spotifyServer = new FakeSpotifyServer(1, 200, 4);
+        spotifyServer.setLatencyMs(500);
+        spotifyServer.start();
+        Deencapsulation.setField(spotifyApiComponent, "spotifyApiUri", spotifyServer.getUri());
+        Deencapsulation.setField(spotifyApiComponent, "spotifyHttpManager", new SpotifyHttpManager.Builder().build());
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Future<Paging<PlaylistTrack>>> pages = new ArrayList<>();
+            for (final String userId : new String[]{"user1", "user2"}) {
+                pages.add(executor.submit(() -> {
+                    SpotifyApi spotifyApi = spotifyApiComponent.getApi(
+                            new SpotifyCredentials(userId + " token", userId + " refresh", null));
+                    AbstractDataRequest trackRequest = spotifyApi.getPlaylistsTracks(userId, "playlist0")
+                            .limit(100)
+                            .offset(0)
+                            .build();
+                    start.await();
+                    return spotifyApiComponent.executeSharedRequest(trackRequest, "error");
+                }));
+            }
+            start.countDown();
+
+            for (Future<Paging<PlaylistTrack>> page : pages) {
+                assertEquals(100, page.get(10, TimeUnit.SECONDS).getItems().length);
+            }
+            assertEquals(Integer.valueOf(1), spotifyServer.getCallCounts().get("GET /playlists/{id}/tracks"));
+        } finally {
+            executor.shutdownNow();
+            spotifyServer.stop();
+        }
+    }
+
+    /**
+     * Assert that the shared request key leaves out the user segment of the
+     * path but keeps the query parameters.
+     */
+    @Test
+    public void testGetSharedRequestKey() {
+        SpotifyApi spotifyApi = spotifyApiComponent.getApi(new SpotifyCredentials("token", "refresh token", null));
+        String first = SpotifyApiComponent.getSharedRequestKey(spotifyApi.getPlaylistsTracks("user1", "playlist")
+                .limit(100).offset(0).build());
+        String second = SpotifyApiComponent.getSharedRequestKey(spotifyApi.getPlaylistsTracks("user2", "playlist")
+                .offset(0).limit(100).build());
+        String nextPage = SpotifyApiComponent.getSharedRequestKey(spotifyApi.getPlaylistsTracks("user1", "playlist")
+                .limit(100).offset(100).build());
 
-        String actual = spotifyApiComponent.getCurrentUserId();
-        assertEquals(actual, expectedUserId);
+        assertEquals(first, second);
+        assertNotEquals(first, nextPage);
+        assertFalse(first.contains("user1"));
     }
-}
\ No newline at end of file
+}
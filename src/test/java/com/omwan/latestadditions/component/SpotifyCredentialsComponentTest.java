@@ -0,0 +1,157 @@
+package com.omwan.latestadditions.component;
+
+import com.omwan.latestadditions.dto.SpotifyCredentials;
+import com.wrapper.spotify.SpotifyApi;
+import com.wrapper.spotify.model_objects.credentials.AuthorizationCodeCredentials;
+import mockit.Deencapsulation;
+import mockit.Expectations;
+import mockit.Injectable;
+import mockit.NonStrictExpectations;
+import mockit.Tested;
+import mockit.Verifications;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests for SpotifyCredentialsComponent.
+ */
+public class SpotifyCredentialsComponentTest {
+
+    @Tested
+    private SpotifyCredentialsComponent spotifyCredentialsComponent;
+
+    @Injectable
+    private HttpServletRequest request;
+
+    @Injectable
+    private HttpServletResponse response;
+
+    @Injectable
+    private CookieUtils cookieUtils;
+
+    @Injectable
+    private SpotifyApiComponent spotifyApiComponent;
+
+    @Before
+    public void setup() {
+        spotifyCredentialsComponent = new SpotifyCredentialsComponent();
+        Deencapsulation.setField(spotifyCredentialsComponent, "request", request);
+        Deencapsulation.setField(spotifyCredentialsComponent, "response", response);
+        Deencapsulation.setField(spotifyCredentialsComponent, "cookieUtils", cookieUtils);
+        Deencapsulation.setField(spotifyCredentialsComponent, "spotifyApiComponent", spotifyApiComponent);
+    }
+
+    /**
+     * Assert that the access and refresh tokens and the expiry time can be
+     * retrieved from the cookies.
+     */
+    @Test
+    public void testGetCredentials() {
+        final Cookie expiresAt = new Cookie("TOKEN_EXPIRES_AT", "1000");
+
+        new NonStrictExpectations() {{
+            cookieUtils.getCookieValue(request, "ACCESS_TOKEN");
+            result = "access token";
+            cookieUtils.getCookieValue(request, "REFRESH_TOKEN");
+            result = "refresh token";
+            request.getCookies();
+            result = new Cookie[]{expiresAt};
+        }};
+
+        SpotifyCredentials actual = spotifyCredentialsComponent.getCredentials();
+        assertEquals("access token", actual.getAccessToken());
+        assertEquals("refresh token", actual.getRefreshToken());
+        assertEquals(Long.valueOf(1000), actual.getExpiresAt());
+    }
+
+    /**
+     * Assert that tokens saved before expiry times were recorded have no
+     * expiry time.
+     */
+    @Test
+    public void testGetCredentialsWithoutExpiry() {
+        new NonStrictExpectations() {{
+            cookieUtils.getCookieValue(request, "ACCESS_TOKEN");
+            result = "access token";
+            cookieUtils.getCookieValue(request, "REFRESH_TOKEN");
+            result = "refresh token";
+            request.getCookies();
+            result = new Cookie[0];
+        }};
+
+        assertNull(spotifyCredentialsComponent.getCredentials().getExpiresAt());
+    }
+
+    /**
+     * Assert that the current user's ID can be retrieved from the cookie.
+     */
+    @Test
+    public void testGetCurrentUserIdWithCookie() {
+        final String expectedUserId = "user ID";
+
+        new Expectations() {{
+            cookieUtils.getCookieValue(request, "USER_ID");
+            returns(expectedUserId);
+        }};
+
+        String actual = spotifyCredentialsComponent.getCurrentUserId();
+        assertEquals(actual, expectedUserId);
+    }
+
+    /**
+     * Assert that if the current user ID has not yet been set as a cookie,
+     * it can be retrieved from the API and then is set as a cookie.
+     */
+    @Test
+    public void testGetCurrentUserIdWithoutCookie() {
+        final String expectedUserId = "user ID";
+        final SpotifyApi spotifyApi = new SpotifyApi.Builder().build();
+        final Cookie userIdCookie = new Cookie("USER_ID", expectedUserId);
+
+        new NonStrictExpectations() {{
+            cookieUtils.getCookieValue(request, "USER_ID");
+            result = new RuntimeException();
+
+            spotifyApiComponent.getApi(withInstanceOf(SpotifyCredentials.class));
+            result = spotifyApi;
+
+            spotifyApiComponent.getCurrentUserId(spotifyApi);
+            result = expectedUserId;
+
+            cookieUtils.buildCookie("USER_ID", expectedUserId);
+            result = userIdCookie;
+        }};
+
+        String actual = spotifyCredentialsComponent.getCurrentUserId();
+        assertEquals(actual, expectedUserId);
+
+        new Verifications() {{
+            response.addCookie(userIdCookie);
+        }};
+    }
+
+    /**
+     * Assert that tokens refreshed outside of a browser request are not saved
+     * as cookies.
+     */
+    @Test
+    public void testOnTokenRefreshedOutsideRequest() {
+        AuthorizationCodeCredentials credentials = new AuthorizationCodeCredentials.Builder()
+                .setAccessToken("new token")
+                .build();
+
+        spotifyCredentialsComponent.onTokenRefreshed(new TokenRefreshedEvent(credentials));
+
+        new Verifications() {{
+            response.addCookie((Cookie) any);
+            times = 0;
+        }};
+    }
+}
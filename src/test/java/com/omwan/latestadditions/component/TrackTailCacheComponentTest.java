@@ -0,0 +1,199 @@
+package com.omwan.latestadditions.component;
+
+import com.omwan.latestadditions.SpotifyTestUtils;
+import com.omwan.latestadditions.db.PlaylistTrackTail;
+import com.omwan.latestadditions.db.PlaylistTrackTailRepository;
+import com.omwan.latestadditions.dto.PlaylistIdWrapper;
+import com.omwan.latestadditions.merge.PlaylistCursor;
+import com.wrapper.spotify.model_objects.miscellaneous.PlaylistTracksInformation;
+import com.wrapper.spotify.model_objects.specification.Paging;
+import com.wrapper.spotify.model_objects.specification.Playlist;
+import com.wrapper.spotify.model_objects.specification.PlaylistSimplified;
+import com.wrapper.spotify.model_objects.specification.PlaylistTrack;
+import com.wrapper.spotify.requests.data.AbstractDataRequest;
+import mockit.Deencapsulation;
+import mockit.Injectable;
+import mockit.NonStrictExpectations;
+import mockit.Tested;
+import mockit.Verifications;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests for TrackTailCacheComponent.
+ */
+public class TrackTailCacheComponentTest {
+
+    @Tested
+    private TrackTailCacheComponent trackTailCacheComponent;
+
+    @Injectable
+    private SpotifyApiComponent spotifyApiComponent;
+
+    @Injectable
+    private PlaylistTrackTailRepository playlistTrackTailRepository;
+
+    private AtomicInteger fetchCount;
+
+    private PlaylistCursor.PageFetcher pageFetcher;
+
+    @Before
+    public void setup() {
+        trackTailCacheComponent = new TrackTailCacheComponent();
+        Deencapsulation.setField(trackTailCacheComponent, "enabled", true);
+        fetchCount = new AtomicInteger();
+        pageFetcher = (playlist, limit, offset) -> {
+            fetchCount.incrementAndGet();
+            return buildTracks(offset, limit);
+        };
+
+        new NonStrictExpectations() {{
+            spotifyApiComponent.executeRequest((AbstractDataRequest) any, anyString);
+            returns(new Playlist.Builder()
+                    .setSnapshotId("snapshot")
+                    .setTracks(new Paging.Builder<PlaylistTrack>().setTotal(10).build())
+                    .build());
+        }};
+    }
+
+    /**
+     * Assert that tracks cached at the current snapshot are served without
+     * retrieving them, trimmed to the requested number of tracks.
+     */
+    @Test
+    public void testGetRecentTracksCached() {
+        new NonStrictExpectations() {{
+            playlistTrackTailRepository.findByPlaylistId("playlist");
+            returns(new PlaylistTrackTail("playlist", "snapshot", 10, 5, buildTracks(5, 5)));
+        }};
+
+        PlaylistIdWrapper playlist = new PlaylistIdWrapper("playlist", "user");
+        PlaylistTrack[] actual = getRecentTracks(playlist, 3);
+
+        assertEquals(0, fetchCount.get());
+        assertEquals(7, playlist.getOffset());
+        assertEquals(3, actual.length);
+        assertEquals("7", actual[0].getTrack().getUri());
+    }
+
+    /**
+     * Assert that tracks cached at an older snapshot are retrieved again and the
+     * cache is updated.
+     */
+    @Test
+    public void testGetRecentTracksChanged() {
+        new NonStrictExpectations() {{
+            playlistTrackTailRepository.findByPlaylistId("playlist");
+            returns(new PlaylistTrackTail("playlist", "old snapshot", 10, 5, buildTracks(5, 5)));
+        }};
+
+        PlaylistIdWrapper playlist = new PlaylistIdWrapper("playlist", "user");
+        PlaylistTrack[] actual = getRecentTracks(playlist, 3);
+
+        assertEquals(1, fetchCount.get());
+        assertEquals("7", actual[0].getTrack().getUri());
+        new Verifications() {{
+            playlistTrackTailRepository.save((PlaylistTrackTail) any);
+            times = 1;
+        }};
+    }
+
+    /**
+     * Assert that cached tracks are retrieved again if more tracks are requested
+     * than were cached.
+     */
+    @Test
+    public void testGetRecentTracksNotEnoughCached() {
+        new NonStrictExpectations() {{
+            playlistTrackTailRepository.findByPlaylistId("playlist");
+            returns(new PlaylistTrackTail("playlist", "snapshot", 10, 8, buildTracks(8, 2)));
+        }};
+
+        PlaylistTrack[] actual = getRecentTracks(new PlaylistIdWrapper("playlist", "user"), 3);
+
+        assertEquals(1, fetchCount.get());
+        assertEquals(3, actual.length);
+    }
+
+    /**
+     * Assert that when more tracks are requested than fit in one page, they are
+     * retrieved in pages no larger than Spotify's limit.
+     */
+    @Test
+    public void testGetRecentTracksPaged() {
+        final List<Integer> limits = new ArrayList<>();
+        pageFetcher = (playlist, limit, offset) -> {
+            limits.add(limit);
+            return buildTracks(offset, limit);
+        };
+
+        PlaylistIdWrapper playlist = new PlaylistIdWrapper("playlist", "user");
+        playlist.setSnapshotId("snapshot");
+        playlist.setTotal(250);
+        PlaylistTrack[] actual = getRecentTracks(playlist, 150);
+
+        assertEquals(Arrays.asList(100, 50), limits);
+        assertEquals(100, playlist.getOffset());
+        assertEquals(150, actual.length);
+        assertEquals("100", actual[0].getTrack().getUri());
+        assertEquals("249", actual[149].getTrack().getUri());
+    }
+
+    /**
+     * Assert that playlist versions are resolved from the user's playlists, so
+     * that resolved playlists are not looked up individually.
+     */
+    @Test
+    public void testResolveVersions() {
+        final PlaylistSimplified owned = new PlaylistSimplified.Builder()
+                .setId("owned")
+                .setSnapshotId("snapshot")
+                .setTracks(new PlaylistTracksInformation.Builder().setTotal(10).build())
+                .build();
+
+        new NonStrictExpectations() {{
+            spotifyApiComponent.executeRequest((AbstractDataRequest) any, anyString);
+            returns(new Paging.Builder<PlaylistSimplified>()
+                    .setItems(new PlaylistSimplified[]{owned})
+                    .build());
+        }};
+
+        PlaylistIdWrapper resolved = new PlaylistIdWrapper("owned", "user");
+        PlaylistIdWrapper unresolved = new PlaylistIdWrapper("followed", "user");
+        trackTailCacheComponent.resolveVersions(SpotifyTestUtils.buildMockedSpotifyApi(),
+                Arrays.asList(resolved, unresolved));
+
+        assertEquals("snapshot", resolved.getSnapshotId());
+        assertEquals(Integer.valueOf(10), resolved.getTotal());
+        assertNull(unresolved.getSnapshotId());
+
+        PlaylistTrack[] actual = getRecentTracks(resolved, 3);
+        assertEquals(7, resolved.getOffset());
+        assertEquals(3, actual.length);
+        new Verifications() {{
+            spotifyApiComponent.executeRequest((AbstractDataRequest) any, anyString);
+            times = 1;
+        }};
+    }
+
+    private PlaylistTrack[] getRecentTracks(PlaylistIdWrapper playlist, int numTracks) {
+        return trackTailCacheComponent.getRecentTracks(SpotifyTestUtils.buildMockedSpotifyApi(),
+                playlist, numTracks, pageFetcher);
+    }
+
+    private static PlaylistTrack[] buildTracks(int offset, int count) {
+        PlaylistTrack[] tracks = new PlaylistTrack[count];
+        for (int i = 0; i < count; i++) {
+            tracks[i] = SpotifyTestUtils.buildMockedPlaylistTrack(String.valueOf(offset + i), offset + i, false);
+        }
+        return tracks;
+    }
+}
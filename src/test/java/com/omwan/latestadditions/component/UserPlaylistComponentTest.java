@@ -3,6 +3,7 @@ package com.omwan.latestadditions.component;
 import com.omwan.latestadditions.db.UserPlaylistRepository;
 import com.omwan.latestadditions.dto.PlaylistIdWrapper;
 import com.omwan.latestadditions.db.UserPlaylist;
+import mockit.Delegate;
 import mockit.Expectations;
 import mockit.Injectable;
 import mockit.Tested;
@@ -69,6 +70,28 @@ public class UserPlaylistComponentTest {
         userPlaylistComponent.deleteSavedPlaylist(playlistId);
     }
 
+    /**
+     * Assert that saving a playlist goes through the repository upsert so that
+     * saving it again does not fail.
+     */
+    @Test
+    public void testSaveUserPlaylist() {
+        final String userId = "123";
+        final String playlistId = "playlistId";
+
+        new Expectations() {{
+            userPlaylistRepository.save(with(new Delegate<UserPlaylist>() {
+                @SuppressWarnings("unused")
+                boolean matches(UserPlaylist userPlaylist) {
+                    return userPlaylist.getUserId().equals(userId)
+                            && userPlaylist.getPlaylistId().equals(playlistId);
+                }
+            }));
+        }};
+
+        userPlaylistComponent.saveUserPlaylist(userId, playlistId);
+    }
+
     /**
      * Assert that if no playlists matching the given playlist ID are deleted,
      * the appropriate exception is thrown.
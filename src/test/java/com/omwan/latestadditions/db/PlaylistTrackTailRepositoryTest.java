@@ -0,0 +1,86 @@
+package com.omwan.latestadditions.db;
+
+import com.wrapper.spotify.model_objects.specification.ArtistSimplified;
+import com.wrapper.spotify.model_objects.specification.PlaylistTrack;
+import com.wrapper.spotify.model_objects.specification.Track;
+import mockit.Deencapsulation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit tests for PlaylistTrackTailRepository, against a temporary sqlite database.
+ */
+public class PlaylistTrackTailRepositoryTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private SqliteConnectionPool connectionPool;
+
+    private PlaylistTrackTailRepository playlistTrackTailRepository;
+
+    @Before
+    public void setup() throws Exception {
+        String url = "jdbc:sqlite:" + temporaryFolder.newFile("test.db").getAbsolutePath();
+        connectionPool = new SqliteConnectionPool(url, 1, 1000, 1000);
+
+        SchemaMigration schemaMigration = new SchemaMigration();
+        Deencapsulation.setField(schemaMigration, "connectionPool", connectionPool);
+        schemaMigration.migrate();
+
+        playlistTrackTailRepository = new PlaylistTrackTailRepository();
+        Deencapsulation.setField(playlistTrackTailRepository, "connectionPool", connectionPool);
+    }
+
+    @After
+    public void teardown() {
+        connectionPool.close();
+    }
+
+    /**
+     * Assert that saved tracks are read back with their track details, and that
+     * saving again replaces the cached tracks for the playlist.
+     */
+    @Test
+    public void testSaveAndFind() {
+        assertNull(playlistTrackTailRepository.findByPlaylistId("playlist"));
+
+        playlistTrackTailRepository.save(new PlaylistTrackTail("playlist", "snapshot1", 2, 1,
+                new PlaylistTrack[]{buildTrack("old", 1000)}));
+        playlistTrackTailRepository.save(new PlaylistTrackTail("playlist", "snapshot2", 3, 2,
+                new PlaylistTrack[]{buildTrack("new", 2000)}));
+
+        PlaylistTrackTail actual = playlistTrackTailRepository.findByPlaylistId("playlist");
+        assertEquals("snapshot2", actual.getSnapshotId());
+        assertEquals(3, actual.getTotal());
+        assertEquals(2, actual.getOffset());
+        assertEquals(1, actual.getTracks().length);
+
+        PlaylistTrack track = actual.getTracks()[0];
+        assertEquals("new", track.getTrack().getUri());
+        assertEquals("name", track.getTrack().getName());
+        assertEquals("artist", track.getTrack().getArtists()[0].getName());
+        assertEquals(new Date(2000), track.getAddedAt());
+        assertEquals(false, track.getIsLocal());
+    }
+
+    private static PlaylistTrack buildTrack(String uri, long addedAt) {
+        return new PlaylistTrack.Builder()
+                .setTrack(new Track.Builder()
+                        .setUri(uri)
+                        .setName("name")
+                        .setArtists(new ArtistSimplified.Builder().setName("artist").build())
+                        .build())
+                .setAddedAt(new Date(addedAt))
+                .setIsLocal(false)
+                .build();
+    }
+}
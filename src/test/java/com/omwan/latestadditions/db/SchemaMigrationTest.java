@@ -0,0 +1,98 @@
+package com.omwan.latestadditions.db;
+
+import mockit.Deencapsulation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for SchemaMigration.
+ */
+public class SchemaMigrationTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private SqliteConnectionPool connectionPool;
+
+    private SchemaMigration schemaMigration;
+
+    @Before
+    public void setup() throws Exception {
+        String url = "jdbc:sqlite:" + temporaryFolder.newFile("test.db").getAbsolutePath();
+        connectionPool = new SqliteConnectionPool(url, 1, 1000, 1000);
+        schemaMigration = new SchemaMigration();
+        Deencapsulation.setField(schemaMigration, "connectionPool", connectionPool);
+    }
+
+    @After
+    public void teardown() {
+        connectionPool.close();
+    }
+
+    /**
+     * Assert that a table created out of band is migrated to the current schema,
+     * dropping duplicate rows, and that migrating again has no effect.
+     */
+    @Test
+    public void testMigrateLegacyTable() throws Exception {
+        execute("create table user_playlist (user_id text, playlist_id text)");
+        execute("insert into user_playlist values ('user', 'a'), ('user', 'a'), ('user', 'b')");
+
+        schemaMigration.migrate();
+        schemaMigration.migrate();
+
+        assertEquals(SchemaMigration.getLatestVersion(), queryInt("pragma user_version"));
+        assertEquals(2, queryInt("select count(*) from user_playlist"));
+        assertEquals(2, queryInt("select count(*) from user_playlist where created_at > 0"));
+        assertEquals(1, queryInt("select count(*) from sqlite_master "
+                + "where type = 'index' and name = 'user_playlist_playlist_id'"));
+    }
+
+    /**
+     * Assert that lookups by user and by playlist use an index rather than
+     * scanning the table.
+     */
+    @Test
+    public void testQueriesUseIndexes() throws Exception {
+        schemaMigration.migrate();
+
+        assertTrue(queryPlan("select * from user_playlist where user_id = 'user'").contains("SEARCH"));
+        assertTrue(queryPlan("delete from user_playlist where playlist_id = 'a'").contains("SEARCH"));
+    }
+
+    private void execute(String sql) throws Exception {
+        try (PooledConnection connection = connectionPool.acquire();
+             Statement statement = connection.getConnection().createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private int queryInt(String sql) throws Exception {
+        try (PooledConnection connection = connectionPool.acquire();
+             Statement statement = connection.getConnection().createStatement();
+             ResultSet rs = statement.executeQuery(sql)) {
+            return rs.getInt(1);
+        }
+    }
+
+    private String queryPlan(String sql) throws Exception {
+        StringBuilder plan = new StringBuilder();
+        try (PooledConnection connection = connectionPool.acquire();
+             Statement statement = connection.getConnection().createStatement();
+             ResultSet rs = statement.executeQuery("explain query plan " + sql)) {
+            while (rs.next()) {
+                plan.append(rs.getString("detail")).append('\n');
+            }
+        }
+        return plan.toString();
+    }
+}
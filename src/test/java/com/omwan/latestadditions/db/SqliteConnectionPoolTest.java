@@ -0,0 +1,97 @@
+package com.omwan.latestadditions.db;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Unit tests for SqliteConnectionPool.
+ */
+public class SqliteConnectionPoolTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private SqliteConnectionPool connectionPool;
+
+    @Before
+    public void setup() throws Exception {
+        String url = "jdbc:sqlite:" + temporaryFolder.newFile("test.db").getAbsolutePath();
+        connectionPool = new SqliteConnectionPool(url, 2, 1000, 100);
+    }
+
+    @After
+    public void teardown() {
+        connectionPool.close();
+    }
+
+    /**
+     * Assert that released connections and their prepared statements are
+     * reused, and that connections are opened in WAL journal mode.
+     */
+    @Test
+    public void testConnectionReuse() throws Exception {
+        PooledConnection first;
+        PreparedStatement statement;
+        try (PooledConnection connection = connectionPool.acquire()) {
+            first = connection;
+            statement = connection.prepare("pragma journal_mode");
+            try (ResultSet rs = statement.executeQuery()) {
+                assertEquals("wal", rs.getString(1));
+            }
+        }
+
+        try (PooledConnection connection = connectionPool.acquire()) {
+            assertSame(first, connection);
+            assertSame(statement, connection.prepare("pragma journal_mode"));
+        }
+    }
+
+    /**
+     * Assert that at most the configured number of connections can be borrowed
+     * at once, and that a borrower times out waiting for a connection.
+     */
+    @Test(expected = SQLException.class)
+    public void testAcquireTimeout() throws Exception {
+        try (PooledConnection first = connectionPool.acquire();
+             PooledConnection second = connectionPool.acquire()) {
+            assertNotSame(first, second);
+            connectionPool.acquire();
+        }
+    }
+
+    /**
+     * Assert that a transaction left open by a borrower is rolled back when the
+     * connection is returned to the pool.
+     */
+    @Test
+    public void testReleaseRollsBack() throws Exception {
+        try (PooledConnection connection = connectionPool.acquire();
+             Statement statement = connection.getConnection().createStatement()) {
+            statement.execute("create table test (id integer)");
+        }
+
+        try (PooledConnection connection = connectionPool.acquire()) {
+            connection.getConnection().setAutoCommit(false);
+            connection.prepare("insert into test values (1)").execute();
+        }
+
+        try (PooledConnection connection = connectionPool.acquire()) {
+            assertEquals(true, connection.getConnection().getAutoCommit());
+            try (ResultSet rs = connection.prepare("select count(*) from test").executeQuery()) {
+                assertEquals(0, rs.getInt(1));
+            }
+        }
+    }
+}
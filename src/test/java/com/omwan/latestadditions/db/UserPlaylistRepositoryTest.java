@@ -0,0 +1,194 @@
+package com.omwan.latestadditions.db;
+
+import com.omwan.latestadditions.dto.BuildPlaylistRequest;
+import mockit.Deencapsulation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for UserPlaylistRepository, against a temporary sqlite database.
+ */
+public class UserPlaylistRepositoryTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private SqliteConnectionPool connectionPool;
+
+    private UserPlaylistRepository userPlaylistRepository;
+
+    @Before
+    public void setup() throws Exception {
+        String url = "jdbc:sqlite:" + temporaryFolder.newFile("test.db").getAbsolutePath();
+        connectionPool = new SqliteConnectionPool(url, 2, 1000, 1000);
+
+        SchemaMigration schemaMigration = new SchemaMigration();
+        Deencapsulation.setField(schemaMigration, "connectionPool", connectionPool);
+        schemaMigration.migrate();
+
+        userPlaylistRepository = new UserPlaylistRepository();
+        Deencapsulation.setField(userPlaylistRepository, "connectionPool", connectionPool);
+    }
+
+    @After
+    public void teardown() {
+        connectionPool.close();
+    }
+
+    /**
+     * Assert that rows spanning several JDBC batches are all saved, and that
+     * writing them again does not duplicate them.
+     */
+    @Test
+    public void testUpsertAllBatches() {
+        List<UserPlaylist> userPlaylists = new ArrayList<>();
+        for (int i = 0; i < UserPlaylistRepository.MAX_BATCH_SIZE * 2 + 1; i++) {
+            userPlaylists.add(new UserPlaylist("user", "playlist" + i));
+        }
+
+        assertEquals(userPlaylists.size(), userPlaylistRepository.upsertAll(userPlaylists));
+        assertEquals(userPlaylists.size(), userPlaylistRepository.upsertAll(userPlaylists));
+        assertEquals(userPlaylists.size(), userPlaylistRepository.findByUserId("user").size());
+    }
+
+    /**
+     * Assert that upserting an existing row updates its last built time without
+     * duplicating it or changing its creation time.
+     */
+    @Test
+    public void testUpsertAll() {
+        UserPlaylist existing = new UserPlaylist("user", "a");
+        existing.setCreatedAt(Instant.ofEpochMilli(1000));
+        existing.setLastBuiltAt(Instant.ofEpochMilli(1000));
+        userPlaylistRepository.upsertAll(Arrays.asList(existing));
+
+        int written = userPlaylistRepository.upsertAll(Arrays.asList(
+                new UserPlaylist("user", "a"), new UserPlaylist("user", "b")));
+        assertEquals(2, written);
+
+        List<UserPlaylist> actual = userPlaylistRepository.findByUserId("user");
+        assertEquals(2, actual.size());
+        UserPlaylist updated = actual.stream()
+                .filter(userPlaylist -> userPlaylist.getPlaylistId().equals("a"))
+                .findFirst()
+                .get();
+        assertEquals(Instant.ofEpochMilli(1000), updated.getCreatedAt());
+        assertTrue(updated.getLastBuiltAt().isAfter(Instant.ofEpochMilli(1000)));
+    }
+
+    /**
+     * Assert that saving a playlist that has already been saved keeps a single
+     * row rather than failing.
+     */
+    @Test
+    public void testSaveExisting() {
+        userPlaylistRepository.save(new UserPlaylist("user", "a"));
+        userPlaylistRepository.save(new UserPlaylist("user", "a"));
+
+        assertEquals(1, userPlaylistRepository.findByUserId("user").size());
+    }
+
+    /**
+     * Assert that deleting a playlist reports the number of rows deleted.
+     */
+    @Test
+    public void testDeleteByPlaylistId() {
+        userPlaylistRepository.save(new UserPlaylist("user", "a"));
+
+        assertEquals(1, userPlaylistRepository.deleteByPlaylistId("a"));
+        assertEquals(0, userPlaylistRepository.deleteByPlaylistId("a"));
+    }
+
+    /**
+     * Assert that a recorded build specification is stored with its source
+     * snapshots, and that only playlists with a specification that have not
+     * been checked since the cutoff are due for a refresh.
+     */
+    @Test
+    public void testUpdateBuildAndFindDue() {
+        userPlaylistRepository.save(new UserPlaylist("user", "a"));
+        userPlaylistRepository.save(new UserPlaylist("user", "b"));
+
+        BuildPlaylistRequest buildSpec = new BuildPlaylistRequest();
+        buildSpec.setPlaylistIds(Collections.singletonMap("source", 10));
+        buildSpec.setNumTracks(10);
+        assertEquals(1, userPlaylistRepository.updateBuild("user", "a", buildSpec,
+                Collections.singletonMap("source", "snapshot")));
+
+        long future = System.currentTimeMillis() + 60000;
+        List<UserPlaylist> due = userPlaylistRepository.findDueForRefresh(future, 10);
+        assertEquals(1, due.size());
+        assertEquals("a", due.get(0).getPlaylistId());
+        assertEquals(10, due.get(0).getBuildSpec().getNumTracks());
+        assertEquals("snapshot", due.get(0).getSourceSnapshots().get("source"));
+
+        long past = System.currentTimeMillis() - 60000;
+        assertTrue(userPlaylistRepository.findDueForRefresh(past, 10).isEmpty());
+    }
+
+    /**
+     * Assert that source playlists without a resolved track count, as sent by
+     * the client, survive being stored and read back.
+     */
+    @Test
+    public void testBuildSpecNullTrackCounts() {
+        userPlaylistRepository.save(new UserPlaylist("user", "a"));
+
+        Map<String, Integer> playlistIds = new HashMap<>();
+        playlistIds.put("source", null);
+        playlistIds.put("other", null);
+        BuildPlaylistRequest buildSpec = new BuildPlaylistRequest();
+        buildSpec.setPlaylistIds(playlistIds);
+        userPlaylistRepository.updateBuild("user", "a", buildSpec, Collections.emptyMap());
+
+        BuildPlaylistRequest actual = userPlaylistRepository.findByUserIdAndPlaylistId("user", "a").getBuildSpec();
+        assertEquals(playlistIds.keySet(), actual.getPlaylistIds().keySet());
+        assertNull(actual.getPlaylistIds().get("source"));
+    }
+
+    /**
+     * Assert that a stored build specification leaves out the fields implied
+     * by being stored, and has them restored to overwrite the saved playlist,
+     * while keeping whether or not to overwrite it incrementally.
+     */
+    @Test
+    public void testBuildSpecCompact() throws Exception {
+        userPlaylistRepository.save(new UserPlaylist("user", "a"));
+
+        BuildPlaylistRequest buildSpec = new BuildPlaylistRequest();
+        buildSpec.setPlaylistIds(Collections.singletonMap("source", 10));
+        buildSpec.setIncrementalOverwrite(true);
+        userPlaylistRepository.updateBuild("user", "a", buildSpec, Collections.emptyMap());
+
+        try (PooledConnection connection = connectionPool.acquire();
+             ResultSet rs = connection.prepare("select build_spec from user_playlist").executeQuery()) {
+            String stored = rs.getString(1);
+            assertFalse(stored.contains("overwriteExisting"));
+            assertFalse(stored.contains("playlistToOverwrite"));
+        }
+
+        BuildPlaylistRequest actual = userPlaylistRepository.findByUserIdAndPlaylistId("user", "a").getBuildSpec();
+        assertTrue(actual.isOverwriteExisting());
+        assertTrue(actual.isIncrementalOverwrite());
+        assertEquals("a", actual.getPlaylistToOverwrite());
+        assertEquals(Integer.valueOf(10), actual.getPlaylistIds().get("source"));
+        assertNull(userPlaylistRepository.findByUserIdAndPlaylistId("user", "b"));
+    }
+}
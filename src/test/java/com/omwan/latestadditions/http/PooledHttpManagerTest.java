@@ -0,0 +1,96 @@
+package com.omwan.latestadditions.http;
+
+import com.wrapper.spotify.exceptions.detailed.NotFoundException;
+import com.wrapper.spotify.exceptions.detailed.TooManyRequestsException;
+import com.wrapper.spotify.exceptions.detailed.UnauthorizedException;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for PooledHttpManager.
+ */
+public class PooledHttpManagerTest {
+
+    /**
+     * Assert that the body of a successful response is returned.
+     */
+    @Test
+    public void testGetResponseBody() throws Exception {
+        HttpResponse response = buildResponse(200, "OK", "{\"id\":\"playlist\"}");
+        assertEquals("{\"id\":\"playlist\"}", PooledHttpManager.getResponseBody(response));
+    }
+
+    /**
+     * Assert that error responses are mapped to the matching exception, with the
+     * message taken from the error body.
+     */
+    @Test
+    public void testGetResponseBodyError() throws Exception {
+        HttpResponse response = buildResponse(401, "Unauthorized",
+                "{\"error\":{\"status\":401,\"message\":\"The access token expired\"}}");
+        try {
+            PooledHttpManager.getResponseBody(response);
+            fail("Expected UnauthorizedException");
+        } catch (UnauthorizedException e) {
+            assertEquals("The access token expired", e.getMessage());
+        }
+
+        response = buildResponse(404, "Not Found", "not json");
+        try {
+            PooledHttpManager.getResponseBody(response);
+            fail("Expected NotFoundException");
+        } catch (NotFoundException e) {
+            assertEquals("Not Found", e.getMessage());
+        }
+    }
+
+    /**
+     * Assert that the Retry-After header of a rate limited response is exposed.
+     */
+    @Test
+    public void testGetResponseBodyRateLimited() throws Exception {
+        HttpResponse response = buildResponse(429, "Too Many Requests", null);
+        response.addHeader("Retry-After", "7");
+        try {
+            PooledHttpManager.getResponseBody(response);
+            fail("Expected TooManyRequestsException");
+        } catch (TooManyRequestsException e) {
+            assertEquals(7, e.getRetryAfter());
+        }
+    }
+
+    /**
+     * Assert that a Retry-After header given as an HTTP date is converted to
+     * seconds, and that an unparseable header falls back to no wait time instead
+     * of failing.
+     */
+    @Test
+    public void testGetRetryAfterSeconds() {
+        String inTenSeconds = DateUtils.formatDate(new Date(System.currentTimeMillis() + 10000));
+        int actual = PooledHttpManager.getRetryAfterSeconds(new BasicHeader("Retry-After", inTenSeconds));
+        assertTrue(actual >= 9 && actual <= 10);
+
+        assertEquals(0, PooledHttpManager.getRetryAfterSeconds(new BasicHeader("Retry-After", "soon")));
+        assertEquals(0, PooledHttpManager.getRetryAfterSeconds(new BasicHeader("Retry-After", "-5")));
+        assertEquals(0, PooledHttpManager.getRetryAfterSeconds(null));
+    }
+
+    private static HttpResponse buildResponse(int status, String reason, String body) throws Exception {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, status, reason);
+        if (body != null) {
+            response.setEntity(new StringEntity(body));
+        }
+        return response;
+    }
+}
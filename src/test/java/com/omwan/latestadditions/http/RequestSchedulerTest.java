@@ -0,0 +1,100 @@
+package com.omwan.latestadditions.http;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for RequestScheduler.
+ */
+public class RequestSchedulerTest {
+
+    /**
+     * Assert that permits are available immediately up to the burst size, and
+     * are then handed out at the configured rate.
+     */
+    @Test
+    public void testRateLimit() {
+        RequestScheduler scheduler = new RequestScheduler(20, 2, 1000);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 4; i++) {
+            scheduler.acquire("key");
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("Expected the last two permits to wait, took " + elapsedMs + " ms", elapsedMs >= 80);
+    }
+
+    /**
+     * Assert that callers with different keys take turns, so that a key with a
+     * long queue does not hold up a key that arrives later.
+     */
+    @Test
+    public void testRoundRobinFairness() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(50, 1, 5000);
+        scheduler.pause(300);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        try {
+            CountDownLatch done = new CountDownLatch(6);
+            for (int i = 0; i < 5; i++) {
+                executor.submit(() -> {
+                    scheduler.acquire("build");
+                    order.add("build");
+                    done.countDown();
+                });
+            }
+            while (scheduler.getWaitingCount() < 5) {
+                Thread.sleep(1);
+            }
+            executor.submit(() -> {
+                scheduler.acquire("browse");
+                order.add("browse");
+                done.countDown();
+            });
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue("Expected browse to be served second, got " + order, order.indexOf("browse") <= 1);
+    }
+
+    /**
+     * Assert that no permits are handed out while the scheduler is paused.
+     */
+    @Test
+    public void testPause() {
+        RequestScheduler scheduler = new RequestScheduler(1000, 10, 1000);
+        scheduler.pause(100);
+
+        long start = System.nanoTime();
+        scheduler.acquire("key");
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("Expected to wait for the pause, took " + elapsedMs + " ms", elapsedMs >= 90);
+    }
+
+    /**
+     * Assert that a caller gives up once the acquire timeout has passed.
+     */
+    @Test(expected = RuntimeException.class)
+    public void testAcquireTimeout() {
+        RequestScheduler scheduler = new RequestScheduler(1, 1, 50);
+        scheduler.acquire("key");
+        try {
+            scheduler.acquire("key");
+        } finally {
+            assertEquals(0, scheduler.getWaitingCount());
+        }
+    }
+}
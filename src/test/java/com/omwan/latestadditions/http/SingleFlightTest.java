@@ -0,0 +1,106 @@
+package com.omwan.latestadditions.http;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for SingleFlight.
+ */
+public class SingleFlightTest {
+
+    /**
+     * Assert that concurrent calls with the same key share one call and its
+     * result, and that the key is released once the call completes.
+     */
+    @Test
+    public void testConcurrentCallsCoalesced() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            results.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                calls.incrementAndGet();
+                started.countDown();
+                await(release);
+                return "result";
+            })));
+            started.await(1, TimeUnit.SECONDS);
+            for (int i = 0; i < 3; i++) {
+                results.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                    calls.incrementAndGet();
+                    return "other";
+                })));
+            }
+
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<String> result : results) {
+                assertEquals("result", result.get(1, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, calls.get());
+        assertEquals(0, singleFlight.size());
+        assertEquals("next", singleFlight.execute("key", () -> "next"));
+    }
+
+    /**
+     * Assert that if the shared call fails, waiting callers perform the call
+     * themselves instead of receiving the failure.
+     */
+    @Test
+    public void testFailureNotShared() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+                started.countDown();
+                await(release);
+                throw new IllegalStateException("expired token");
+            }));
+            started.await(1, TimeUnit.SECONDS);
+            Future<String> follower = executor.submit(() -> singleFlight.execute("key", () -> "own result"));
+
+            Thread.sleep(100);
+            release.countDown();
+            assertEquals("own result", follower.get(1, TimeUnit.SECONDS));
+            try {
+                leader.get(1, TimeUnit.SECONDS);
+                fail("Expected leader to fail");
+            } catch (ExecutionException e) {
+                assertEquals(IllegalStateException.class, e.getCause().getClass());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
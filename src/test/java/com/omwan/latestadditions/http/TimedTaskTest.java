@@ -0,0 +1,58 @@
+package com.omwan.latestadditions.http;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for TimedTask.
+ */
+public class TimedTaskTest {
+
+    /**
+     * Assert that time spent queued behind another task is not counted against
+     * a task's timeout.
+     */
+    @Test
+    public void testTimeoutStartsWhenRunning() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            TimedTask<String> blocking = TimedTask.submit(executor, () -> {
+                release.await();
+                return "blocking";
+            });
+            TimedTask<String> queued = TimedTask.submit(executor, () -> "queued");
+
+            Thread.sleep(200);
+            release.countDown();
+            assertEquals("blocking", blocking.get(1000));
+            assertEquals("queued", queued.get(100));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Assert that a task running for longer than its timeout times out.
+     */
+    @Test(expected = TimeoutException.class)
+    public void testTimeout() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            TimedTask<String> task = TimedTask.submit(executor, () -> {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+                return "slow";
+            });
+            task.get(50);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.omwan.latestadditions.loadtest;
+
+import com.google.gson.JsonObject;
+import com.omwan.latestadditions.Application;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Load test of building playlists end to end through the playlist controller,
+ * with the application pointed at a fake Spotify server. Skipped unless run with
+ * -Dloadtest.enabled=true, for example:
+ *
+ * <pre>
+ * mvn test -Dtest=BuildLoadTest -Dloadtest.enabled=true -Dloadtest.users=16 -Dloadtest.latency.ms=100
+ * </pre>
+ *
+ * The size of the load and the behavior of the fake server are set with the
+ * other loadtest.* system properties read below.
+ */
+public class BuildLoadTest {
+    private static final Logger s_Logger = LogManager.getLogger();
+
+    private static final String DATABASE_PATH = "target/loadtest.db";
+
+    private static FakeSpotifyServer spotifyServer;
+    private static ConfigurableApplicationContext context;
+
+    @BeforeClass
+    public static void setup() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("loadtest.enabled"));
+
+        spotifyServer = new FakeSpotifyServer(Integer.getInteger("loadtest.playlists", 20),
+                Integer.getInteger("loadtest.playlist.size", 5000),
+                Integer.getInteger("loadtest.server.threads", 64));
+        spotifyServer.setLatencyMs(Long.getLong("loadtest.latency.ms", 50L));
+        spotifyServer.setMaxPageSize(Integer.getInteger("loadtest.page.size", 100));
+        spotifyServer.setRateLimit(Integer.getInteger("loadtest.rate.limit.every", 0),
+                Integer.getInteger("loadtest.retry.after.seconds", 0));
+        spotifyServer.start();
+
+        Files.deleteIfExists(Paths.get(DATABASE_PATH));
+        context = new SpringApplicationBuilder(Application.class)
+                .properties("SPOTIFY_CLIENT=loadtest",
+                        "SPOTIFY_CLIENT_SECRET=loadtest",
+                        "SPOTIFY_REDIRECT_URI=http://localhost/callback",
+                        "COOKIE_DOMAIN=localhost")
+                .run("--server.port=0",
+                        "--spotify.api.uri=" + spotifyServer.getUri(),
+                        "--sqlite.url=jdbc:sqlite:" + DATABASE_PATH,
+                        "--spotify.refresh.enabled=false");
+    }
+
+    @AfterClass
+    public static void teardown() {
+        if (context != null) {
+            context.close();
+        }
+        if (spotifyServer != null) {
+            spotifyServer.stop();
+        }
+    }
+
+    /**
+     * Build playlists concurrently as separate users, and report the build
+     * latency percentiles and the calls made to the fake Spotify server.
+     */
+    @Test
+    public void testConcurrentBuilds() throws Exception {
+        int users = Integer.getInteger("loadtest.users", 8);
+        int buildsPerUser = Integer.getInteger("loadtest.builds", 5);
+        int numTracks = Integer.getInteger("loadtest.num.tracks", 50);
+        String baseUri = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        String buildUri = baseUri + "/api/playlists";
+
+        JsonObject playlistIds = new JsonObject();
+        for (String playlistId : spotifyServer.getPlaylistIds()) {
+            playlistIds.add(playlistId, null);
+        }
+        JsonObject request = new JsonObject();
+        request.add("playlistIds", playlistIds);
+        request.addProperty("playlistName", "Latest Additions");
+        request.addProperty("description", "Load test");
+        request.addProperty("numTracks", numTracks);
+
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        List<Future<Integer>> failures = new ArrayList<>();
+        ExecutorService clients = Executors.newFixedThreadPool(users);
+        long start = System.nanoTime();
+        try (CloseableHttpClient httpClient = HttpClients.custom()
+                .setMaxConnTotal(users)
+                .setMaxConnPerRoute(users)
+                .build()) {
+            for (int user = 0; user < users; user++) {
+                String cookies = String.format("ACCESS_TOKEN=access%d; REFRESH_TOKEN=refresh%d; USER_ID=user%d",
+                        user, user, user);
+                failures.add(clients.submit(() -> {
+                    int failed = 0;
+                    for (int i = 0; i < buildsPerUser; i++) {
+                        HttpPost post = new HttpPost(buildUri);
+                        post.setHeader("Cookie", cookies);
+                        post.setEntity(new StringEntity(request.toString(), ContentType.APPLICATION_JSON));
+                        long buildStart = System.nanoTime();
+                        try (CloseableHttpResponse response = httpClient.execute(post)) {
+                            EntityUtils.consume(response.getEntity());
+                            if (response.getStatusLine().getStatusCode() != 200) {
+                                failed++;
+                                continue;
+                            }
+                        }
+                        latencies.add(System.nanoTime() - buildStart);
+                    }
+                    return failed;
+                }));
+            }
+
+            int failed = 0;
+            for (Future<Integer> userFailures : failures) {
+                failed += userFailures.get();
+            }
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            List<Long> sorted = new ArrayList<>(latencies);
+            Collections.sort(sorted);
+            s_Logger.info("Completed {} builds ({} failed) in {} ms, {} builds/s",
+                    sorted.size(), failed, elapsedMs,
+                    String.format("%.2f", sorted.size() * 1000.0 / Math.max(elapsedMs, 1)));
+            s_Logger.info("Build latency p50={} ms, p99={} ms, max={} ms",
+                    percentileMs(sorted, 0.5), percentileMs(sorted, 0.99), percentileMs(sorted, 1));
+            s_Logger.info("Upstream calls: {}", spotifyServer.getCallCounts());
+
+            assertEquals(0, failed);
+
+            try (CloseableHttpResponse response = httpClient.execute(new HttpGet(baseUri + "/actuator/prometheus"))) {
+                String metrics = EntityUtils.toString(response.getEntity());
+                assertTrue(metrics.contains("playlist_build_phase_seconds_count"));
+                assertTrue(metrics.contains("spotify_requests_seconds_count"));
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    /**
+     * Get a percentile of the given sorted latencies.
+     *
+     * @param sorted     latencies in nanoseconds, sorted in ascending order
+     * @param percentile percentile between 0 and 1
+     * @return latency in milliseconds
+     */
+    private static long percentileMs(List<Long> sorted, double percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return TimeUnit.NANOSECONDS.toMillis(sorted.get(Math.max(index, 0)));
+    }
+}
@@ -0,0 +1,406 @@
+package com.omwan.latestadditions.loadtest;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URLEncodedUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embedded stand-in for the parts of the Spotify Web API used to build playlists,
+ * serving large synthetic playlists with configurable latency, page size limits,
+ * and injected rate limiting. Every user sees the same source playlists, and
+ * writes are accepted without being stored.
+ */
+public class FakeSpotifyServer {
+
+    private static final long START_MS = 1500000000000L;
+    private static final long ADDED_INTERVAL_MS = 60000L;
+    private static final int MAX_TRACKS_LIMIT = 100;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final int playlistCount;
+    private final int playlistSize;
+
+    private volatile long latencyMs;
+    private volatile int maxPageSize = 100;
+    private volatile int rateLimitEvery;
+    private volatile int retryAfterSeconds;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicInteger createdCount = new AtomicInteger();
+    private final Map<String, AtomicInteger> callCounts = new ConcurrentHashMap<>();
+
+    /**
+     * Create a server on an ephemeral port serving the given number of source
+     * playlists. The server is not started until {@link #start()} is called.
+     *
+     * @param playlistCount number of source playlists
+     * @param playlistSize  number of tracks in each source playlist
+     * @param threads       number of threads to handle requests on
+     * @throws IOException if the server cannot be bound
+     */
+    public FakeSpotifyServer(int playlistCount, int playlistSize, int threads) throws IOException {
+        this.playlistCount = playlistCount;
+        this.playlistSize = playlistSize;
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Get the base URI to point the Spotify API component at.
+     *
+     * @return base URI of server
+     */
+    public String getUri() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Get the IDs of the source playlists served.
+     *
+     * @return playlist IDs
+     */
+    public String[] getPlaylistIds() {
+        String[] playlistIds = new String[playlistCount];
+        for (int i = 0; i < playlistCount; i++) {
+            playlistIds[i] = "playlist" + i;
+        }
+        return playlistIds;
+    }
+
+    /**
+     * Set the time to wait before responding to each request.
+     *
+     * @param latencyMs latency in milliseconds
+     */
+    public void setLatencyMs(long latencyMs) {
+        this.latencyMs = latencyMs;
+    }
+
+    /**
+     * Set the maximum number of items returned in a page, regardless of the
+     * limit requested.
+     *
+     * @param maxPageSize maximum page size
+     */
+    public void setMaxPageSize(int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * Reject every nth request with a 429 response.
+     *
+     * @param rateLimitEvery interval of rejected requests, or 0 to never reject
+     * @param retryAfterSeconds value of the Retry-After header of rejected requests
+     */
+    public void setRateLimit(int rateLimitEvery, int retryAfterSeconds) {
+        this.rateLimitEvery = rateLimitEvery;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Get the number of requests received for each endpoint, including
+     * rejected requests.
+     *
+     * @return mapping of endpoints to request counts, sorted by endpoint
+     */
+    public Map<String, Integer> getCallCounts() {
+        Map<String, Integer> counts = new TreeMap<>();
+        callCounts.forEach((endpoint, count) -> counts.put(endpoint, count.get()));
+        return counts;
+    }
+
+    public void resetCallCounts() {
+        callCounts.clear();
+    }
+
+    /**
+     * Route a request to the handler for its endpoint.
+     *
+     * @param exchange request to handle
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            Map<String, String> parameters = getParameters(exchange.getRequestURI());
+            exchange.getRequestBody().close();
+
+            String endpoint = getEndpoint(method, path);
+            callCounts.computeIfAbsent(endpoint, key -> new AtomicInteger()).incrementAndGet();
+            sleep(latencyMs);
+
+            int every = rateLimitEvery;
+            if (every > 0 && requestCount.incrementAndGet() % every == 0) {
+                exchange.getResponseHeaders().add("Retry-After", String.valueOf(retryAfterSeconds));
+                respond(exchange, 429, error(429, "API rate limit exceeded"));
+                return;
+            }
+
+            switch (endpoint) {
+                case "GET /me":
+                    JsonObject user = new JsonObject();
+                    user.addProperty("id", "loadtest");
+                    respond(exchange, 200, user);
+                    break;
+                case "GET /me/playlists":
+                    respond(exchange, 200, getUserPlaylists(parameters));
+                    break;
+                case "GET /playlists/{id}":
+                    respond(exchange, 200, getPlaylist(path[5]));
+                    break;
+                case "GET /playlists/{id}/tracks":
+                    int limit = getInt(parameters, "limit", MAX_TRACKS_LIMIT);
+                    if (limit < 1 || limit > MAX_TRACKS_LIMIT) {
+                        respond(exchange, 400, error(400, "Invalid limit"));
+                    } else {
+                        respond(exchange, 200, getTracks(path[5], parameters));
+                    }
+                    break;
+                case "POST /playlists":
+                    JsonObject created = new JsonObject();
+                    created.addProperty("id", "latest" + createdCount.incrementAndGet());
+                    respond(exchange, 201, created);
+                    break;
+                case "POST /playlists/{id}/tracks":
+                case "PUT /playlists/{id}/tracks":
+                case "DELETE /playlists/{id}/tracks":
+                    JsonObject snapshot = new JsonObject();
+                    snapshot.addProperty("snapshot_id", "snapshot" + System.nanoTime());
+                    respond(exchange, 201, snapshot);
+                    break;
+                default:
+                    respond(exchange, 404, error(404, "Not found."));
+            }
+        } catch (RuntimeException e) {
+            respond(exchange, 500, error(500, e.toString()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Get the endpoint a request is for, with IDs replaced by placeholders.
+     *
+     * @param method request method
+     * @param path   segments of request path
+     * @return endpoint
+     */
+    private static String getEndpoint(String method, String[] path) {
+        if (path.length == 3 && path[2].equals("me")) {
+            return method + " /me";
+        } else if (path.length == 4 && path[2].equals("me") && path[3].equals("playlists")) {
+            return method + " /me/playlists";
+        } else if (path.length == 5 && path[2].equals("users") && path[4].equals("playlists")) {
+            return method + " /playlists";
+        } else if (path.length == 6 && path[2].equals("users") && path[4].equals("playlists")) {
+            return method + " /playlists/{id}";
+        } else if (path.length == 7 && path[2].equals("users") && path[6].equals("tracks")) {
+            return method + " /playlists/{id}/tracks";
+        }
+        return method + " " + String.join("/", path);
+    }
+
+    /**
+     * Build a page of the current user's playlists.
+     *
+     * @param parameters query parameters of request
+     * @return paging object
+     */
+    private JsonObject getUserPlaylists(Map<String, String> parameters) {
+        int offset = getInt(parameters, "offset", 0);
+        int limit = Math.min(getInt(parameters, "limit", 20), maxPageSize);
+        int end = Math.min(offset + limit, playlistCount);
+
+        JsonArray items = new JsonArray();
+        for (int i = offset; i < end; i++) {
+            items.add(getPlaylistSimplified("playlist" + i));
+        }
+        return paging(items, offset, limit, playlistCount);
+    }
+
+    /**
+     * Build the details of a source playlist.
+     *
+     * @param playlistId ID of playlist
+     * @return playlist object
+     */
+    private JsonObject getPlaylist(String playlistId) {
+        JsonObject playlist = getPlaylistSimplified(playlistId);
+        playlist.addProperty("description", "");
+        playlist.add("tracks", paging(new JsonArray(), 0, maxPageSize, playlistSize));
+        return playlist;
+    }
+
+    /**
+     * Build the simplified details of a source playlist.
+     *
+     * @param playlistId ID of playlist
+     * @return simplified playlist object
+     */
+    private JsonObject getPlaylistSimplified(String playlistId) {
+        JsonObject owner = new JsonObject();
+        owner.addProperty("id", "owner");
+
+        JsonObject tracks = new JsonObject();
+        tracks.addProperty("total", playlistSize);
+
+        JsonObject playlist = new JsonObject();
+        playlist.addProperty("id", playlistId);
+        playlist.addProperty("name", playlistId);
+        playlist.addProperty("uri", "spotify:playlist:" + playlistId);
+        playlist.addProperty("snapshot_id", playlistId + "-snapshot");
+        playlist.addProperty("collaborative", false);
+        playlist.addProperty("public", true);
+        playlist.add("owner", owner);
+        playlist.add("tracks", tracks);
+        return playlist;
+    }
+
+    /**
+     * Build a page of a source playlist's tracks. Tracks are generated from
+     * their position, with the added dates of different playlists interleaved.
+     * Limits above the API's maximum are rejected before this is called.
+     *
+     * @param playlistId ID of playlist
+     * @param parameters query parameters of request
+     * @return paging object
+     */
+    private JsonObject getTracks(String playlistId, Map<String, String> parameters) {
+        int playlistIndex = Integer.parseInt(playlistId.replace("playlist", ""));
+        int offset = getInt(parameters, "offset", 0);
+        int limit = Math.min(getInt(parameters, "limit", MAX_TRACKS_LIMIT), maxPageSize);
+        int end = Math.min(offset + limit, playlistSize);
+
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        JsonArray items = new JsonArray();
+        for (int i = offset; i < end; i++) {
+            String trackId = playlistId + "-" + i;
+
+            JsonObject artist = new JsonObject();
+            artist.addProperty("name", "Artist " + (i % 100));
+            JsonArray artists = new JsonArray();
+            artists.add(artist);
+
+            JsonObject externalIds = new JsonObject();
+            externalIds.addProperty("isrc", "US" + trackId);
+
+            JsonObject track = new JsonObject();
+            track.addProperty("id", trackId);
+            track.addProperty("uri", "spotify:track:" + trackId);
+            track.addProperty("name", "Song " + trackId);
+            track.add("artists", artists);
+            track.add("external_ids", externalIds);
+
+            JsonObject item = new JsonObject();
+            long addedAt = START_MS + i * ADDED_INTERVAL_MS + playlistIndex * 1000L;
+            item.addProperty("added_at", dateFormat.format(new Date(addedAt)));
+            item.addProperty("is_local", false);
+            item.add("track", track);
+            items.add(item);
+        }
+        return paging(items, offset, limit, playlistSize);
+    }
+
+    /**
+     * Build a paging object around the given items.
+     *
+     * @param items  items in page
+     * @param offset offset of first item
+     * @param limit  maximum number of items in page
+     * @param total  total number of items
+     * @return paging object
+     */
+    private static JsonObject paging(JsonArray items, int offset, int limit, int total) {
+        JsonObject paging = new JsonObject();
+        paging.add("items", items);
+        paging.addProperty("offset", offset);
+        paging.addProperty("limit", limit);
+        paging.addProperty("total", total);
+        if (offset + items.size() < total) {
+            paging.addProperty("next", "offset=" + (offset + items.size()));
+        }
+        return paging;
+    }
+
+    /**
+     * Build an error body in the format Spotify uses.
+     *
+     * @param status  response status
+     * @param message error message
+     * @return error object
+     */
+    private static JsonObject error(int status, String message) {
+        JsonObject error = new JsonObject();
+        error.addProperty("status", status);
+        error.addProperty("message", message);
+        JsonObject body = new JsonObject();
+        body.add("error", error);
+        return body;
+    }
+
+    private static void respond(HttpExchange exchange, int status, JsonObject body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> getParameters(URI uri) {
+        Map<String, String> parameters = new HashMap<>();
+        for (NameValuePair pair : URLEncodedUtils.parse(uri, StandardCharsets.UTF_8)) {
+            parameters.put(pair.getName(), pair.getValue());
+        }
+        return parameters;
+    }
+
+    private static int getInt(Map<String, String> parameters, String name, int defaultValue) {
+        String value = parameters.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
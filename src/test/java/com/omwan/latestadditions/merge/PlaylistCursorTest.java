@@ -0,0 +1,147 @@
+package com.omwan.latestadditions.merge;
+
+import com.omwan.latestadditions.SpotifyTestUtils;
+import com.omwan.latestadditions.dto.DedupPolicy;
+import com.omwan.latestadditions.dto.PlaylistIdWrapper;
+import com.wrapper.spotify.model_objects.specification.PlaylistTrack;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for PlaylistCursor.
+ */
+public class PlaylistCursorTest {
+
+    private ExecutorService executor;
+
+    @Before
+    public void setup() {
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void teardown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Assert that the cursor walks backwards through the initial tracks without
+     * fetching more tracks when none are skipped.
+     */
+    @Test
+    public void testAdvanceWithoutSkips() {
+        PlaylistTrack[] tracks = buildTracks(30, -1);
+        PlaylistIdWrapper playlist = new PlaylistIdWrapper("playlist", "user");
+        playlist.setOffset(20);
+        AtomicInteger fetchCount = new AtomicInteger();
+
+        PlaylistCursor cursor = new PlaylistCursor(playlist, Arrays.asList(tracks).subList(20, 30), 10,
+                buildFetcher(tracks, fetchCount), executor, 1000);
+
+        assertEquals(Arrays.asList("29", "28", "27", "26", "25", "24", "23", "22", "21", "20"),
+                drain(cursor, new TrackDedupIndex(DedupPolicy.URI, 10)));
+        assertEquals(0, fetchCount.get());
+        assertEquals(0, cursor.getRefillCount());
+        assertFalse(cursor.isFetchFailed());
+    }
+
+    /**
+     * Assert that when local files are skipped, earlier tracks are fetched and
+     * returned in order, and the playlist's offset and skip count are updated.
+     */
+    @Test
+    public void testAdvanceWithSkips() {
+        PlaylistTrack[] tracks = buildTracks(30, 3);
+        PlaylistIdWrapper playlist = new PlaylistIdWrapper("playlist", "user");
+        playlist.setOffset(20);
+        AtomicInteger fetchCount = new AtomicInteger();
+
+        PlaylistCursor cursor = new PlaylistCursor(playlist, Arrays.asList(tracks).subList(20, 30), 10,
+                buildFetcher(tracks, fetchCount), executor, 1000);
+
+        List<String> actual = drain(cursor, new TrackDedupIndex(DedupPolicy.URI, 10));
+        assertEquals(Arrays.asList("29", "28", "26", "25", "23", "22", "20", "19", "17", "16"), actual);
+        assertTrue(fetchCount.get() > 0);
+        assertEquals(fetchCount.get(), cursor.getRefillCount());
+        assertEquals(4, playlist.getSkipCount());
+        assertTrue(playlist.getOffset() < 20);
+    }
+
+    /**
+     * Assert that if fetching more tracks fails, the cursor is treated as
+     * exhausted and reports the failure.
+     */
+    @Test
+    public void testAdvanceFailedFetch() {
+        PlaylistTrack[] tracks = buildTracks(30, 1);
+        PlaylistIdWrapper playlist = new PlaylistIdWrapper("playlist", "user");
+        playlist.setOffset(20);
+
+        PlaylistCursor cursor = new PlaylistCursor(playlist, Arrays.asList(tracks).subList(20, 30), 10,
+                (wrapper, limit, offset) -> {
+                    throw new RuntimeException("fetch failed");
+                }, executor, 1000);
+
+        assertTrue(drain(cursor, new TrackDedupIndex(DedupPolicy.URI, 10)).isEmpty());
+        assertFalse(cursor.advance(new TrackDedupIndex(DedupPolicy.URI, 10)));
+        assertTrue(cursor.isFetchFailed());
+    }
+
+    /**
+     * Advance the cursor until it is exhausted.
+     *
+     * @param cursor     cursor to drain
+     * @param dedupIndex index of tracks already selected
+     * @return URIs of tracks returned by the cursor
+     */
+    private List<String> drain(PlaylistCursor cursor, TrackDedupIndex dedupIndex) {
+        List<String> uris = new ArrayList<>();
+        while (cursor.advance(dedupIndex)) {
+            uris.add(cursor.getCurrent().getTrack().getUri());
+        }
+        return uris;
+    }
+
+    /**
+     * Build a fetcher returning pages of the given tracks.
+     *
+     * @param tracks     all tracks in the playlist
+     * @param fetchCount counter of fetches made
+     * @return page fetcher
+     */
+    private PlaylistCursor.PageFetcher buildFetcher(PlaylistTrack[] tracks, AtomicInteger fetchCount) {
+        return (playlist, limit, offset) -> {
+            fetchCount.incrementAndGet();
+            return Arrays.copyOfRange(tracks, offset, Math.min(offset + limit, tracks.length));
+        };
+    }
+
+    /**
+     * Build a playlist of tracks whose URIs are their positions, where every
+     * track at a position divisible by localEvery is a local file.
+     *
+     * @param size       number of tracks
+     * @param localEvery interval of local files, or -1 for no local files
+     * @return playlist tracks
+     */
+    private PlaylistTrack[] buildTracks(int size, int localEvery) {
+        PlaylistTrack[] tracks = new PlaylistTrack[size];
+        for (int i = 0; i < size; i++) {
+            boolean isLocal = localEvery > 0 && i % localEvery == 0;
+            tracks[i] = SpotifyTestUtils.buildMockedPlaylistTrack(String.valueOf(i), i, isLocal);
+        }
+        return tracks;
+    }
+}
@@ -0,0 +1,145 @@
+package com.omwan.latestadditions.merge;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for PlaylistDiff.
+ */
+public class PlaylistDiffTest {
+
+    /**
+     * Assert that no operations are needed when the playlist already matches.
+     */
+    @Test
+    public void testComputeUnchanged() {
+        List<String> uris = Arrays.asList("a", "b", "c");
+
+        assertTrue(PlaylistDiff.compute(uris, uris).isEmpty());
+    }
+
+    /**
+     * Assert that a typical rebuild, where new tracks are added to the front and
+     * the oldest tracks fall off the end, needs a single insert and no moves.
+     */
+    @Test
+    public void testComputeShiftedTracks() {
+        List<String> current = Arrays.asList("c", "d", "e", "f");
+        List<String> target = Arrays.asList("a", "b", "c", "d");
+
+        PlaylistDiff diff = PlaylistDiff.compute(current, target);
+        assertEquals(2, diff.getRemovals().size());
+        assertTrue(diff.getMoves().isEmpty());
+        assertEquals(1, diff.getInserts().size());
+        assertEquals(0, diff.getInserts().get(0).getPosition());
+        assertEquals(Arrays.asList("a", "b"), diff.getInserts().get(0).getTrackUris());
+        assertEquals(target, apply(current, diff));
+    }
+
+    /**
+     * Assert that only tracks outside the longest correctly ordered subsequence
+     * are moved, and duplicate copies of a track are removed.
+     */
+    @Test
+    public void testComputeReorderedTracks() {
+        List<String> current = Arrays.asList("d", "a", "b", "a", "c");
+        List<String> target = Arrays.asList("a", "b", "c", "d");
+
+        PlaylistDiff diff = PlaylistDiff.compute(current, target);
+        assertEquals(Collections.singletonList(3), diff.getRemovals().get("a"));
+        assertEquals(1, diff.getMoves().size());
+        assertEquals(target, apply(current, diff));
+    }
+
+    /**
+     * Assert that tracks without a URI are not included in the removals, and
+     * are reported as unremovable instead.
+     */
+    @Test
+    public void testComputeTracksWithoutUri() {
+        List<String> current = Arrays.asList("a", null, "b", "c");
+        List<String> target = Arrays.asList("a", "b");
+
+        PlaylistDiff diff = PlaylistDiff.compute(current, target);
+        assertFalse(diff.getRemovals().containsKey(null));
+        assertEquals(Collections.singletonList(3), diff.getRemovals().get("c"));
+        assertTrue(diff.hasUnremovableTracks());
+        assertFalse(diff.isEmpty());
+        assertFalse(PlaylistDiff.compute(target, target).hasUnremovableTracks());
+    }
+
+    /**
+     * Assert that applying the computed operations to randomly generated
+     * playlists always produces the target track list.
+     */
+    @Test
+    public void testComputeRandomPlaylists() {
+        Random random = new Random(42);
+        for (int run = 0; run < 500; run++) {
+            List<String> current = new ArrayList<>();
+            for (int i = random.nextInt(30); i > 0; i--) {
+                current.add("t" + random.nextInt(40));
+            }
+            List<String> target = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                target.add("t" + i);
+            }
+            Collections.shuffle(target, random);
+            target = target.subList(0, random.nextInt(30));
+
+            assertEquals(target, apply(current, PlaylistDiff.compute(current, target)));
+        }
+    }
+
+    /**
+     * Assert that the longest increasing subsequence is found.
+     */
+    @Test
+    public void testLongestIncreasingSubsequence() {
+        List<Integer> actual = PlaylistDiff.longestIncreasingSubsequence(new int[]{3, 0, 1, 4, 2, 5});
+        assertEquals(Arrays.asList(1, 2, 4, 5), actual);
+    }
+
+    /**
+     * Apply the operations of a diff to a copy of the given track list, following
+     * the Spotify API's semantics for each operation.
+     *
+     * @param current track list to apply operations to
+     * @param diff    operations to apply
+     * @return resulting track list
+     */
+    private List<String> apply(List<String> current, PlaylistDiff diff) {
+        List<Integer> removedPositions = new ArrayList<>();
+        for (Map.Entry<String, List<Integer>> removal : diff.getRemovals().entrySet()) {
+            for (int position : removal.getValue()) {
+                assertEquals(removal.getKey(), current.get(position));
+                removedPositions.add(position);
+            }
+        }
+        removedPositions.sort(Collections.reverseOrder());
+
+        List<String> result = new ArrayList<>(current);
+        for (int position : removedPositions) {
+            result.remove(position);
+        }
+        for (PlaylistDiff.Move move : diff.getMoves()) {
+            String uri = result.remove(move.getRangeStart());
+            int insertBefore = move.getInsertBefore();
+            result.add(insertBefore > move.getRangeStart() ? insertBefore - 1 : insertBefore, uri);
+        }
+        for (PlaylistDiff.Insert insert : diff.getInserts()) {
+            result.addAll(insert.getPosition(), insert.getTrackUris());
+        }
+        return result;
+    }
+}
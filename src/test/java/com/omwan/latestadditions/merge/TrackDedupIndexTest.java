@@ -0,0 +1,126 @@
+package com.omwan.latestadditions.merge;
+
+import com.omwan.latestadditions.SpotifyTestUtils;
+import com.omwan.latestadditions.dto.DedupPolicy;
+import com.wrapper.spotify.model_objects.specification.ArtistSimplified;
+import com.wrapper.spotify.model_objects.specification.ExternalId;
+import com.wrapper.spotify.model_objects.specification.PlaylistTrack;
+import com.wrapper.spotify.model_objects.specification.Track;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for TrackDedupIndex.
+ */
+public class TrackDedupIndexTest {
+
+    /**
+     * Assert that a track with a URI that has already been recorded is rejected
+     * under the default policy.
+     */
+    @Test
+    public void testAddDuplicateUri() {
+        TrackDedupIndex index = new TrackDedupIndex(DedupPolicy.URI, 2);
+
+        assertTrue(index.add(SpotifyTestUtils.buildMockedPlaylistTrack("uri", 1, false)));
+        assertFalse(index.add(SpotifyTestUtils.buildMockedPlaylistTrack("uri", 2, false)));
+        assertTrue(index.contains(SpotifyTestUtils.buildMockedPlaylistTrack("uri", 3, false)));
+        assertFalse(index.contains(SpotifyTestUtils.buildMockedPlaylistTrack("other", 3, false)));
+    }
+
+    /**
+     * Assert that the index grows past its expected size without losing tracks.
+     */
+    @Test
+    public void testAddBeyondExpectedSize() {
+        TrackDedupIndex index = new TrackDedupIndex(DedupPolicy.URI, 1);
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(index.add(SpotifyTestUtils.buildMockedPlaylistTrack("uri" + i, i, false)));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(index.add(SpotifyTestUtils.buildMockedPlaylistTrack("uri" + i, i, false)));
+        }
+        assertEquals(1000, index.size());
+    }
+
+    /**
+     * Assert that tracks with different URIs but the same ISRC are only treated
+     * as duplicates under the ISRC policy.
+     */
+    @Test
+    public void testAddDuplicateIsrc() {
+        PlaylistTrack single = buildTrack("single", "Song", "Artist", "USABC1234567");
+        PlaylistTrack album = buildTrack("album", "Song", "Artist", "usabc1234567");
+
+        TrackDedupIndex uriIndex = new TrackDedupIndex(DedupPolicy.URI, 2);
+        assertTrue(uriIndex.add(single));
+        assertTrue(uriIndex.add(album));
+
+        TrackDedupIndex isrcIndex = new TrackDedupIndex(DedupPolicy.ISRC, 2);
+        assertTrue(isrcIndex.add(single));
+        assertFalse(isrcIndex.add(album));
+    }
+
+    /**
+     * Assert that remastered versions of the same song by the same artist are
+     * treated as duplicates under the title policy.
+     */
+    @Test
+    public void testAddDuplicateTitle() {
+        PlaylistTrack original = buildTrack("original", "Héroes", "Artist", "ISRC1");
+        PlaylistTrack remaster = buildTrack("remaster", "Heroes - 2017 Remaster", "ARTIST", "ISRC2");
+        PlaylistTrack cover = buildTrack("cover", "Heroes (Live)", "Other Artist", "ISRC3");
+
+        TrackDedupIndex isrcIndex = new TrackDedupIndex(DedupPolicy.ISRC, 3);
+        assertTrue(isrcIndex.add(original));
+        assertTrue(isrcIndex.add(remaster));
+
+        TrackDedupIndex titleIndex = new TrackDedupIndex(DedupPolicy.TITLE, 3);
+        assertTrue(titleIndex.add(original));
+        assertFalse(titleIndex.add(remaster));
+        assertTrue(titleIndex.add(cover));
+    }
+
+    /**
+     * Assert that tracks without any track info are never recorded.
+     */
+    @Test
+    public void testAddMissingTrack() {
+        TrackDedupIndex index = new TrackDedupIndex(DedupPolicy.TITLE, 1);
+
+        assertFalse(index.add(new PlaylistTrack.Builder().build()));
+        assertEquals(0, index.size());
+    }
+
+    /**
+     * Create a playlist track with the given track details.
+     *
+     * @param uri    track URI
+     * @param name   track name
+     * @param artist name of track's artist
+     * @param isrc   track ISRC
+     * @return playlist track
+     */
+    private PlaylistTrack buildTrack(String uri, String name, String artist, String isrc) {
+        Track track = new Track.Builder()
+                .setUri(uri)
+                .setName(name)
+                .setArtists(new ArtistSimplified.Builder()
+                        .setName(artist)
+                        .build())
+                .setExternalIds(new ExternalId.Builder()
+                        .setExternalIds(Collections.singletonMap("isrc", isrc))
+                        .build())
+                .build();
+        return new PlaylistTrack.Builder()
+                .setTrack(track)
+                .setIsLocal(false)
+                .build();
+    }
+}
@@ -1,7 +1,7 @@
 package com.omwan.latestadditions.service;
 
-import com.omwan.latestadditions.component.CookieUtils;
 import com.omwan.latestadditions.component.SpotifyApiComponent;
+import com.omwan.latestadditions.component.SpotifyCredentialsComponent;
 import com.wrapper.spotify.SpotifyApi;
 import com.wrapper.spotify.exceptions.SpotifyWebApiException;
 import com.wrapper.spotify.model_objects.credentials.AuthorizationCodeCredentials;
@@ -16,7 +16,6 @@ import org.junit.Before;
 import org.junit.Test;
 import org.springframework.mock.web.MockHttpServletResponse;
 
-import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletResponse;
 import java.net.URI;
 
@@ -32,7 +31,7 @@ public class AuthServiceImplTest {
     private SpotifyApiComponent spotifyApiComponent;
 
     @Injectable
-    private CookieUtils cookieUtils;
+    private SpotifyCredentialsComponent spotifyCredentialsComponent;
 
     @Before
     public void setup() {
@@ -67,7 +66,7 @@ public class AuthServiceImplTest {
 
     /**
      * Assert that the access and refresh tokens can be successfully retrieved
-     * and set as cookies.
+     * and saved.
      */
     @Test
     public void testSetToken() throws Exception {
@@ -76,10 +75,12 @@ public class AuthServiceImplTest {
         final String refreshToken = "refresh token";
         final HttpServletResponse response = new MockHttpServletResponse();
 
+        final AuthorizationCodeCredentials credentials = buildMockedAuthCredentials(accessToken, refreshToken);
+
         new MockUp<AuthorizationCodeRequest>() {
             @Mock
             public AuthorizationCodeCredentials execute() {
-                return buildMockedAuthCredentials(accessToken, refreshToken);
+                return credentials;
             }
         };
 
@@ -87,10 +88,7 @@ public class AuthServiceImplTest {
             spotifyApiComponent.getSpotifyApi();
             returns(buildMockSpotifyApi());
 
-            cookieUtils.buildCookie("ACCESS_TOKEN", accessToken);
-            returns(new Cookie("ACCESS_TOKEN", accessToken));
-            cookieUtils.buildCookie("REFRESH_TOKEN", refreshToken);
-            returns(new Cookie("REFRESH_TOKEN", refreshToken));
+            spotifyCredentialsComponent.storeCredentials(response, credentials);
         }};
 
         authService.setToken(token, response);
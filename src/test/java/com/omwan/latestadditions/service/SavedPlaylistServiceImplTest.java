@@ -2,21 +2,28 @@ package com.omwan.latestadditions.service;
 
 
 import com.omwan.latestadditions.SpotifyTestUtils;
-import com.omwan.latestadditions.component.SpotifyApiComponent;
+import com.omwan.latestadditions.component.PlaylistMetadataComponent;
+import com.omwan.latestadditions.component.SpotifyCredentialsComponent;
 import com.omwan.latestadditions.component.UserPlaylistComponent;
 import com.omwan.latestadditions.dto.PlaylistIdWrapper;
+import com.omwan.latestadditions.dto.SavedPlaylistsResponse;
+import com.wrapper.spotify.SpotifyApi;
 import com.wrapper.spotify.model_objects.specification.Playlist;
-import com.wrapper.spotify.requests.data.AbstractDataRequest;
+import mockit.Deencapsulation;
+import mockit.Delegate;
 import mockit.Expectations;
 import mockit.Injectable;
+import mockit.NonStrictExpectations;
 import mockit.Tested;
 import mockit.Verifications;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
@@ -31,14 +38,19 @@ public class SavedPlaylistServiceImplTest {
     private SavedPlaylistService savedPlaylistService;
 
     @Injectable
-    private SpotifyApiComponent spotifyApiComponent;
+    private SpotifyCredentialsComponent spotifyCredentialsComponent;
 
     @Injectable
     private UserPlaylistComponent userPlaylistComponent;
 
+    @Injectable
+    private PlaylistMetadataComponent playlistMetadataComponent;
+
     @Before
     public void setup() {
         savedPlaylistService = new SavedPlaylistServiceImpl();
+        Deencapsulation.setField(savedPlaylistService, "playlistFetchExecutor", Executors.newFixedThreadPool(2));
+        Deencapsulation.setField(savedPlaylistService, "fetchTimeoutMs", 1000L);
     }
 
     /**
@@ -51,29 +63,101 @@ public class SavedPlaylistServiceImplTest {
         final String playlistId = "playlist ID";
 
         new Expectations() {{
-            spotifyApiComponent.tokensExist();
+            spotifyCredentialsComponent.tokensExist();
             returns(true);
 
-            spotifyApiComponent.getCurrentUserId();
+            spotifyCredentialsComponent.getCurrentUserId();
             returns(userId);
 
             userPlaylistComponent.getPlaylistsForUser(userId);
             returns(Collections.singletonList(new PlaylistIdWrapper(playlistId, userId)));
 
-            spotifyApiComponent.getApiWithTokens();
+            spotifyCredentialsComponent.getApiWithTokens();
             returns(SpotifyTestUtils.buildMockedSpotifyApi());
 
-            spotifyApiComponent.executeRequest((AbstractDataRequest) any, anyString);
+            playlistMetadataComponent.getPlaylist((SpotifyApi) any, userId, playlistId, anyString);
             returns(SpotifyTestUtils.buildMockedPlaylist(playlistId));
         }};
 
-        List<Playlist> actual = savedPlaylistService.getExistingPlaylists();
+        List<Playlist> actual = savedPlaylistService.getExistingPlaylists().getPlaylists();
         assertTrue(actual.size() > 0);
         Playlist actualPlaylist = actual.get(0);
         System.out.println(ToStringBuilder.reflectionToString(actualPlaylist));
         assertEquals(playlistId, actualPlaylist.getId());
     }
 
+    /**
+     * Assert that playlists that cannot be retrieved are reported separately
+     * without failing the whole list.
+     */
+    @Test
+    public void testGetExistingPlaylistsPartialFailure() throws Exception {
+        final String userId = "user ID";
+
+        new NonStrictExpectations() {{
+            spotifyCredentialsComponent.tokensExist();
+            returns(true);
+
+            spotifyCredentialsComponent.getCurrentUserId();
+            returns(userId);
+
+            userPlaylistComponent.getPlaylistsForUser(userId);
+            returns(Arrays.asList(new PlaylistIdWrapper("a", userId),
+                    new PlaylistIdWrapper("deleted", userId),
+                    new PlaylistIdWrapper("c", userId)));
+
+            spotifyCredentialsComponent.getApiWithTokens();
+            returns(SpotifyTestUtils.buildMockedSpotifyApi());
+
+            playlistMetadataComponent.getPlaylist((SpotifyApi) any, userId, anyString, anyString);
+            result = new Delegate<Playlist>() {
+                @SuppressWarnings("unused")
+                Playlist getPlaylist(SpotifyApi spotifyApi, String userId, String playlistId, String fields) {
+                    if (playlistId.equals("deleted")) {
+                        throw new RuntimeException("Unable to retrieve playlist " + playlistId);
+                    }
+                    return SpotifyTestUtils.buildMockedPlaylist(playlistId);
+                }
+            };
+        }};
+
+        SavedPlaylistsResponse actual = savedPlaylistService.getExistingPlaylists();
+        assertEquals(2, actual.getPlaylists().size());
+        assertEquals("a", actual.getPlaylists().get(0).getId());
+        assertEquals("c", actual.getPlaylists().get(1).getId());
+        assertEquals(Collections.singletonList("deleted"), actual.getFailedPlaylistIds());
+    }
+
+    /**
+     * Assert that a user whose only saved playlist cannot be retrieved gets an
+     * empty list rather than an error, so the playlist can still be deleted.
+     */
+    @Test
+    public void testGetExistingPlaylistsAllFailed() throws Exception {
+        final String userId = "user ID";
+
+        new NonStrictExpectations() {{
+            spotifyCredentialsComponent.tokensExist();
+            returns(true);
+
+            spotifyCredentialsComponent.getCurrentUserId();
+            returns(userId);
+
+            userPlaylistComponent.getPlaylistsForUser(userId);
+            returns(Collections.singletonList(new PlaylistIdWrapper("deleted", userId)));
+
+            spotifyCredentialsComponent.getApiWithTokens();
+            returns(SpotifyTestUtils.buildMockedSpotifyApi());
+
+            playlistMetadataComponent.getPlaylist((SpotifyApi) any, userId, "deleted", anyString);
+            result = new RuntimeException("Unable to retrieve playlist deleted");
+        }};
+
+        SavedPlaylistsResponse actual = savedPlaylistService.getExistingPlaylists();
+        assertTrue(actual.getPlaylists().isEmpty());
+        assertEquals(Collections.singletonList("deleted"), actual.getFailedPlaylistIds());
+    }
+
     /**
      * Assert that if the cookies containing the access tokens are
      * not set, the function returns an empty response.
@@ -81,7 +165,7 @@ public class SavedPlaylistServiceImplTest {
     @Test
     public void testGetExistingPlaylistsMissingTokens() throws Exception {
         new Expectations() {{
-            spotifyApiComponent.tokensExist();
+            spotifyCredentialsComponent.tokensExist();
             returns(false);
         }};
 
@@ -100,6 +184,7 @@ public class SavedPlaylistServiceImplTest {
 
         new Verifications() {{
             userPlaylistComponent.deleteSavedPlaylist(playlistId);
+            playlistMetadataComponent.invalidate(playlistId);
         }};
     }
 
@@ -1,20 +1,51 @@
 package com.omwan.latestadditions.service;
 
 import com.omwan.latestadditions.SpotifyTestUtils;
+import com.omwan.latestadditions.component.BuildJobComponent;
+import com.omwan.latestadditions.component.PlaylistMetadataComponent;
+import com.omwan.latestadditions.component.PlaylistWriterComponent;
 import com.omwan.latestadditions.component.SpotifyApiComponent;
+import com.omwan.latestadditions.component.SpotifyCredentialsComponent;
+import com.omwan.latestadditions.component.TrackTailCacheComponent;
 import com.omwan.latestadditions.component.UserPlaylistComponent;
+import com.omwan.latestadditions.db.UserPlaylist;
+import com.omwan.latestadditions.dto.BuildPlaylistRequest;
+import com.omwan.latestadditions.dto.BuildTrace;
+import com.omwan.latestadditions.dto.LatestPlaylistResponse;
+import com.omwan.latestadditions.dto.PlaylistIdWrapper;
+import com.omwan.latestadditions.dto.PlaylistTrace;
+import com.omwan.latestadditions.merge.PlaylistCursor;
+import com.wrapper.spotify.SpotifyApi;
 import com.wrapper.spotify.model_objects.specification.Paging;
 import com.wrapper.spotify.model_objects.specification.Playlist;
 import com.wrapper.spotify.model_objects.specification.PlaylistSimplified;
+import com.wrapper.spotify.model_objects.specification.PlaylistTrack;
 import com.wrapper.spotify.requests.data.AbstractDataRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import mockit.Deencapsulation;
+import mockit.Delegate;
 import mockit.Expectations;
 import mockit.Injectable;
+import mockit.NonStrictExpectations;
 import mockit.Tested;
+import mockit.Verifications;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Unit tests for spotify playlist services.
@@ -27,12 +58,31 @@ public class SpotifyPlaylistServiceImplTest {
     @Injectable
     private SpotifyApiComponent spotifyApiComponent;
 
+    @Injectable
+    private SpotifyCredentialsComponent spotifyCredentialsComponent;
+
     @Injectable
     private UserPlaylistComponent userPlaylistComponent;
 
+    @Injectable
+    private PlaylistWriterComponent playlistWriterComponent;
+
+    @Injectable
+    private PlaylistMetadataComponent playlistMetadataComponent;
+
+    @Injectable
+    private TrackTailCacheComponent trackTailCacheComponent;
+
+    @Injectable
+    private BuildJobComponent buildJobComponent;
+
     @Before
     public void setup() {
         spotifyPlaylistService = new SpotifyPlaylistServiceImpl();
+        Deencapsulation.setField(spotifyPlaylistService, "playlistFetchExecutor",
+                Executors.newFixedThreadPool(2));
+        Deencapsulation.setField(spotifyPlaylistService, "fetchTimeoutMs", 1000L);
+        Deencapsulation.setField(spotifyPlaylistService, "meterRegistry", new SimpleMeterRegistry());
     }
 
     /**
@@ -46,10 +96,10 @@ public class SpotifyPlaylistServiceImplTest {
         final int limit = 10;
 
         new Expectations() {{
-            spotifyApiComponent.tokensExist();
+            spotifyCredentialsComponent.tokensExist();
             returns(true);
 
-            spotifyApiComponent.getApiWithTokens();
+            spotifyCredentialsComponent.getApiWithTokens();
             returns(SpotifyTestUtils.buildMockedSpotifyApi());
 
             spotifyApiComponent.executeRequest((AbstractDataRequest) any, anyString);
@@ -67,7 +117,7 @@ public class SpotifyPlaylistServiceImplTest {
     @Test
     public void testGetUserPlaylistsMissingTokens() throws Exception {
         new Expectations() {{
-            spotifyApiComponent.tokensExist();
+            spotifyCredentialsComponent.tokensExist();
             returns(false);
         }};
 
@@ -83,13 +133,13 @@ public class SpotifyPlaylistServiceImplTest {
         final String playlistId = "playlist ID";
 
         new Expectations() {{
-            spotifyApiComponent.getApiWithTokens();
+            spotifyCredentialsComponent.getApiWithTokens();
             returns(SpotifyTestUtils.buildMockedSpotifyApi());
 
-            spotifyApiComponent.getCurrentUserId();
+            spotifyCredentialsComponent.getCurrentUserId();
             returns("user ID");
 
-            spotifyApiComponent.executeRequest((AbstractDataRequest) any, anyString);
+            playlistMetadataComponent.getPlaylist((SpotifyApi) any, "user ID", playlistId, anyString);
             returns(SpotifyTestUtils.buildMockedPlaylist(playlistId));
         }};
 
@@ -97,6 +147,274 @@ public class SpotifyPlaylistServiceImplTest {
         assertEquals(playlistId, actual.getId());
     }
 
+    /**
+     * Assert that tracks from all source playlists are merged in order of most
+     * recently added, skipping local files and tracks that have already been
+     * selected from another playlist. The refresh token is not stored while
+     * background refreshes are disabled.
+     */
+    @Test
+    public void testBuildLatestAdditionsPlaylist() throws Exception {
+        final Map<String, Paging<PlaylistTrack>> sourceTracks = new HashMap<>();
+        sourceTracks.put("a", SpotifyTestUtils.buildMockedTrackPaging(
+                SpotifyTestUtils.buildMockedPlaylistTrack("a1", 1, false),
+                SpotifyTestUtils.buildMockedPlaylistTrack("dup", 2, false),
+                SpotifyTestUtils.buildMockedPlaylistTrack("a3", 5, false)));
+        sourceTracks.put("b", SpotifyTestUtils.buildMockedTrackPaging(
+                SpotifyTestUtils.buildMockedPlaylistTrack("local", 3, true),
+                SpotifyTestUtils.buildMockedPlaylistTrack("dup", 4, false),
+                SpotifyTestUtils.buildMockedPlaylistTrack("b3", 6, false)));
+        mockSourcePlaylists(sourceTracks);
+
+        LatestPlaylistResponse actual = spotifyPlaylistService.buildLatestAdditionsPlaylist(
+                buildMockedRequest(5, "a", "b"));
+        assertEquals(Arrays.asList("b3", "a3", "dup", "a1"), getTrackUris(actual));
+        assertNull(actual.getTrace());
+        new Verifications() {{
+            userPlaylistComponent.saveRefreshToken(anyString, anyString);
+            times = 0;
+        }};
+    }
+
+    /**
+     * Assert that a build requested with debug output returns the time spent in
+     * each phase, and the requests made and tracks skipped for each source.
+     */
+    @Test
+    public void testBuildLatestAdditionsPlaylistDebugTrace() throws Exception {
+        final Map<String, Paging<PlaylistTrack>> sourceTracks = new HashMap<>();
+        sourceTracks.put("a", SpotifyTestUtils.buildMockedTrackPaging(
+                SpotifyTestUtils.buildMockedPlaylistTrack("dup", 2, false),
+                SpotifyTestUtils.buildMockedPlaylistTrack("a3", 5, false)));
+        sourceTracks.put("b", SpotifyTestUtils.buildMockedTrackPaging(
+                SpotifyTestUtils.buildMockedPlaylistTrack("local", 3, true),
+                SpotifyTestUtils.buildMockedPlaylistTrack("dup", 4, false),
+                SpotifyTestUtils.buildMockedPlaylistTrack("b3", 6, false)));
+        mockSourcePlaylists(sourceTracks);
+
+        BuildPlaylistRequest request = buildMockedRequest(5, "a", "b");
+        request.setDebug(true);
+        BuildTrace trace = spotifyPlaylistService.buildLatestAdditionsPlaylist(request).getTrace();
+
+        assertEquals(Arrays.asList("fetch", "merge", "write", "persist"),
+                new ArrayList<>(trace.getPhaseMs().keySet()));
+        PlaylistTrace a = trace.getPlaylist("a");
+        assertEquals(1, a.getTrackRequests());
+        assertEquals(2, a.getTracksFetched());
+        assertEquals(1, a.getSkipCount());
+        assertEquals(0, a.getRefillCount());
+        assertFalse(a.isCached());
+        PlaylistTrace b = trace.getPlaylist("b");
+        assertEquals(3, b.getTracksFetched());
+        assertEquals(1, b.getSkipCount());
+    }
+
+    /**
+     * Assert that if the tracks for one source playlist cannot be retrieved,
+     * the playlist is built from the remaining source playlists and the failed
+     * source is reported.
+     */
+    @Test
+    public void testBuildLatestAdditionsPlaylistFailedSource() throws Exception {
+        final Map<String, Paging<PlaylistTrack>> sourceTracks = new HashMap<>();
+        sourceTracks.put("a", SpotifyTestUtils.buildMockedTrackPaging(
+                SpotifyTestUtils.buildMockedPlaylistTrack("a1", 1, false),
+                SpotifyTestUtils.buildMockedPlaylistTrack("a2", 2, false)));
+        mockSourcePlaylists(sourceTracks);
+
+        LatestPlaylistResponse actual = spotifyPlaylistService.buildLatestAdditionsPlaylist(
+                buildMockedRequest(2, "a", "missing"));
+        assertEquals(Arrays.asList("a2", "a1"), getTrackUris(actual));
+        assertEquals(Collections.singletonList("missing"), actual.getSkippedPlaylistIds());
+    }
+
+    /**
+     * Assert that an existing playlist is not overwritten if the tracks for
+     * any of its source playlists cannot be retrieved.
+     */
+    @Test
+    public void testBuildLatestAdditionsPlaylistFailedSourceNotOverwritten() throws Exception {
+        final Map<String, Paging<PlaylistTrack>> sourceTracks = new HashMap<>();
+        sourceTracks.put("a", SpotifyTestUtils.buildMockedTrackPaging(
+                SpotifyTestUtils.buildMockedPlaylistTrack("a1", 1, false)));
+        mockSourcePlaylists(sourceTracks);
+
+        BuildPlaylistRequest request = buildMockedRequest(2, "a", "missing");
+        request.setOverwriteExisting(true);
+        request.setPlaylistToOverwrite("latest");
+        try {
+            spotifyPlaylistService.buildLatestAdditionsPlaylist(request);
+            fail("Expected build to fail");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("missing"));
+        }
+
+        new Verifications() {{
+            playlistWriterComponent.replaceTracks((SpotifyApi) any, anyString, anyString, (String[]) any);
+            times = 0;
+            playlistWriterComponent.updateTracks((SpotifyApi) any, anyString, anyString, (String[]) any);
+            times = 0;
+        }};
+    }
+
+    /**
+     * Assert that a saved playlist is rebuilt in the background only when one
+     * of its source playlists has a new snapshot.
+     */
+    @Test
+    public void testRefreshSavedPlaylist() throws Exception {
+        final Map<String, Paging<PlaylistTrack>> sourceTracks = new HashMap<>();
+        sourceTracks.put("a", SpotifyTestUtils.buildMockedTrackPaging(
+                SpotifyTestUtils.buildMockedPlaylistTrack("a1", 1, false)));
+        mockSourcePlaylists(sourceTracks);
+
+        UserPlaylist userPlaylist = new UserPlaylist("user ID", "latest");
+        BuildPlaylistRequest buildSpec = buildMockedRequest(1, "a");
+        buildSpec.setOverwriteExisting(true);
+        buildSpec.setPlaylistToOverwrite("latest");
+        userPlaylist.setBuildSpec(buildSpec);
+        userPlaylist.setSourceSnapshots(Collections.singletonMap("a", "old snapshot"));
+
+        new NonStrictExpectations() {{
+            userPlaylistComponent.getRefreshToken("user ID");
+            returns("refresh token");
+
+            spotifyApiComponent.getApiWithRefreshToken("refresh token");
+            returns(SpotifyTestUtils.buildMockedSpotifyApi());
+
+            playlistMetadataComponent.getPlaylist((SpotifyApi) any, "user ID", "a", anyString);
+            returns(new Playlist.Builder().setSnapshotId("old snapshot").build(),
+                    new Playlist.Builder().setSnapshotId("new snapshot").build());
+        }};
+
+        assertFalse(spotifyPlaylistService.refreshSavedPlaylist(userPlaylist));
+        assertTrue(spotifyPlaylistService.refreshSavedPlaylist(userPlaylist));
+
+        new Verifications() {{
+            userPlaylistComponent.markPlaylistChecked("user ID", "latest");
+            times = 1;
+            userPlaylistComponent.recordPlaylistBuild("user ID", "latest", (BuildPlaylistRequest) any,
+                    (Map<String, String>) any);
+            times = 1;
+            playlistWriterComponent.replaceTracks((SpotifyApi) any, "user ID", "latest", (String[]) any);
+            times = 1;
+            playlistWriterComponent.updateTracks((SpotifyApi) any, anyString, anyString, (String[]) any);
+            times = 0;
+        }};
+    }
+
+    /**
+     * Assert that a saved playlist whose build specification has no source
+     * playlists is not rebuilt, rather than being overwritten with no tracks.
+     */
+    @Test
+    public void testRefreshSavedPlaylistWithoutSources() {
+        UserPlaylist userPlaylist = new UserPlaylist("user ID", "latest");
+        userPlaylist.setBuildSpec(buildMockedRequest(1));
+
+        assertFalse(spotifyPlaylistService.refreshSavedPlaylist(userPlaylist));
+
+        new Verifications() {{
+            userPlaylistComponent.markPlaylistChecked("user ID", "latest");
+            times = 1;
+            spotifyApiComponent.getApiWithRefreshToken(anyString);
+            times = 0;
+        }};
+    }
+
+    /**
+     * Assert that a playlist cannot be rebuilt by ID without a stored build
+     * specification.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testSubmitSavedPlaylistRebuildWithoutSpec() {
+        new NonStrictExpectations() {{
+            spotifyCredentialsComponent.getCurrentUserId();
+            returns("user ID");
+
+            userPlaylistComponent.getUserPlaylist("user ID", "latest");
+            returns(new UserPlaylist("user ID", "latest"));
+        }};
+
+        spotifyPlaylistService.submitSavedPlaylistRebuild("latest");
+    }
+
+    /**
+     * Mock the spotify API component to return the given tracks for each source
+     * playlist, and fail for any playlist without tracks.
+     *
+     * @param sourceTracks mapping of source playlist IDs to their tracks
+     */
+    private void mockSourcePlaylists(final Map<String, Paging<PlaylistTrack>> sourceTracks) {
+        new NonStrictExpectations() {{
+            spotifyCredentialsComponent.getCurrentUserId();
+            returns("user ID");
+
+            spotifyCredentialsComponent.getApiWithTokens();
+            returns(SpotifyTestUtils.buildMockedSpotifyApi());
+
+            trackTailCacheComponent.getRecentTracks((SpotifyApi) any, (PlaylistIdWrapper) any, anyInt,
+                    (PlaylistCursor.PageFetcher) any);
+            result = new Delegate<PlaylistTrack[]>() {
+                @SuppressWarnings("unused")
+                PlaylistTrack[] getRecentTracks(SpotifyApi spotifyApi, PlaylistIdWrapper playlist, int numTracks,
+                                                PlaylistCursor.PageFetcher pageFetcher) {
+                    playlist.setOffset(0);
+                    return pageFetcher.fetch(playlist, numTracks, 0);
+                }
+            };
+
+            spotifyApiComponent.executeRequest((AbstractDataRequest) any, anyString);
+            returns(SpotifyTestUtils.buildMockedPlaylist("latest"));
+
+            spotifyApiComponent.executeSharedRequest((AbstractDataRequest) any, anyString);
+            result = new Delegate<Paging<PlaylistTrack>>() {
+                @SuppressWarnings("unused")
+                Paging<PlaylistTrack> executeSharedRequest(AbstractDataRequest request, String errorMessage) {
+                    String path = request.getUri().getPath();
+                    String playlistId = path.replaceAll(".*/playlists/([^/]+)/tracks$", "$1");
+                    if (!sourceTracks.containsKey(playlistId)) {
+                        throw new RuntimeException(errorMessage);
+                    }
+                    return sourceTracks.get(playlistId);
+                }
+            };
+        }};
+    }
+
+    /**
+     * Create a build request for a new playlist from the given source playlists,
+     * each assumed to contain numTracks tracks.
+     *
+     * @param numTracks   number of tracks for playlist
+     * @param playlistIds IDs of source playlists
+     * @return build request
+     */
+    private BuildPlaylistRequest buildMockedRequest(int numTracks, String... playlistIds) {
+        BuildPlaylistRequest request = new BuildPlaylistRequest();
+        Map<String, Integer> playlistSizes = new HashMap<>();
+        for (String playlistId : playlistIds) {
+            playlistSizes.put(playlistId, numTracks);
+        }
+        request.setPlaylistIds(playlistSizes);
+        request.setNumTracks(numTracks);
+        request.setPlaylistName("latest additions");
+        request.setDescription("description");
+        return request;
+    }
+
+    /**
+     * Get the URIs of the tracks in the given response's tracklist preview.
+     *
+     * @param response build response
+     * @return list of track URIs
+     */
+    private List<String> getTrackUris(LatestPlaylistResponse response) {
+        return response.getTracklistPreview().stream()
+                .map(playlistTrack -> playlistTrack.getTrack().getUri())
+                .collect(Collectors.toList());
+    }
+
     /**
      * Create a mocked instance of a playlist paging object with the given parameters.
      *